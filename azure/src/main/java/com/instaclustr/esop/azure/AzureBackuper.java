@@ -1,18 +1,44 @@
 package com.instaclustr.esop.azure;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import com.azure.core.util.BinaryData;
+import com.azure.core.util.Context;
 import com.azure.storage.blob.BlobContainerClient;
 import com.azure.storage.blob.BlobServiceClient;
+import com.azure.storage.blob.models.BlobDownloadContentResponse;
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobListDetails;
+import com.azure.storage.blob.models.BlobRequestConditions;
 import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.models.ListBlobsOptions;
 import com.azure.storage.blob.models.ParallelTransferOptions;
 import com.azure.storage.blob.options.BlockBlobOutputStreamOptions;
+import com.azure.storage.blob.options.BlockBlobSimpleUploadOptions;
 import com.azure.storage.blob.specialized.BlockBlobClient;
+import com.google.common.base.Suppliers;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import com.instaclustr.esop.azure.AzureModule.BlobServiceClientFactory;
@@ -21,18 +47,37 @@ import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.backup.BackupCommitLogsOperationRequest;
 import com.instaclustr.esop.impl.backup.BackupOperationRequest;
 import com.instaclustr.esop.impl.backup.Backuper;
+import com.instaclustr.esop.impl.backup.BatchFreshener;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.instaclustr.esop.impl.ManifestEntry.Type.MANIFEST_FILE;
 
 public class AzureBackuper extends Backuper {
+    private static final Logger logger = LoggerFactory.getLogger(AzureBackuper.class);
+
     private static final String DATE_TIME_METADATA_KEY = "LastFreshened";
 
     private static final long DEFAULT_MAX_BLOB_BLOCK_SIZE = 4 * 1024 * 1024;
     
     private static final long MAX_BLOB_BLOCK_SIZE = Long.parseLong(System.getProperty("azure.max.blob.block.size", Long.toString(DEFAULT_MAX_BLOB_BLOCK_SIZE)));
 
+    private static final int DEFAULT_BLOCK_UPLOAD_CONCURRENCY = 4;
+
+    // number of blocks of one file staged concurrently, 1 means the file is streamed block by block
+    private static final int BLOCK_UPLOAD_CONCURRENCY = Integer.parseInt(System.getProperty("azure.upload.block.concurrency", Integer.toString(DEFAULT_BLOCK_UPLOAD_CONCURRENCY)));
+
+    // 0 turns refreshing by a listing off, it is off by default as it lists all blobs of a node, blobs are then refreshed
+    // one by one by upload units, in parallel
+    private static final int FRESHEN_BATCH_SIZE = Integer.parseInt(System.getProperty("azure.freshen.batch.size", "0"));
+
     private final BlobContainerClient blobContainerClient;
 
     private final BlobServiceClient blobServiceClient;
 
+    private BatchFreshener batchFreshener;
+
     @AssistedInject
     public AzureBackuper(final BlobServiceClientFactory blobServiceClientFactory,
                          @Assisted final BackupOperationRequest request) throws Exception {
@@ -64,11 +109,39 @@ public class AzureBackuper extends Backuper {
 
     @Override
     protected void cleanup() throws Exception {
+        if (batchFreshener != null) {
+            batchFreshener.close();
+        }
+    }
+
+    @Override
+    public void init(final List<ManifestEntry> manifestEntries) {
+        if (FRESHEN_BATCH_SIZE <= 0) {
+            return;
+        }
 
+        final List<RemoteObjectReference> references = new ArrayList<>();
+
+        for (final ManifestEntry entry : manifestEntries) {
+            if (entry.type != MANIFEST_FILE) {
+                final String canonicalPath = resolveNodeAwareRemotePath(entry.objectKey);
+                references.add(new AzureRemoteObjectReference(entry.objectKey, canonicalPath, blobContainerClient.getBlobClient(canonicalPath).getBlockBlobClient()));
+            }
+        }
+
+        batchFreshener = new AzureBatchFreshener(references.stream().map(r -> r.canonicalPath).collect(Collectors.toSet()));
+        batchFreshener.submit(references);
     }
 
     @Override
     public FreshenResult freshenRemoteObject(ManifestEntry manifestEntry, final RemoteObjectReference object) throws Exception {
+        if (batchFreshener != null) {
+            final FreshenResult result = batchFreshener.await(object);
+            if (result != null) {
+                return result;
+            }
+        }
+
         final BlockBlobClient blob = ((AzureRemoteObjectReference) object).blobClient;
 
         final Instant now = Instant.now();
@@ -98,6 +171,12 @@ public class AzureBackuper extends Backuper {
                            final RemoteObjectReference objectReference) throws Exception {
         final BlockBlobClient blob = ((AzureRemoteObjectReference) objectReference).blobClient;
 
+        // Staging blocks reads the file directly so we can do that only when the stream does not need to be throttled.
+        if (request.bandwidth == null && BlockStagingUploader.isApplicable(manifestEntry, MAX_BLOB_BLOCK_SIZE, BLOCK_UPLOAD_CONCURRENCY)) {
+            new BlockStagingUploader(blob, MAX_BLOB_BLOCK_SIZE, BLOCK_UPLOAD_CONCURRENCY).upload(manifestEntry.localFile);
+            return;
+        }
+
         ParallelTransferOptions parallelTransferOptions = new ParallelTransferOptions()
                 .setBlockSizeLong(MAX_BLOB_BLOCK_SIZE)
                 .setMaxSingleUploadSizeLong(MAX_BLOB_BLOCK_SIZE)
@@ -119,4 +198,189 @@ public class AzureBackuper extends Backuper {
         final BlockBlobClient blob = ((AzureRemoteObjectReference) objectReference).blobClient;
         blob.upload(BinaryData.fromString(text), true);
     }
+
+    @Override
+    public Optional<VersionedText> readNodeAwareText(final Path objectKey) throws Exception {
+        final BlockBlobClient blob = ((AzureRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey)).blobClient;
+
+        try {
+            final BlobDownloadContentResponse response = blob.downloadContentWithResponse(null, null, null, Context.NONE);
+            return Optional.of(new VersionedText(response.getValue().toString(), response.getDeserializedHeaders().getETag()));
+        } catch (final BlobStorageException ex) {
+            if (ex.getStatusCode() == 404) {
+                return Optional.empty();
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean writeNodeAwareText(final Path objectKey, final String text, final String version) throws Exception {
+        final BlockBlobClient blob = ((AzureRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey)).blobClient;
+        final BlobRequestConditions conditions = version == null ? new BlobRequestConditions().setIfNoneMatch("*") : new BlobRequestConditions().setIfMatch(version);
+
+        try {
+            blob.uploadWithResponse(new BlockBlobSimpleUploadOptions(BinaryData.fromString(text)).setRequestConditions(conditions), null, Context.NONE);
+            return true;
+        } catch (final BlobStorageException ex) {
+            // 412 when a blob was changed meanwhile, 409 when it was created meanwhile
+            if (ex.getStatusCode() == 412 || ex.getStatusCode() == 409) {
+                return false;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Blob Batch API accepts only deletions and tier changes, so this is not a batch request. Existence and metadata
+     * of blobs are resolved by listing all blobs of a node once, page by page, instead of asking for properties of each
+     * blob, and each existing blob is then refreshed by its own metadata update. The listing covers blobs of all backups
+     * of a node, so it pays off only when most of them are referenced by the backup being taken.
+     */
+    private class AzureBatchFreshener extends BatchFreshener {
+
+        private final Supplier<Map<String, Map<String, String>>> remoteMetadata;
+
+        public AzureBatchFreshener(final Set<String> canonicalPaths) {
+            super(FRESHEN_BATCH_SIZE, request.concurrentConnections);
+            this.remoteMetadata = Suppliers.memoize(() -> listRemoteMetadata(canonicalPaths));
+        }
+
+        @Override
+        protected Map<String, FreshenResult> freshen(final List<RemoteObjectReference> batch) {
+            final Map<String, Map<String, String>> existing = remoteMetadata.get();
+            final Map<String, FreshenResult> results = new HashMap<>();
+            final String now = Instant.now().toString();
+
+            for (final RemoteObjectReference reference : batch) {
+                final Map<String, String> metadata = existing.get(reference.canonicalPath);
+
+                if (metadata == null) {
+                    results.put(reference.canonicalPath, FreshenResult.UPLOAD_REQUIRED);
+                } else if (request.skipRefreshing) {
+                    results.put(reference.canonicalPath, FreshenResult.FRESHENED);
+                } else {
+                    final Map<String, String> updatedMetadata = new HashMap<>(metadata);
+                    updatedMetadata.put(DATE_TIME_METADATA_KEY, now);
+
+                    try {
+                        ((AzureRemoteObjectReference) reference).blobClient.setMetadata(updatedMetadata);
+                        results.put(reference.canonicalPath, FreshenResult.FRESHENED);
+                    } catch (final BlobStorageException ex) {
+                        // other errors are left without a result so such object is refreshed on its own
+                        if (ex.getStatusCode() == 404) {
+                            results.put(reference.canonicalPath, FreshenResult.UPLOAD_REQUIRED);
+                        }
+                    }
+                }
+            }
+
+            return results;
+        }
+
+        private Map<String, Map<String, String>> listRemoteMetadata(final Set<String> canonicalPaths) {
+            final ListBlobsOptions options = new ListBlobsOptions()
+                .setPrefix(resolveNodeAwareRemoteRoot() + "/")
+                .setDetails(new BlobListDetails().setRetrieveMetadata(true));
+
+            final Map<String, Map<String, String>> metadata = new HashMap<>();
+
+            for (final BlobItem blobItem : blobContainerClient.listBlobs(options, null)) {
+                if (canonicalPaths.contains(blobItem.getName())) {
+                    metadata.put(blobItem.getName(), blobItem.getMetadata() == null ? new HashMap<>() : blobItem.getMetadata());
+                }
+            }
+
+            logger.info("Found {} of {} objects to refresh already uploaded", metadata.size(), canonicalPaths.size());
+
+            return metadata;
+        }
+    }
+
+    /**
+     * Uploads a file as a block blob by reading its ranges in parallel, staging each range as a block with its MD5
+     * and committing the block list once all blocks are staged. At most {@code concurrency} blocks are held in memory
+     * at any time.
+     */
+    public static class BlockStagingUploader {
+
+        // Azure Blob Storage does not accept more blocks per blob
+        private static final int MAX_NUMBER_OF_BLOCKS = 50_000;
+
+        private final BlockBlobClient blobClient;
+        private final long blockSize;
+        private final int concurrency;
+
+        public BlockStagingUploader(final BlockBlobClient blobClient, final long blockSize, final int concurrency) {
+            this.blobClient = blobClient;
+            this.blockSize = blockSize;
+            this.concurrency = concurrency;
+        }
+
+        public static boolean isApplicable(final ManifestEntry manifestEntry, final long blockSize, final int concurrency) {
+            return concurrency > 1
+                && manifestEntry != null
+                && manifestEntry.localFile != null
+                && manifestEntry.size > blockSize
+                && Files.isRegularFile(manifestEntry.localFile);
+        }
+
+        public void upload(final Path localFile) throws Exception {
+            final long size = Files.size(localFile);
+            final long effectiveBlockSize = Math.max(blockSize, (size + MAX_NUMBER_OF_BLOCKS - 1) / MAX_NUMBER_OF_BLOCKS);
+            final int numberOfBlocks = (int) Math.max(1, (size + effectiveBlockSize - 1) / effectiveBlockSize);
+
+            final List<String> blockIds = new ArrayList<>(numberOfBlocks);
+
+            for (int i = 0; i < numberOfBlocks; i++) {
+                blockIds.add(blockId(i));
+            }
+
+            logger.debug("Staging {} blocks of {} with concurrency {}", numberOfBlocks, blobClient.getBlobName(), concurrency);
+
+            final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(Math.min(concurrency, numberOfBlocks));
+
+            try (final FileChannel channel = FileChannel.open(localFile, StandardOpenOption.READ)) {
+                final List<ListenableFuture<Void>> futures = new ArrayList<>(numberOfBlocks);
+
+                for (int i = 0; i < numberOfBlocks; i++) {
+                    final long position = i * effectiveBlockSize;
+                    final int length = (int) Math.min(effectiveBlockSize, size - position);
+                    final String blockId = blockIds.get(i);
+
+                    futures.add(executorService.submit(() -> {
+                        stageBlock(channel, blockId, position, length);
+                        return null;
+                    }));
+                }
+
+                Futures.allAsList(futures).get();
+            } finally {
+                executorService.shutdownNow();
+            }
+
+            blobClient.commitBlockList(blockIds, true);
+        }
+
+        private void stageBlock(final FileChannel channel, final String blockId, final long position, final int length) throws Exception {
+            final byte[] block = new byte[length];
+            final ByteBuffer buffer = ByteBuffer.wrap(block);
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IllegalStateException(String.format("Unexpected end of file while staging block at position %s of %s",
+                                                                  position, blobClient.getBlobName()));
+                }
+            }
+
+            final byte[] md5 = MessageDigest.getInstance("MD5").digest(block);
+
+            blobClient.stageBlockWithResponse(blockId, new ByteArrayInputStream(block), length, md5, null, null, Context.NONE);
+        }
+
+        // all block ids of a blob have to be of the same length
+        private static String blockId(final int index) {
+            return Base64.getEncoder().encodeToString(String.format("block-%08d", index).getBytes(StandardCharsets.UTF_8));
+        }
+    }
 }
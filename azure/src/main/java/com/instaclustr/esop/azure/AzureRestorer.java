@@ -1,37 +1,53 @@
 package com.instaclustr.esop.azure;
 
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
-import java.util.stream.StreamSupport;
 
+import com.azure.core.http.rest.Response;
+import com.azure.core.util.BinaryData;
+import com.azure.core.util.Context;
 import com.azure.storage.blob.BlobContainerClient;
 import com.azure.storage.blob.BlobServiceClient;
+import com.azure.storage.blob.batch.BlobBatch;
+import com.azure.storage.blob.batch.BlobBatchClient;
+import com.azure.storage.blob.batch.BlobBatchClientBuilder;
+import com.azure.storage.blob.models.BlobDownloadContentResponse;
 import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobRange;
+import com.azure.storage.blob.models.BlobRequestConditions;
 import com.azure.storage.blob.models.BlobStorageException;
 import com.azure.storage.blob.models.ListBlobsOptions;
+import com.azure.storage.blob.options.BlobInputStreamOptions;
+import com.azure.storage.blob.options.BlockBlobSimpleUploadOptions;
 import com.azure.storage.blob.specialized.BlockBlobClient;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import com.instaclustr.esop.azure.AzureModule.BlobServiceClientFactory;
+import com.instaclustr.esop.impl.LazyManifest;
 import com.instaclustr.esop.impl.Manifest;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.StorageLocation;
 import com.instaclustr.esop.impl.list.ListOperationRequest;
+import com.instaclustr.esop.impl.list.ManifestCacheSynchronizer;
+import com.instaclustr.esop.impl.remove.BatchDeleter;
 import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
 import com.instaclustr.esop.impl.restore.RestoreCommitLogsOperationRequest;
 import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
 import com.instaclustr.esop.impl.restore.Restorer;
-import com.instaclustr.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +58,8 @@ public class AzureRestorer extends Restorer {
 
     private static final Logger logger = LoggerFactory.getLogger(AzureRestorer.class);
 
+    private static final int DELETE_BATCH_SIZE = Math.min(256, Integer.parseInt(System.getProperty("azure.delete.batch.size", "256")));
+
     private final BlobContainerClient blobContainerClient;
     private final BlobServiceClient blobServiceClient;
 
@@ -118,6 +136,16 @@ public class AzureRestorer extends Restorer {
         blob.downloadToFile(localPath.toAbsolutePath().toString());
     }
 
+    @Override
+    public boolean supportsRangedDownload(final ManifestEntry manifestEntry, final RemoteObjectReference objectReference) {
+        return true;
+    }
+
+    @Override
+    public InputStream downloadRange(final RemoteObjectReference objectReference, final long offset, final long length) {
+        return ((AzureRemoteObjectReference) objectReference).blobClient.openInputStream(new BlobInputStreamOptions().setRange(new BlobRange(offset, length)));
+    }
+
     @Override
     public String downloadTopology(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
         final String blobItemPath = getBlobItemPath(globalList(remotePrefix), keyFilter);
@@ -125,10 +153,10 @@ public class AzureRestorer extends Restorer {
     }
 
     @Override
-    public String downloadManifest(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
+    public void downloadManifest(final Path localPath, final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
         final String blobItemPath = getManifest(nodeList(remotePrefix), keyFilter);
         final String fileName = blobItemPath.split("/")[blobItemPath.split("/").length - 1];
-        return downloadFileToString(objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(fileName)));
+        downloadFile(localPath, objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(fileName)));
     }
 
     @Override
@@ -171,13 +199,6 @@ public class AzureRestorer extends Restorer {
         return getBlobPathWithContainerName(blobItems.get(0));
     }
 
-    private List<String> getBlobPaths(final Iterable<BlobItem> blobItemsIterable, final Predicate<String> keyFilter) {
-        return StreamSupport.stream(blobItemsIterable.spliterator(), false)
-                            .map(this::getBlobPathWithContainerName)
-                            .filter(keyFilter)
-                            .collect(toList());
-    }
-
     // Returns blob path with container name prefixed, e.g. /container-name/path/to/blob
     // New Azure SDK does not provide such method, so we need to build it ourselves
     private String getBlobPathWithContainerName(final BlobItem blobItem) {
@@ -200,27 +221,90 @@ public class AzureRestorer extends Restorer {
     }
 
     public void downloadManifestsToDirectory(Path downloadDir) throws Exception {
-        FileUtils.createDirectory(downloadDir);
-        FileUtils.cleanDirectory(downloadDir.toFile());
-        final List<String> manifestKeys = getBlobPaths(list(""), s -> s.contains("manifests"));
-        for (String o: manifestKeys) {
-            Path manifestPath = Paths.get(o).subpath(1, 6);
-            Path destination = downloadDir.resolve(manifestPath);
-            downloadFile(destination, objectKeyToRemoteReference(manifestPath));
+        new ManifestCacheSynchronizer(request.concurrentConnections).sync(downloadDir.resolve(resolveNodeAwareRemotePath(Paths.get("manifests"))),
+                                                                         getRemoteManifests(),
+                                                                         (manifest, localFile) -> downloadFile(localFile, objectKeyToNodeAwareRemoteReference(Paths.get("manifests", manifest))));
+    }
+
+    // file names of manifests of a node to their sizes
+    private Map<String, Long> getRemoteManifests() {
+        final Map<String, Long> manifests = new HashMap<>();
+
+        for (final BlobItem blobItem : nodeList(Paths.get("manifests"))) {
+            final String path = getBlobPathWithContainerName(blobItem);
+
+            if (path.contains("/manifests/")) {
+                manifests.put(Paths.get(path).getFileName().toString(), blobItem.getProperties().getContentLength());
+            }
         }
+
+        return manifests;
     }
 
     @Override
     public List<Manifest> listManifests() throws Exception {
-        //If skipDownload flag is not set, download manifests
-        if (this.request instanceof ListOperationRequest) {
-            if (!((ListOperationRequest) this.request).skipDownload) {
-                StorageLocation location = this.localFileRestorer.getStorageLocation();
-                Path downloadDirectory = location.fileBackupDirectory.resolve(this.localFileRestorer.getStorageLocation().bucket);
-                downloadManifestsToDirectory(downloadDirectory);
+        synchronizeManifests();
+        return localFileRestorer.listManifests();
+    }
+
+    @Override
+    public List<LazyManifest> listLazyManifests() throws Exception {
+        synchronizeManifests();
+        return localFileRestorer.listLazyManifests();
+    }
+
+    @Override
+    public List<String> listManifestNames() throws Exception {
+        // a listing which skips download works just with cached manifests
+        if (skipsDownload()) {
+            return localFileRestorer.listManifestNames();
+        }
+        return new ArrayList<>(getRemoteManifests().keySet());
+    }
+
+    private boolean skipsDownload() {
+        return this.request instanceof ListOperationRequest && ((ListOperationRequest) this.request).skipDownload;
+    }
+
+    // manifests are synchronized with a local cache unless a listing is told to skip it, a removal always synchronizes them
+    private void synchronizeManifests() throws Exception {
+        if ((this.request instanceof ListOperationRequest || this.request instanceof RemoveBackupRequest) && !skipsDownload()) {
+            StorageLocation location = this.localFileRestorer.getStorageLocation();
+            Path downloadDirectory = location.fileBackupDirectory.resolve(this.localFileRestorer.getStorageLocation().bucket);
+            downloadManifestsToDirectory(downloadDirectory);
+        }
+    }
+
+    @Override
+    public Optional<VersionedText> readNodeAwareText(final Path objectKey) throws Exception {
+        final BlockBlobClient blob = ((AzureRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey)).blobClient;
+
+        try {
+            final BlobDownloadContentResponse response = blob.downloadContentWithResponse(null, null, null, Context.NONE);
+            return Optional.of(new VersionedText(response.getValue().toString(), response.getDeserializedHeaders().getETag()));
+        } catch (final BlobStorageException ex) {
+            if (ex.getStatusCode() == 404) {
+                return Optional.empty();
             }
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean writeNodeAwareText(final Path objectKey, final String text, final String version) throws Exception {
+        final BlockBlobClient blob = ((AzureRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey)).blobClient;
+        final BlobRequestConditions conditions = version == null ? new BlobRequestConditions().setIfNoneMatch("*") : new BlobRequestConditions().setIfMatch(version);
+
+        try {
+            blob.uploadWithResponse(new BlockBlobSimpleUploadOptions(BinaryData.fromString(text)).setRequestConditions(conditions), null, Context.NONE);
+            return true;
+        } catch (final BlobStorageException ex) {
+            // 412 when a blob was changed meanwhile, 409 when it was created meanwhile
+            if (ex.getStatusCode() == 412 || ex.getStatusCode() == 409) {
+                return false;
+            }
+            throw ex;
         }
-        return localFileRestorer.listManifests();
     }
 
     @Override
@@ -248,12 +332,10 @@ public class AzureRestorer extends Restorer {
     public void delete(final Manifest.ManifestReporter.ManifestReport backupToDelete, final RemoveBackupRequest request) throws Exception {
         logger.info("Deleting backup {}", backupToDelete.name);
         if (backupToDelete.reclaimableSpace > 0 && !backupToDelete.getRemovableEntries().isEmpty()) {
-            for (final String removableEntry : backupToDelete.getRemovableEntries()) {
-                if (!request.dry) {
-                    deleteNodeAwareKey(Paths.get(removableEntry));
-                } else {
-                    logger.info("Dry: " + removableEntry);
-                }
+            if (!request.dry) {
+                deleteNodeAwareKeys(backupToDelete.getRemovableEntries().stream().map(Paths::get).collect(toList()));
+            } else {
+                backupToDelete.getRemovableEntries().forEach(removableEntry -> logger.info("Dry: " + removableEntry));
             }
         }
 
@@ -268,6 +350,24 @@ public class AzureRestorer extends Restorer {
         }
     }
 
+    @Override
+    public void deleteNodeAwareKeys(final List<Path> objectKeys) throws Exception {
+        new AzureBatchDeleter().delete(objectKeys.stream().map(this::resolveNodeAwareRemotePath).collect(toList()));
+    }
+
+    @Override
+    public void visitNodeAwareObjects(final Path prefix, final ObjectVisitor visitor) throws Exception {
+        final String nodeRoot = resolveNodeAwareRemoteRoot() + "/";
+
+        for (final BlobItem blobItem : list(resolveNodeAwareRemotePath(prefix) + "/")) {
+            if (blobItem.getName().startsWith(nodeRoot)) {
+                visitor.visit(Paths.get(blobItem.getName().substring(nodeRoot.length())),
+                              blobItem.getProperties().getContentLength(),
+                              blobItem.getProperties().getLastModified().toInstant().toEpochMilli());
+            }
+        }
+    }
+
     @Override
     public List<StorageLocation> listNodes() throws Exception {
         return localFileRestorer.listNodes();
@@ -288,6 +388,42 @@ public class AzureRestorer extends Restorer {
         return localFileRestorer.listDcs();
     }
 
+    /**
+     * Deletes blobs by Blob Batch API, a batch accepts at most 256 requests. Blobs which do not exist count as deleted.
+     */
+    private class AzureBatchDeleter extends BatchDeleter {
+
+        private final BlobBatchClient blobBatchClient;
+
+        public AzureBatchDeleter() {
+            super(DELETE_BATCH_SIZE, request.concurrentConnections);
+            this.blobBatchClient = new BlobBatchClientBuilder(blobServiceClient).buildClient();
+        }
+
+        @Override
+        protected Map<String, String> deleteBatch(final List<String> batch) {
+            final BlobBatch blobBatch = blobBatchClient.getBlobBatch();
+            final Map<String, Response<Void>> batchResults = new HashMap<>();
+
+            for (final String key : batch) {
+                batchResults.put(key, blobBatch.deleteBlob(blobContainerClient.getBlobContainerName(), key));
+            }
+
+            // failures are taken from responses of each blob
+            blobBatchClient.submitBatchWithResponse(blobBatch, false, null, Context.NONE);
+
+            final Map<String, String> failures = new HashMap<>();
+
+            batchResults.forEach((key, response) -> {
+                if (response.getStatusCode() >= 300 && response.getStatusCode() != 404) {
+                    failures.put(key, "status code " + response.getStatusCode());
+                }
+            });
+
+            return failures;
+        }
+    }
+
     private Path removeNodePrefix(final BlobItem listBlobItem) {
         final String pattern = format("^/%s/%s/%s/%s/",
                                       request.storageLocation.bucket,
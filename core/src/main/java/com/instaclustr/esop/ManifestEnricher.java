@@ -2,6 +2,8 @@ package com.instaclustr.esop;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import com.instaclustr.esop.impl.CassandraData;
@@ -65,30 +67,36 @@ public class ManifestEnricher {
         // present locally (for example when a table is deleted and then created again and after that
         // we want to e.g. restore - id of that table would be suddenly different from one which was
         // backed up, so we would have problems upon e.g. hard-linking.
+        // a table is resolved once, its directory and keyspace table are shared by all its entries
+        final Map<String, TableName> tableNames = new HashMap<>();
+        final Map<String, Path> tableDirectories = new HashMap<>();
+        final Map<String, KeyspaceTable> keyspaceTables = new HashMap<>();
+
         manifest.getSnapshot().forEachEntry((entry, keyspace, table, idInManifest) -> {
-            final TableName tableName = getTableName(cassandraData, keyspace, table, idInManifest, false);
+            final String key = keyspace + "." + table;
+            final TableName tableName = tableNames.computeIfAbsent(key, k -> getTableName(cassandraData, keyspace, table, idInManifest, false));
 
             // "data/system/sstable_activity-5a1ff267ace03f128563cfae6103c65e/1-937685388/na-1-big-Filter.db"
             // "data/system/sstable_activity-5a1ff267ace03f128563cfae6103c65e/.indexname/1-937685388/na-1-big-Filter.db"
 
             final int subPathEndIndex = SSTableUtils.isSecondaryIndexManifest(entry.objectKey) ? 4 : 3;
 
-            Path initialPath = localRootPath == null ? Paths.get(tableName.keyspace) : localRootPath.resolve(tableName.keyspace);
+            final Path tableDirectory = tableDirectories.computeIfAbsent(key, k -> {
+                final Path initialPath = localRootPath == null ? Paths.get(tableName.keyspace) : localRootPath.resolve(tableName.keyspace);
+                return initialPath.resolve(tableName.table + "-" + tableName.tableId);
+            });
 
             if (subPathEndIndex == 4) {
                 Path indexName = entry.objectKey.subpath(0, 4).getFileName();
 
-                entry.localFile = initialPath
-                    .resolve(tableName.table + "-" + tableName.tableId)
+                entry.localFile = tableDirectory
                     .resolve(indexName)
                     .resolve(entry.objectKey.getFileName());
             } else {
-                entry.localFile = initialPath
-                    .resolve(tableName.table + "-" + tableName.tableId)
-                    .resolve(entry.objectKey.getFileName());
+                entry.localFile = tableDirectory.resolve(entry.objectKey.getFileName());
             }
 
-            entry.keyspaceTable = new KeyspaceTable(tableName.keyspace, tableName.table);
+            entry.keyspaceTable = keyspaceTables.computeIfAbsent(key, k -> new KeyspaceTable(tableName.keyspace, tableName.table));
         });
 
         // rename ids for tables to reflect what we have locally
@@ -38,7 +38,8 @@ import picocli.CommandLine.Spec;
     CommitLogBackupApplication.class,
     CommitLogRestoreApplication.class,
     ListApplication.class,
-    RemoveBackupApplication.class
+    RemoveBackupApplication.class,
+    GarbageCollectionApplication.class
 },
     versionProvider = Esop.class,
     name = "esop",
@@ -0,0 +1,63 @@
+package com.instaclustr.esop.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.instaclustr.esop.impl.gc.GarbageCollectionModule;
+import com.instaclustr.esop.impl.gc.GarbageCollectionRequest;
+import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.operations.Operation;
+import com.instaclustr.operations.OperationsService;
+import com.instaclustr.picocli.CassandraJMXSpec;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Spec;
+
+import static com.instaclustr.operations.Operation.State.FAILED;
+import static com.instaclustr.picocli.CLIApplication.execute;
+import static java.lang.String.format;
+import static org.awaitility.Awaitility.await;
+
+@Command(name = "gc",
+    description = "delete objects in remote location which are not referenced by any backup",
+    sortOptions = false,
+    versionProvider = Esop.class,
+    mixinStandardHelpOptions = true
+)
+public class GarbageCollectionApplication implements Runnable {
+
+    @Spec
+    private CommandSpec spec;
+
+    @Mixin
+    private GarbageCollectionRequest request;
+
+    @Mixin
+    private CassandraJMXSpec jmxSpec;
+
+    @Inject
+    private OperationsService operationsService;
+
+    public static void main(String[] args) {
+        System.exit(execute(new GarbageCollectionApplication(), args));
+    }
+
+    @Override
+    public void run() {
+        List<Module> additionalModules = new ArrayList<>(Esop.getStorageSpecificModules());
+        additionalModules.add(new GarbageCollectionModule());
+
+        Esop.init(this, jmxSpec, new HashSpec(), additionalModules);
+
+        final Operation<?> operation = operationsService.submitOperationRequest(request);
+
+        await().forever().until(() -> operation.state.isTerminalState());
+
+        if (operation.state == FAILED) {
+            throw new IllegalStateException(format("Garbage collection operation %s was not successful.", operation.id));
+        }
+    }
+}
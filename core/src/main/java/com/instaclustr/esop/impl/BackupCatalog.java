@@ -0,0 +1,477 @@
+package com.instaclustr.esop.impl;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
+import com.instaclustr.esop.impl.Manifest.ManifestAgeComparator;
+import com.instaclustr.esop.impl.Manifest.ManifestReporter;
+import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
+import com.instaclustr.esop.impl.StorageInteractor.VersionedText;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Catalog of backups of a node, stored next to its manifests. It holds every object which manifests of a node refer to,
+ * with its size and the number of references to it, and a summary of each manifest, so backups of a node can be listed
+ * and removed by reading one small object instead of downloading and parsing all its manifests.
+ * <p>
+ * A catalog is updated by a backup once its manifest is uploaded and by a removal once backups are deleted. Backups made
+ * without updating a catalog are detected by comparing names of manifests in a catalog with names of manifests of a node,
+ * a catalog is rebuilt from manifests if they differ.
+ * <p>
+ * A catalog is written only if it was not changed since it was read, by a conditional write of a storage, so concurrent
+ * writers do not lose each other's updates. A writer which loses is not retried except by a backup, a catalog which
+ * was not updated is rebuilt when it is loaded next time. Listing and dry garbage collection never write a catalog.
+ * <p>
+ * Catalogs are turned off by system property {@code backup.catalog} set to false.
+ */
+public class BackupCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackupCatalog.class);
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("backup.catalog", "true"));
+
+    public static final Path CATALOG_KEY = Paths.get("catalog", "catalog.json");
+
+    private static final int VERSION = 1;
+
+    // object keys to objects, in order of their addition
+    private final Map<String, CatalogObject> objects = new LinkedHashMap<>();
+
+    // file names of manifests to their summaries
+    private final Map<String, ManifestSummary> manifests = new LinkedHashMap<>();
+
+    // true if a catalog covers all manifests of a node so it can be stored
+    private boolean consistent = true;
+
+    // version of a stored catalog this one was read from, null if there was not any
+    private String storedVersion;
+
+    private static final int ADD_ATTEMPTS = 3;
+
+    public BackupCatalog() {
+    }
+
+    @JsonCreator
+    public BackupCatalog(@JsonProperty("version") final int version,
+                         @JsonProperty("objects") final List<CatalogObject> objects,
+                         @JsonProperty("manifests") final List<StoredManifest> manifests) {
+        if (version > VERSION) {
+            throw new IllegalStateException(format("Catalog of version %s is not supported, the latest supported version is %s", version, VERSION));
+        }
+
+        if (objects != null) {
+            for (final CatalogObject object : objects) {
+                this.objects.put(object.key, object);
+            }
+        }
+
+        if (manifests != null) {
+            for (final StoredManifest manifest : manifests) {
+                final List<CatalogObject> manifestObjects = new ArrayList<>(manifest.objects.length);
+
+                for (final int index : manifest.objects) {
+                    manifestObjects.add(objects.get(index));
+                }
+
+                this.manifests.put(manifest.name, new ManifestSummary(manifest.name, manifest.size, manifestObjects));
+            }
+        }
+    }
+
+    public static BackupCatalog from(final List<Manifest> manifests) {
+        final BackupCatalog catalog = new BackupCatalog();
+
+        for (final Manifest manifest : manifests) {
+            catalog.add(manifest);
+        }
+
+        return catalog;
+    }
+
+    /**
+     * Builds a catalog by streaming entries of manifests one by one, so no manifest is parsed.
+     */
+    public static BackupCatalog build(final List<LazyManifest> manifests) throws Exception {
+        final BackupCatalog catalog = new BackupCatalog();
+
+        for (final LazyManifest manifest : manifests) {
+            catalog.add(manifest);
+        }
+
+        return catalog;
+    }
+
+    /**
+     * Reads a catalog of a node if it covers all manifests of that node, otherwise it is built from all manifests.
+     * A catalog which was built is not stored.
+     */
+    public static BackupCatalog load(final StorageInteractor interactor, final ObjectMapper objectMapper) throws Exception {
+        if (!ENABLED) {
+            return build(interactor.listLazyManifests()).inconsistent();
+        }
+
+        final List<String> manifestNames;
+
+        try {
+            manifestNames = interactor.listManifestNames();
+        } catch (final UnsupportedOperationException ex) {
+            return from(interactor.listManifests()).inconsistent();
+        }
+
+        return load(interactor, objectMapper, manifestNames, false);
+    }
+
+    /**
+     * @param manifestNames file names of all manifests of a node, as listed by {@link StorageInteractor#listManifestNames()}
+     * @param store true if a catalog which was built is stored so next time it is read
+     */
+    public static BackupCatalog load(final StorageInteractor interactor,
+                                     final ObjectMapper objectMapper,
+                                     final List<String> manifestNames,
+                                     final boolean store) throws Exception {
+        if (!ENABLED) {
+            return build(interactor.listLazyManifests()).inconsistent();
+        }
+
+        String storedVersion = null;
+
+        try {
+            final Optional<VersionedText> text = interactor.readNodeAwareText(CATALOG_KEY);
+
+            if (text.isPresent()) {
+                storedVersion = text.get().version;
+
+                final BackupCatalog catalog = parse(objectMapper, text.get());
+
+                if (catalog.covers(manifestNames)) {
+                    logger.info("Using catalog of {} backups of node {}", manifestNames.size(), interactor.getStorageLocation().nodePath());
+                    return catalog;
+                }
+
+                logger.info("Catalog of backups of node {} does not cover all its manifests, it will be rebuilt", interactor.getStorageLocation().nodePath());
+            }
+        } catch (final Exception ex) {
+            logger.warn(format("Unable to read catalog of backups of node %s, it will be rebuilt: %s", interactor.getStorageLocation().nodePath(), ex.getMessage()));
+        }
+
+        final BackupCatalog catalog = build(interactor.listLazyManifests());
+
+        // manifests might be read from a local cache which does not have to be up to date
+        catalog.consistent = catalog.covers(manifestNames);
+        catalog.storedVersion = storedVersion;
+
+        if (store) {
+            catalog.store(interactor, objectMapper);
+        }
+
+        return catalog;
+    }
+
+    /**
+     * Adds a manifest to a catalog of a node, if there is a catalog. A catalog is not built here as that would
+     * need reading of all manifests, it is built upon the next removal of backups or garbage collection. A catalog
+     * changed meanwhile by another writer is read again and a manifest is added to that one.
+     */
+    public static void add(final StorageInteractor interactor, final ObjectMapper objectMapper, final Manifest manifest) {
+        if (!ENABLED) {
+            return;
+        }
+
+        try {
+            for (int attempt = 1; attempt <= ADD_ATTEMPTS; attempt++) {
+                final Optional<BackupCatalog> catalog = read(interactor, objectMapper);
+
+                if (!catalog.isPresent()) {
+                    logger.info("There is not any catalog of backups of node {}, it will be built upon next removal of backups or garbage collection",
+                                interactor.getStorageLocation().nodePath());
+                    return;
+                }
+
+                catalog.get().add(manifest);
+
+                if (catalog.get().store(interactor, objectMapper)) {
+                    return;
+                }
+            }
+
+            logger.warn("Backup {} was not added to catalog of backups of node {} as it was changed concurrently {} times, it will be rebuilt",
+                        manifest.getManifestName(), interactor.getStorageLocation().nodePath(), ADD_ATTEMPTS);
+        } catch (final UnsupportedOperationException ex) {
+            logger.debug("Catalog of backups is not supported by {}", interactor.getClass().getName());
+        } catch (final Exception ex) {
+            logger.warn(format("Unable to add backup %s to catalog of backups of node %s: %s",
+                               manifest.getManifestName(), interactor.getStorageLocation().nodePath(), ex.getMessage()));
+        }
+    }
+
+    public static Optional<BackupCatalog> read(final StorageInteractor interactor, final ObjectMapper objectMapper) throws Exception {
+        final Optional<VersionedText> catalog = interactor.readNodeAwareText(CATALOG_KEY);
+
+        if (!catalog.isPresent()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(parse(objectMapper, catalog.get()));
+    }
+
+    private static BackupCatalog parse(final ObjectMapper objectMapper, final VersionedText text) throws Exception {
+        final BackupCatalog catalog = objectMapper.readValue(text.text, BackupCatalog.class);
+        catalog.storedVersion = text.version;
+        return catalog;
+    }
+
+    /**
+     * Stores a catalog if it covers all manifests of a node and a stored catalog was not changed since this one was read,
+     * a failure to store it is not fatal.
+     *
+     * @return true if a catalog was stored
+     */
+    public boolean store(final StorageInteractor interactor, final ObjectMapper objectMapper) {
+        if (!consistent) {
+            return false;
+        }
+
+        try {
+            if (interactor.writeNodeAwareText(CATALOG_KEY, objectMapper.writeValueAsString(this), storedVersion)) {
+                // version of what was just written is not known, a catalog can not be stored again
+                consistent = false;
+                return true;
+            }
+
+            logger.info("Catalog of backups of node {} was changed concurrently, it was not stored", interactor.getStorageLocation().nodePath());
+        } catch (final UnsupportedOperationException ex) {
+            logger.debug("Catalog of backups is not supported by {}", interactor.getClass().getName());
+        } catch (final Exception ex) {
+            logger.warn(format("Unable to store catalog of backups of node %s: %s", interactor.getStorageLocation().nodePath(), ex.getMessage()));
+        }
+
+        return false;
+    }
+
+    public void add(final Manifest manifest) {
+        final String name = manifest.getManifest().objectKey.getFileName().toString();
+
+        if (manifests.containsKey(name)) {
+            return;
+        }
+
+        final List<CatalogObject> manifestObjects = new ArrayList<>();
+        final long[] size = new long[1];
+
+        manifest.forEachEntry(false, entry -> {
+            manifestObjects.add(reference(entry.objectKey.toString(), entry.size));
+            size[0] += entry.size;
+        });
+
+        manifests.put(name, new ManifestSummary(name, size[0], manifestObjects));
+    }
+
+    private void add(final LazyManifest manifest) throws Exception {
+        final String name = manifest.getFileName();
+
+        if (manifests.containsKey(name)) {
+            return;
+        }
+
+        final List<CatalogObject> manifestObjects = new ArrayList<>();
+        final long[] size = new long[1];
+
+        manifest.visitEntries((objectKey, entrySize, type) -> {
+            manifestObjects.add(reference(objectKey, entrySize));
+            size[0] += entrySize;
+        });
+
+        manifests.put(name, new ManifestSummary(name, size[0], manifestObjects));
+    }
+
+    private CatalogObject reference(final String objectKey, final long size) {
+        final CatalogObject object = objects.computeIfAbsent(objectKey, key -> new CatalogObject(key, size, 0));
+        object.references++;
+        return object;
+    }
+
+    public void remove(final ManifestReport report) {
+        final ManifestSummary summary = manifests.remove(report.manifest.objectKey.getFileName().toString());
+
+        if (summary == null) {
+            return;
+        }
+
+        for (final CatalogObject object : summary.objects) {
+            if (--object.references == 0) {
+                objects.remove(object.key);
+            }
+        }
+    }
+
+    /**
+     * @return true if a catalog has exactly the manifests of given file names
+     */
+    public boolean covers(final Collection<String> manifestNames) {
+        return manifests.keySet().equals(new HashSet<>(manifestNames));
+    }
+
+    /**
+     * @return number of distinct objects referenced by manifests of a catalog
+     */
+    public int objectCount() {
+        return objects.size();
+    }
+
+    public AllManifestsReport report() {
+        return report(manifests.keySet());
+    }
+
+    /**
+     * Reports only manifests of given file names, newest first, totals are over all manifests of a catalog.
+     * Reclaimable space of a manifest reflects the catalog at the time of this call.
+     */
+    public AllManifestsReport report(final Collection<String> manifestNames) {
+        final List<String> names = new ArrayList<>();
+
+        for (final String name : manifestNames) {
+            if (manifests.containsKey(name)) {
+                names.add(name);
+            }
+        }
+
+        names.sort(new ManifestAgeComparator());
+
+        final ManifestReporter reporter = new ManifestReporter();
+        final List<ManifestReport> reports = new ArrayList<>();
+
+        for (final String name : names) {
+            final ManifestSummary summary = manifests.get(name);
+            final ManifestReport report = reporter.report(name);
+
+            report.files = summary.objects.size();
+            report.size = summary.size;
+
+            for (final CatalogObject object : summary.objects) {
+                if (object.references == 1) {
+                    report.reclaimableSpace += object.size;
+                    report.removableEntries.add(object.key);
+                }
+            }
+
+            reports.add(report);
+        }
+
+        final AllManifestsReport report = new AllManifestsReport();
+        report.totalFiles = objects.size();
+        report.totalManifests = manifests.size();
+        report.totalSize = objects.values().stream().mapToLong(object -> object.size).sum();
+        report.reports = reports;
+
+        return report;
+    }
+
+    @JsonProperty("version")
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @JsonProperty("objects")
+    public Collection<CatalogObject> getObjects() {
+        return objects.values();
+    }
+
+    // objects of a manifest are stored as their positions in the list of all objects
+    @JsonProperty("manifests")
+    public List<StoredManifest> getManifests() {
+        final Map<CatalogObject, Integer> indexes = new IdentityHashMap<>();
+
+        for (final CatalogObject object : objects.values()) {
+            indexes.put(object, indexes.size());
+        }
+
+        final List<StoredManifest> storedManifests = new ArrayList<>();
+
+        for (final ManifestSummary summary : manifests.values()) {
+            final int[] manifestObjects = new int[summary.objects.size()];
+
+            for (int i = 0; i < manifestObjects.length; i++) {
+                manifestObjects[i] = indexes.get(summary.objects.get(i));
+            }
+
+            storedManifests.add(new StoredManifest(summary.name, summary.size, manifestObjects));
+        }
+
+        return storedManifests;
+    }
+
+    private BackupCatalog inconsistent() {
+        consistent = false;
+        return this;
+    }
+
+    public static class CatalogObject {
+
+        @JsonProperty("key")
+        public final String key;
+
+        @JsonProperty("size")
+        public final long size;
+
+        @JsonProperty("references")
+        public int references;
+
+        @JsonCreator
+        public CatalogObject(@JsonProperty("key") final String key,
+                             @JsonProperty("size") final long size,
+                             @JsonProperty("references") final int references) {
+            this.key = key;
+            this.size = size;
+            this.references = references;
+        }
+    }
+
+    public static class StoredManifest {
+
+        @JsonProperty("name")
+        public final String name;
+
+        @JsonProperty("size")
+        public final long size;
+
+        @JsonProperty("objects")
+        public final int[] objects;
+
+        @JsonCreator
+        public StoredManifest(@JsonProperty("name") final String name,
+                              @JsonProperty("size") final long size,
+                              @JsonProperty("objects") final int[] objects) {
+            this.name = name;
+            this.size = size;
+            this.objects = objects == null ? new int[0] : objects;
+        }
+    }
+
+    private static class ManifestSummary {
+
+        private final String name;
+        private final long size;
+        private final List<CatalogObject> objects;
+
+        private ManifestSummary(final String name, final long size, final List<CatalogObject> objects) {
+            this.name = name;
+            this.size = size;
+            this.objects = objects;
+        }
+    }
+}
@@ -370,6 +370,13 @@ public class CassandraData {
         }
     }
 
+    /**
+     * @return copy of parsed data without entities of a request set on it
+     */
+    public CassandraData copy() {
+        return new CassandraData(tableIdsMap, fullPathsMap);
+    }
+
     private static CassandraData empty() {
         return new CassandraData(Collections.emptyMap(), Collections.emptyMap());
     }
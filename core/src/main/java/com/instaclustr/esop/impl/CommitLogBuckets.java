@@ -0,0 +1,67 @@
+package com.instaclustr.esop.impl;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout of archived commit logs of a node. A commit log is uploaded as
+ * {@code commitlog/<yyyy-MM-dd>/<name>.<last modified>}, in a bucket of the day (UTC) it was last modified,
+ * so commit logs of some time window are listed by listing buckets of days of that window only.
+ * <p>
+ * Commit logs uploaded before buckets were introduced are right under {@code commitlog}, they are all
+ * listed by {@link #LEGACY_PREFIX}, which does not list any bucket.
+ */
+public final class CommitLogBuckets {
+
+    public static final Path COMMIT_LOGS = Paths.get("commitlog");
+
+    public static final Path LEGACY_PREFIX = COMMIT_LOGS.resolve("CommitLog-");
+
+    private static final DateTimeFormatter BUCKET_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+
+    private CommitLogBuckets() {
+    }
+
+    /**
+     * @param commitLogName file name of a commit log, e.g. CommitLog-7-1602074493574.log
+     * @param lastModified  last modification of a commit log in milliseconds
+     * @return object key to upload a commit log to
+     */
+    public static Path objectKey(final String commitLogName, final long lastModified) {
+        return bucket(lastModified).resolve(commitLogName + "." + lastModified);
+    }
+
+    /**
+     * @return prefix of a bucket of commit logs last modified at given time
+     */
+    public static Path bucket(final long timestamp) {
+        return COMMIT_LOGS.resolve(BUCKET_FORMAT.format(Instant.ofEpochMilli(timestamp)));
+    }
+
+    /**
+     * @return prefixes of buckets of all days from {@code from} to {@code to}, both including, oldest first
+     */
+    public static List<Path> buckets(final long from, final long to) {
+        final List<Path> buckets = new ArrayList<>();
+
+        LocalDate day = day(from);
+        final LocalDate last = day(to);
+
+        while (!day.isAfter(last)) {
+            buckets.add(COMMIT_LOGS.resolve(BUCKET_FORMAT.format(day)));
+            day = day.plusDays(1);
+        }
+
+        return buckets;
+    }
+
+    private static LocalDate day(final long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+}
@@ -0,0 +1,63 @@
+package com.instaclustr.esop.impl;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.MoreObjects;
+import com.instaclustr.esop.impl.Manifest.ManifestAgeComparator;
+import com.instaclustr.esop.impl.ManifestCodec.EntryVisitor;
+import com.instaclustr.esop.impl.ManifestEntry.Type;
+
+/**
+ * Manifest known just by its file name. Its name and timestamp are taken from its file name, so manifests might be
+ * selected without reading them, and only selected ones are read and parsed.
+ */
+public class LazyManifest {
+
+    private final String fileName;
+    private final Path localFile;
+    private final ObjectMapper objectMapper;
+
+    public LazyManifest(final String fileName, final Path localFile, final ObjectMapper objectMapper) {
+        this.fileName = fileName;
+        this.localFile = localFile;
+        this.objectMapper = objectMapper;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getTimestamp() {
+        return ManifestAgeComparator.extractTimestamp(fileName);
+    }
+
+    /**
+     * @return manifest read from its file, it is read again upon each call, so it is not held in memory longer than needed
+     */
+    public Manifest load() throws Exception {
+        final Manifest manifest = Manifest.read(localFile, objectMapper);
+        manifest.setManifest(new ManifestEntry(Paths.get("manifests", fileName), localFile, Type.FILE, null, null));
+        return manifest;
+    }
+
+    /**
+     * Visits entries of a manifest as they are read, without parsing a manifest.
+     */
+    public void visitEntries(final EntryVisitor visitor) throws Exception {
+        try (final InputStream inputStream = Files.newInputStream(localFile)) {
+            ManifestCodec.visitEntries(inputStream, objectMapper, visitor);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("fileName", fileName)
+            .add("localFile", localFile)
+            .toString();
+    }
+}
@@ -1,6 +1,8 @@
 package com.instaclustr.esop.impl;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -8,12 +10,16 @@ import java.sql.Timestamp;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -144,20 +150,35 @@ public class Manifest implements Cloneable {
 
     @JsonIgnore
     public long getTotalSize() {
-        return getManifestEntries(false).stream().map(e -> e.size).reduce(Long::sum).orElse(0L);
+        return getTotalSize(false);
+    }
+
+    public long getTotalSize(final boolean withManifestItself) {
+        final long[] totalSize = new long[1];
+        forEachEntry(withManifestItself, entry -> totalSize[0] += entry.size);
+        return totalSize[0];
     }
 
     @JsonIgnore
     public List<ManifestEntry> getManifestEntries(final boolean withManifestItself) {
         final List<ManifestEntry> entries = new ArrayList<>();
+        forEachEntry(withManifestItself, entries::add);
+        return entries;
+    }
 
-        snapshot.getKeyspaces().forEach((s, keyspace) -> keyspace.getTables().forEach((s1, table) -> entries.addAll(table.getEntries())));
+    /**
+     * Visits entries of all tables without copying them to any list.
+     */
+    public void forEachEntry(final boolean withManifestItself, final Consumer<ManifestEntry> consumer) {
+        for (final Keyspace keyspace : snapshot.getKeyspaces().values()) {
+            for (final Table table : keyspace.getTables().values()) {
+                table.forEachEntry(consumer);
+            }
+        }
 
         if (withManifestItself && manifest != null) {
-            entries.add(manifest);
+            consumer.accept(manifest);
         }
-
-        return entries;
     }
 
     @JsonIgnore
@@ -232,19 +253,23 @@ public class Manifest implements Cloneable {
 
     public static void write(final Manifest manifest, final Path localManifestPath, final ObjectMapper objectMapper) throws Exception {
         Files.createDirectories(localManifestPath.getParent());
-        objectMapper.writeValue(localManifestPath.toFile(), manifest);
+        try (final OutputStream outputStream = Files.newOutputStream(localManifestPath)) {
+            ManifestCodec.write(manifest, outputStream, objectMapper, ManifestCodec.COMPACT);
+        }
     }
 
     public static String write(final Manifest manifest, final ObjectMapper objectMapper) throws Exception {
-        return objectMapper.writeValueAsString(manifest);
+        return ManifestCodec.write(manifest, objectMapper);
     }
 
     public static Manifest read(final Path localManifestPath, final ObjectMapper objectMapper) throws Exception {
-        return objectMapper.readValue(localManifestPath.toFile(), Manifest.class);
+        try (final InputStream inputStream = Files.newInputStream(localManifestPath)) {
+            return ManifestCodec.read(inputStream, objectMapper);
+        }
     }
 
     public static Manifest read(final String manifest, final ObjectMapper objectMapper) throws Exception {
-        return objectMapper.readValue(manifest, Manifest.class);
+        return ManifestCodec.read(manifest, objectMapper);
     }
 
     public static Path getLocalManifestPath(final String snapshotTag) {
@@ -366,12 +391,15 @@ public class Manifest implements Cloneable {
 
         snapshot.getKeyspaces().forEach((ksName, keyspace) -> {
             keyspace.getTables().forEach((tableName, table) -> {
-                table.getEntries().forEach(entry -> {
+                // shared by all entries of a table
+                final KeyspaceTable keyspaceTable = new KeyspaceTable(ksName, tableName);
+
+                table.forEachEntry(entry -> {
                     final Path objectKey = entry.objectKey;
                     final int hashPathPart = SSTableUtils.isSecondaryIndexManifest(objectKey) ? 4 : 3;
                     // localFile will be here, for example, "keyspace/table-with-id/me-5-big-Data.db"
                     entry.localFile = objectKey.subpath(1, hashPathPart).resolve(objectKey.getFileName());
-                    entry.keyspaceTable = new KeyspaceTable(ksName, tableName);
+                    entry.keyspaceTable = keyspaceTable;
                 });
             });
         });
@@ -379,7 +407,7 @@ public class Manifest implements Cloneable {
 
     public static class ManifestAgeComparator implements Comparator<String> {
 
-        private Long extractTimestamp(String manifestPath) {
+        public static Long extractTimestamp(String manifestPath) {
             final String timestampWithFileSuffix = manifestPath.substring(manifestPath.lastIndexOf("-") + 1);
             final String timestamp = timestampWithFileSuffix.substring(0, timestampWithFileSuffix.lastIndexOf("."));
             return Long.parseLong(timestamp);
@@ -390,7 +418,7 @@ public class Manifest implements Cloneable {
             final long t1 = extractTimestamp(manifestPath1);
             final long t2 = extractTimestamp(manifestPath2);
             // older at the bottom, newer at top
-            return (int) (t2 - t1);
+            return Long.compare(t2, t1);
         }
     }
 
@@ -404,67 +432,76 @@ public class Manifest implements Cloneable {
         }
     }
 
+    /**
+     * Counts references of manifests to their entries. Entries are keyed by their object keys, each key is held
+     * just once and it is shared by all manifests referencing it, so a lookup of an entry takes constant time.
+     */
     public static class ManifestFilesCounter {
 
-        public final Map<String, List<String>> files = new ConcurrentHashMap<>();
-        public final Map<String, Long> sizes = new ConcurrentHashMap<>();
+        private final Map<String, EntryReferences> references = new HashMap<>();
+
+        private static final class EntryReferences {
 
-        public List<String> getManifestsOfEntry(final String manifestEntry) {
-            return files.get(manifestEntry);
+            private final String key;
+            private final long size;
+            private int count;
+
+            private EntryReferences(final String key, final long size) {
+                this.key = key;
+                this.size = size;
+            }
         }
 
         public boolean isOnlyInOneManifest(final String manifestEntry) {
-            return files.entrySet().stream().filter(entry -> entry.getKey().equals(manifestEntry)).findFirst().map(e -> e.getValue().size()).orElse(0) == 1;
+            return count(manifestEntry) == 1;
         }
 
         public boolean isInMultipleManifests(final String manifestEntry) {
-            return files.entrySet().stream().filter(entry -> entry.getKey().equals(manifestEntry)).findFirst().map(e -> e.getValue().size()).orElse(0) > 1;
+            return count(manifestEntry) > 1;
         }
 
         public int count(final String manifestEntry) {
-            return files.entrySet().stream()
-                .filter(entry -> entry.getKey().equals(manifestEntry))
-                .map(entry -> entry.getValue().size())
-                .reduce(Integer::sum).orElse(0);
+            final EntryReferences entryReferences = references.get(manifestEntry);
+            return entryReferences == null ? 0 : entryReferences.count;
         }
 
         public void add(final String manifestName, final ManifestEntry manifestEntry) {
             final String key = manifestEntry.objectKey.toString();
-            if (files.containsKey(key)) {
-                files.get(key).add(manifestName);
-            } else {
-                files.put(key, new ArrayList<String>() {{
-                    add(manifestName);
-                }});
-                // we put it into sizes map just once
-                // as it might be technically present in all manifests multiple times
-                // but it is persisted just once
-                sizes.put(key, manifestEntry.size);
-            }
+            // we keep its size just once
+            // as it might be technically present in all manifests multiple times
+            // but it is persisted just once
+            references.computeIfAbsent(key, k -> new EntryReferences(k, manifestEntry.size)).count++;
+        }
+
+        public void add(final String objectKey, final long size) {
+            references.computeIfAbsent(objectKey, k -> new EntryReferences(k, size)).count++;
         }
 
         public void add(final Manifest manifest) {
             final String manifestName = manifest.manifest.objectKey.getFileName().toString();
             // with schemas but without manifest itself
-            manifest.getManifestEntries(false).forEach(m -> add(manifestName, m));
+            manifest.forEachEntry(false, m -> add(manifestName, m));
         }
 
         public int getNumberOfEntries() {
-            return files.keySet().size();
+            return references.size();
         }
 
         public long getSize() {
-            return sizes.values().stream().reduce(Long::sum).orElse(0L);
+            long size = 0;
+
+            for (final EntryReferences entryReferences : references.values()) {
+                size += entryReferences.size;
+            }
+
+            return size;
         }
 
         public long getReclaimableSpace(final Manifest m) {
             long reclaimableSpace = 0;
 
-            for (final ManifestEntry manifestEntry : m.getManifestEntries()) {
-                final String key = manifestEntry.objectKey.toString();
-                if (isOnlyInOneManifest(key)) {
-                    reclaimableSpace += sizes.getOrDefault(key, 0L);
-                }
+            for (final EntryReferences entryReferences : getEntriesOnlyIn(m)) {
+                reclaimableSpace += entryReferences.size;
             }
 
             return reclaimableSpace;
@@ -472,28 +509,54 @@ public class Manifest implements Cloneable {
 
         public List<String> getRemovableEntries(final Manifest m) {
             final List<String> removableEntries = new ArrayList<>();
-            for (final ManifestEntry manifestEntry : m.getManifestEntries()) {
-                final String key = manifestEntry.objectKey.toString();
-                if (isOnlyInOneManifest(key)) {
-                    removableEntries.add(manifestEntry.objectKey.toString());
-                }
+
+            for (final EntryReferences entryReferences : getEntriesOnlyIn(m)) {
+                removableEntries.add(entryReferences.key);
             }
 
             return removableEntries;
         }
+
+        private List<EntryReferences> getEntriesOnlyIn(final Manifest m) {
+            final List<EntryReferences> entries = new ArrayList<>();
+
+            m.forEachEntry(true, manifestEntry -> {
+                final EntryReferences entryReferences = references.get(manifestEntry.objectKey.toString());
+
+                if (entryReferences != null && entryReferences.count == 1) {
+                    entries.add(entryReferences);
+                }
+            });
+
+            return entries;
+        }
     }
 
     public static class ManifestReporter {
 
         public ManifestReport report(final Manifest manifest) {
             final ManifestReport report = new ManifestReport();
-            report.files = manifest.getManifestEntries(false).size();
+            final int[] files = new int[1];
+            manifest.forEachEntry(false, entry -> files[0]++);
+            report.files = files[0];
             report.size = manifest.getTotalSize();
             report.name = manifest.getManifestName();
             report.manifest = manifest.manifest;
             return report;
         }
 
+        /**
+         * @return report of a manifest known just by its file name, without any figures about its files
+         */
+        public ManifestReport report(final String manifestFileName) {
+            final ManifestReport report = new ManifestReport();
+            report.name = manifestFileName.substring(0, manifestFileName.lastIndexOf("."));
+            report.manifest = new ManifestEntry(Paths.get("manifests", manifestFileName), null, Type.FILE, null, null);
+            report.unixtimestamp = ManifestAgeComparator.extractTimestamp(manifestFileName);
+            report.timestamp = new Timestamp(report.unixtimestamp).toLocalDateTime().toString();
+            return report;
+        }
+
         public static class ManifestReport {
 
             public int files;
@@ -675,13 +738,63 @@ public class Manifest implements Cloneable {
 
         public static AllManifestsReport report(List<Manifest> manifests) {
             final ManifestFilesCounter counter = new ManifestFilesCounter();
-            final ManifestReporter manifestReporter = new ManifestReporter();
-            final List<ManifestReport> reports = new ArrayList<>();
 
             for (final Manifest m : manifests) {
                 counter.add(m);
             }
 
+            return report(counter, manifests);
+        }
+
+        /**
+         * Reports only selected manifests. All manifests are read one by one as references to their entries
+         * are counted over all of them, but only selected manifests are parsed and held in memory.
+         *
+         * @param manifests         all manifests of a node, newest first
+         * @param selectedFileNames file names of manifests to report
+         */
+        public static AllManifestsReport report(final List<LazyManifest> manifests, final Collection<String> selectedFileNames) throws Exception {
+            final Set<String> selected = new HashSet<>(selectedFileNames);
+            final ManifestFilesCounter counter = new ManifestFilesCounter();
+            final List<Manifest> selectedManifests = new ArrayList<>();
+
+            for (final LazyManifest lazyManifest : manifests) {
+                if (selected.contains(lazyManifest.getFileName())) {
+                    final Manifest manifest = lazyManifest.load();
+                    counter.add(manifest);
+                    selectedManifests.add(manifest);
+                } else {
+                    // entries of a manifest which is not reported are just counted as they are streamed
+                    lazyManifest.visitEntries((objectKey, size, type) -> counter.add(objectKey, size));
+                }
+            }
+
+            final AllManifestsReport report = report(counter, selectedManifests);
+            report.totalManifests = manifests.size();
+
+            return report;
+        }
+
+        /**
+         * @return report of manifests known just by their file names, nothing is read
+         */
+        public static AllManifestsReport names(final List<String> manifestFileNames) {
+            final ManifestReporter manifestReporter = new ManifestReporter();
+            final AllManifestsReport report = new AllManifestsReport();
+
+            for (final String manifestFileName : manifestFileNames) {
+                report.reports.add(manifestReporter.report(manifestFileName));
+            }
+
+            report.totalManifests = report.reports.size();
+
+            return report;
+        }
+
+        private static AllManifestsReport report(final ManifestFilesCounter counter, final List<Manifest> manifests) {
+            final ManifestReporter manifestReporter = new ManifestReporter();
+            final List<ManifestReport> reports = new ArrayList<>();
+
             for (final Manifest m : manifests) {
                 final ManifestReport report = manifestReporter.report(m);
                 report.reclaimableSpace = counter.getReclaimableSpace(m);
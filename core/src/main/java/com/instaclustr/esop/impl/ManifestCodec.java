@@ -0,0 +1,348 @@
+package com.instaclustr.esop.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instaclustr.esop.impl.ManifestEntry.Type;
+import com.instaclustr.esop.impl.Snapshots.Snapshot;
+import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace;
+import com.instaclustr.esop.impl.Snapshots.Snapshot.Keyspace.Table;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads and writes manifests as streams, so neither a manifest nor its JSON tree is held in memory more than once.
+ * <p>
+ * A manifest is written either as plain JSON or in a compact encoding. A compact manifest is the same JSON document,
+ * but object keys of entries of a table are relative to the longest directory they share, which is written
+ * once per table as its {@code keyPrefix}, and the document is gzipped. A compact manifest written as a string is
+ * encoded in Base64 too, so it is still text, but manifests are uploaded from and downloaded to files, where it is not.
+ * Both encodings are read regardless of how manifests are written, a compact manifest is recognized as it does not
+ * start with a JSON object, and one encoded in Base64 as it does not start with gzip magic bytes either.
+ * <p>
+ * Manifests are written in the compact encoding when system property {@code manifest.compact} is set to true.
+ * Versions of Esop which do not know the compact encoding can not read such manifests.
+ */
+public final class ManifestCodec {
+
+    public static final boolean COMPACT = Boolean.parseBoolean(System.getProperty("manifest.compact", "false"));
+
+    // how far leading whitespace of plain JSON is looked through
+    private static final int MARK_LIMIT = 8192;
+
+    // first byte of gzip magic bytes, it is not a character of Base64 nor of JSON
+    private static final int GZIP_MAGIC = GZIPInputStream.GZIP_MAGIC & 0xff;
+
+    private ManifestCodec() {
+    }
+
+    /**
+     * Visits an entry of a manifest without creating any {@link ManifestEntry}.
+     */
+    public interface EntryVisitor {
+
+        void visit(final String objectKey, final long size, final Type type);
+    }
+
+    public static String write(final Manifest manifest, final ObjectMapper objectMapper) throws IOException {
+        return write(manifest, objectMapper, COMPACT);
+    }
+
+    public static String write(final Manifest manifest, final ObjectMapper objectMapper, final boolean compact) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        write(manifest, compact ? Base64.getEncoder().wrap(outputStream) : outputStream, objectMapper, compact);
+        return new String(outputStream.toByteArray(), compact ? US_ASCII : UTF_8);
+    }
+
+    /**
+     * Writes a manifest to a stream and closes it.
+     */
+    public static void write(final Manifest manifest, final OutputStream outputStream, final ObjectMapper objectMapper, final boolean compact) throws IOException {
+        if (!compact) {
+            objectMapper.writeValue(outputStream, manifest);
+            return;
+        }
+
+        try (final OutputStream compactStream = new GZIPOutputStream(outputStream);
+             final JsonGenerator generator = objectMapper.getFactory().createGenerator(compactStream)) {
+            writeCompact(manifest, generator);
+        }
+    }
+
+    public static Manifest read(final String manifest, final ObjectMapper objectMapper) throws IOException {
+        return read(new ByteArrayInputStream(manifest.getBytes(UTF_8)), objectMapper);
+    }
+
+    public static Manifest read(final InputStream inputStream, final ObjectMapper objectMapper) throws IOException {
+        try (final InputStream decoded = decode(inputStream)) {
+            return objectMapper.readValue(decoded, Manifest.class);
+        }
+    }
+
+    /**
+     * Visits entries of all tables of a manifest, as they are streamed, in either encoding.
+     */
+    public static void visitEntries(final InputStream inputStream, final ObjectMapper objectMapper, final EntryVisitor visitor) throws IOException {
+        try (final JsonParser parser = objectMapper.getFactory().createParser(decode(inputStream))) {
+            parser.nextToken();
+            forEachField(parser, manifestField -> {
+                if (!"snapshot".equals(manifestField)) {
+                    parser.skipChildren();
+                    return;
+                }
+
+                forEachField(parser, snapshotField -> {
+                    if (!"keyspaces".equals(snapshotField)) {
+                        parser.skipChildren();
+                        return;
+                    }
+
+                    forEachField(parser, keyspace -> forEachField(parser, keyspaceField -> {
+                        if (!"tables".equals(keyspaceField)) {
+                            parser.skipChildren();
+                            return;
+                        }
+
+                        forEachField(parser, table -> visitTable(parser, visitor));
+                    }));
+                });
+            });
+        }
+    }
+
+    private static void visitTable(final JsonParser parser, final EntryVisitor visitor) throws IOException {
+        final String[] keyPrefix = new String[1];
+        final boolean[] visited = new boolean[1];
+
+        forEachField(parser, tableField -> {
+            switch (tableField) {
+                case "keyPrefix":
+                    if (visited[0]) {
+                        throw new IOException("Key prefix of a table has to precede its entries");
+                    }
+                    keyPrefix[0] = parser.getValueAsString();
+                    break;
+                case "sstables":
+                    forEachField(parser, sstable -> {
+                        visited[0] = true;
+                        visitEntries(parser, keyPrefix[0], visitor);
+                    });
+                    break;
+                // manifests before 2.0.0
+                case "entries":
+                    visited[0] = true;
+                    visitEntries(parser, keyPrefix[0], visitor);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        });
+    }
+
+    private static void visitEntries(final JsonParser parser, final String keyPrefix, final EntryVisitor visitor) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            final String[] objectKey = new String[1];
+            final long[] size = new long[1];
+            final Type[] type = new Type[1];
+
+            forEachField(parser, entryField -> {
+                switch (entryField) {
+                    case "objectKey":
+                        objectKey[0] = parser.getValueAsString();
+                        break;
+                    case "size":
+                        size[0] = parser.getValueAsLong();
+                        break;
+                    case "type":
+                        type[0] = parser.currentToken() == JsonToken.VALUE_NULL ? null : Type.valueOf(parser.getValueAsString());
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            });
+
+            visitor.visit(keyPrefix == null ? objectKey[0] : keyPrefix + "/" + objectKey[0], size[0], type[0]);
+        }
+    }
+
+    private interface FieldConsumer {
+
+        // a parser is at a value of a field, a consumer has to consume it entirely
+        void accept(final String fieldName) throws IOException;
+    }
+
+    private static void forEachField(final JsonParser parser, final FieldConsumer consumer) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.currentName();
+            parser.nextToken();
+            consumer.accept(fieldName);
+        }
+    }
+
+    private static InputStream decode(final InputStream inputStream) throws IOException {
+        final BufferedInputStream buffered = new BufferedInputStream(inputStream);
+        buffered.mark(MARK_LIMIT);
+
+        int first = buffered.read();
+
+        while (first != -1 && Character.isWhitespace(first)) {
+            first = buffered.read();
+        }
+
+        buffered.reset();
+
+        if (first == -1 || first == '{') {
+            return buffered;
+        }
+
+        if (first == GZIP_MAGIC) {
+            return new GZIPInputStream(buffered);
+        }
+
+        return new GZIPInputStream(Base64.getMimeDecoder().wrap(buffered));
+    }
+
+    private static void writeCompact(final Manifest manifest, final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+
+        final Snapshot snapshot = manifest.getSnapshot();
+
+        if (snapshot != null) {
+            generator.writeObjectFieldStart("snapshot");
+            writeStringField(generator, "name", snapshot.getName());
+            generator.writeObjectFieldStart("keyspaces");
+
+            for (final Map.Entry<String, Keyspace> keyspace : snapshot.getKeyspaces().entrySet()) {
+                generator.writeObjectFieldStart(keyspace.getKey());
+                generator.writeObjectFieldStart("tables");
+
+                for (final Map.Entry<String, Table> table : keyspace.getValue().getTables().entrySet()) {
+                    generator.writeObjectFieldStart(table.getKey());
+                    writeTable(table.getValue(), generator);
+                    generator.writeEndObject();
+                }
+
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+
+        if (manifest.getTokens() != null) {
+            generator.writeArrayFieldStart("tokens");
+
+            for (final String token : manifest.getTokens()) {
+                generator.writeString(token);
+            }
+
+            generator.writeEndArray();
+        }
+
+        writeStringField(generator, "schemaVersion", manifest.getSchemaVersion());
+        generator.writeNumberField("size", manifest.getSize());
+        generator.writeEndObject();
+    }
+
+    private static void writeTable(final Table table, final JsonGenerator generator) throws IOException {
+        writeStringField(generator, "id", table.getId());
+        writeStringField(generator, "schemaContent", table.getSchemaContent());
+
+        final Path keyPrefix = getKeyPrefix(table.getSstables().values());
+
+        if (keyPrefix != null) {
+            generator.writeStringField("keyPrefix", keyPrefix.toString());
+        }
+
+        generator.writeObjectFieldStart("sstables");
+
+        for (final Map.Entry<String, List<ManifestEntry>> sstable : table.getSstables().entrySet()) {
+            generator.writeArrayFieldStart(sstable.getKey());
+
+            for (final ManifestEntry entry : sstable.getValue()) {
+                generator.writeStartObject();
+                generator.writeStringField("objectKey", keyPrefix == null ? entry.objectKey.toString() : keyPrefix.relativize(entry.objectKey).toString());
+                generator.writeNumberField("size", entry.size);
+                writeStringField(generator, "type", entry.type == null ? null : entry.type.name());
+                writeStringField(generator, "hash", entry.hash);
+                writeStringField(generator, "kmsKeyId", entry.kmsKeyId);
+                generator.writeEndObject();
+            }
+
+            generator.writeEndArray();
+        }
+
+        generator.writeEndObject();
+    }
+
+    // null values are left out, they are null when read anyway
+    private static void writeStringField(final JsonGenerator generator, final String fieldName, final String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(fieldName, value);
+        }
+    }
+
+    /**
+     * @return the longest directory all entries are in, null if there is not any
+     */
+    private static Path getKeyPrefix(final Collection<List<ManifestEntry>> entries) {
+        Path prefix = null;
+        boolean first = true;
+
+        for (final List<ManifestEntry> sstableEntries : entries) {
+            for (final ManifestEntry entry : sstableEntries) {
+                final Path directory = entry.objectKey.getParent();
+
+                if (directory == null || directory.isAbsolute()) {
+                    return null;
+                }
+
+                prefix = first ? directory : commonPrefix(prefix, directory);
+                first = false;
+
+                if (prefix == null) {
+                    return null;
+                }
+            }
+        }
+
+        return prefix;
+    }
+
+    private static Path commonPrefix(final Path path1, final Path path2) {
+        int names = 0;
+
+        while (names < Math.min(path1.getNameCount(), path2.getNameCount()) && path1.getName(names).equals(path2.getName(names))) {
+            names++;
+        }
+
+        return names == 0 ? null : path1.subpath(0, names);
+    }
+}
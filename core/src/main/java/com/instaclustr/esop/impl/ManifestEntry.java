@@ -45,7 +45,7 @@ public class ManifestEntry implements Cloneable {
 
     public String hash;
 
-    @JsonIgnore
+    // key an entry was encrypted with upon upload, not present when not encrypted
     public String kmsKeyId;
 
     @JsonIgnore
@@ -81,7 +81,8 @@ public class ManifestEntry implements Cloneable {
         this.type = type;
         this.keyspaceTable = keyspaceTable;
         this.hash = hash;
-        this.kmsKeyId = kmsKeyId;
+        // the same key is set on every entry of a backup, it is held just once
+        this.kmsKeyId = kmsKeyId == null ? null : kmsKeyId.intern();
 
         try {
             if (size == 0) {
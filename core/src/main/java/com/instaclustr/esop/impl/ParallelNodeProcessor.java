@@ -0,0 +1,129 @@
+package com.instaclustr.esop.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Processes nodes of a global request in parallel, at most {@code global.request.concurrency} nodes at once.
+ * <p>
+ * An interactor keeps the node it is updated to, so it can not be used by more nodes at once. Each worker creates its
+ * interactor once and uses it for all nodes it processes, so remote clients are shared by nodes of a worker rather than
+ * created for each node. A failure of a node does not stop others, it is returned as a result of that node.
+ */
+public class ParallelNodeProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelNodeProcessor.class);
+
+    public static final int CONCURRENCY = Integer.parseInt(System.getProperty("global.request.concurrency", "4"));
+
+    private final int concurrency;
+
+    public ParallelNodeProcessor() {
+        this(CONCURRENCY);
+    }
+
+    public ParallelNodeProcessor(final int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * @return results of nodes in the order of nodes
+     */
+    public <T> List<NodeResult<T>> process(final List<StorageLocation> nodes,
+                                           final InteractorSupplier interactorSupplier,
+                                           final NodeTask<T> task) throws Exception {
+        if (nodes.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final Queue<StorageInteractor> interactors = new ConcurrentLinkedQueue<>();
+        final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(Math.min(concurrency, nodes.size()));
+
+        try {
+            final List<ListenableFuture<NodeResult<T>>> futures = new ArrayList<>();
+
+            for (final StorageLocation node : nodes) {
+                futures.add(executorService.submit(() -> {
+                    StorageInteractor interactor = interactors.poll();
+
+                    try {
+                        // there are never more interactors than workers as a worker returns its interactor once a node is done
+                        if (interactor == null) {
+                            interactor = interactorSupplier.get();
+                        }
+
+                        return NodeResult.of(node, task.process(interactor, node));
+                    } catch (final Exception ex) {
+                        logger.error(format("Unable to process node %s - %s", node.nodePath(), ex.getMessage()), ex);
+                        return NodeResult.<T>failed(node, ex);
+                    } finally {
+                        if (interactor != null) {
+                            interactors.add(interactor);
+                        }
+                    }
+                }));
+            }
+
+            return Futures.allAsList(futures).get();
+        } finally {
+            executorService.shutdownNow();
+
+            for (final StorageInteractor interactor : interactors) {
+                try {
+                    interactor.close();
+                } catch (final Exception ex) {
+                    logger.warn(format("Unable to close an interactor: %s", ex.getMessage()));
+                }
+            }
+        }
+    }
+
+    public interface InteractorSupplier {
+
+        StorageInteractor get() throws Exception;
+    }
+
+    public interface NodeTask<T> {
+
+        /**
+         * @param interactor interactor used by this node only until this method returns
+         */
+        T process(final StorageInteractor interactor, final StorageLocation node) throws Exception;
+    }
+
+    public static class NodeResult<T> {
+
+        public final StorageLocation node;
+        public final T result;
+        public final Exception error;
+
+        private NodeResult(final StorageLocation node, final T result, final Exception error) {
+            this.node = node;
+            this.result = result;
+            this.error = error;
+        }
+
+        public static <T> NodeResult<T> of(final StorageLocation node, final T result) {
+            return new NodeResult<>(node, result, null);
+        }
+
+        public static <T> NodeResult<T> failed(final StorageLocation node, final Exception error) {
+            return new NodeResult<>(node, null, error);
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+    }
+}
@@ -111,6 +111,8 @@ public class SSTableUtils {
         }
 
         final HashService hashService = new HashServiceImpl(hashSpec);
+        // shared by all entries of a table
+        final KeyspaceTable keyspaceTable = new KeyspaceTable(keyspace, table);
 
         return Files.list(snapshotDirectory)
                     .flatMap(path -> {
@@ -156,7 +158,7 @@ public class SSTableUtils {
                                                               sstableComponent,
                                                               ManifestEntry.Type.FILE,
                                                               hashOfFile,
-                                                              new KeyspaceTable(keyspace, table),
+                                                              keyspaceTable,
                                                               null));
                             }
 
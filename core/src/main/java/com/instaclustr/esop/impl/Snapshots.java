@@ -431,15 +431,27 @@ public class Snapshots implements Cloneable {
             }
 
             public List<ManifestEntry> getManifestEntries(final String... tables) {
-                return Collections.unmodifiableList(this.tables.entrySet().stream()
-                                                               .filter(entry -> Arrays.asList(tables).contains(entry.getKey()))
-                                                               .flatMap(table -> table.getValue().getEntries().stream())
-                                                               .collect(toList()));
+                final List<String> tableNames = Arrays.asList(tables);
+                final List<ManifestEntry> entries = new ArrayList<>();
+
+                for (final Entry<String, Table> table : this.tables.entrySet()) {
+                    if (tableNames.contains(table.getKey())) {
+                        table.getValue().forEachEntry(entries::add);
+                    }
+                }
+
+                return Collections.unmodifiableList(entries);
             }
 
             @JsonIgnore
             public List<ManifestEntry> getManifestEntries() {
-                return Collections.unmodifiableList(tables.entrySet().stream().flatMap(table -> table.getValue().getEntries().stream()).collect(toList()));
+                final List<ManifestEntry> entries = new ArrayList<>();
+
+                for (final Table table : tables.values()) {
+                    table.forEachEntry(entries::add);
+                }
+
+                return Collections.unmodifiableList(entries);
             }
 
             public boolean containsTable(final String table) {
@@ -539,7 +551,21 @@ public class Snapshots implements Cloneable {
                              // this is here for backward compatibility with manifests before 2.0.0
                              final @JsonProperty("entries") List<ManifestEntry> entries,
                              final @JsonProperty("id") String id,
-                             final @JsonProperty("schemaContent") String schemaContent) {
+                             final @JsonProperty("schemaContent") String schemaContent,
+                             // object keys of entries are relative to this prefix in a compact manifest
+                             final @JsonProperty("keyPrefix") String keyPrefix) {
+                    if (keyPrefix != null) {
+                        final Path prefix = Paths.get(keyPrefix);
+
+                        if (sstables != null) {
+                            sstables.values().forEach(sstableEntries -> sstableEntries.forEach(entry -> entry.objectKey = prefix.resolve(entry.objectKey)));
+                        }
+
+                        if (entries != null) {
+                            entries.forEach(entry -> entry.objectKey = prefix.resolve(entry.objectKey));
+                        }
+                    }
+
                     if ((sstables == null || sstables.isEmpty())) {
                         if (entries != null && !entries.isEmpty()) {
                             this.sstables.putAll(new DataSynchronizator.ManifestEntrySSTableClassifier().classify(entries));
@@ -581,8 +607,15 @@ public class Snapshots implements Cloneable {
                     return tb;
                 }
 
+                /**
+                 * Visits entries of all sstables without copying them to any list.
+                 */
                 public void forEachEntry(Consumer<ManifestEntry> entryConsumer) {
-                    getEntries().forEach(entryConsumer);
+                    for (final List<ManifestEntry> sstableEntries : sstables.values()) {
+                        for (final ManifestEntry entry : sstableEntries) {
+                            entryConsumer.accept(entry);
+                        }
+                    }
                 }
 
                 public void setSstables(Map<String, List<ManifestEntry>> sstables) {
@@ -595,7 +628,20 @@ public class Snapshots implements Cloneable {
 
                 @JsonIgnore
                 public List<ManifestEntry> getEntries() {
-                    return sstables.values().stream().flatMap(Collection::stream).collect(toList());
+                    final List<ManifestEntry> entries = new ArrayList<>(getNumberOfEntries());
+                    forEachEntry(entries::add);
+                    return entries;
+                }
+
+                @JsonIgnore
+                public int getNumberOfEntries() {
+                    int numberOfEntries = 0;
+
+                    for (final List<ManifestEntry> sstableEntries : sstables.values()) {
+                        numberOfEntries += sstableEntries.size();
+                    }
+
+                    return numberOfEntries;
                 }
 
                 @JsonIgnore
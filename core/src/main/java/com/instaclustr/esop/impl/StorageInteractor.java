@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Optional;
 
 import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
 import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
@@ -38,6 +39,38 @@ public abstract class StorageInteractor implements AutoCloseable {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * @return manifests of a node, newest first, a manifest is read only once it is loaded
+     */
+    public List<LazyManifest> listLazyManifests() throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return file names of manifests of a node, without downloading them
+     */
+    public List<String> listManifestNames() throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return content of a small text object of a node, e.g. of a backup catalog, with its version, empty if it does not exist
+     */
+    public Optional<VersionedText> readNodeAwareText(final Path objectKey) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Writes a small text object of a node only if it was not changed since it was read, so concurrent
+     * read-modify-write cycles of it do not overwrite each other.
+     *
+     * @param version version of an object as it was read, null if it is expected not to exist
+     * @return false if an object was changed or created meanwhile so nothing was written
+     */
+    public boolean writeNodeAwareText(final Path objectKey, final String text, final String version) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
     public void deleteNodeAwareKey(final Path objectKey) throws Exception {
         delete(objectKey, true);
     }
@@ -50,6 +83,31 @@ public abstract class StorageInteractor implements AutoCloseable {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Deletes objects of a node, storage providers delete them in batches.
+     */
+    public void deleteNodeAwareKeys(final List<Path> objectKeys) throws Exception {
+        for (final Path objectKey : objectKeys) {
+            deleteNodeAwareKey(objectKey);
+        }
+    }
+
+    /**
+     * Visits objects of a node under a prefix, e.g. {@code data}, as they are listed, page by page.
+     */
+    public void visitNodeAwareObjects(final Path prefix, final ObjectVisitor visitor) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param lastModified last modification of an object as it was listed
+     * @return time an object of a node was refreshed last time, in milliseconds since epoch, storage providers
+     * which refresh an object by updating its last modification just return {@code lastModified}
+     */
+    public long lastRefreshed(final Path objectKey, final long lastModified) throws Exception {
+        return lastModified;
+    }
+
     public List<StorageLocation> listNodes() throws Exception {
         throw new UnsupportedOperationException();
     }
@@ -82,6 +140,30 @@ public abstract class StorageInteractor implements AutoCloseable {
 
     protected abstract void cleanup() throws Exception;
 
+    public interface ObjectVisitor {
+
+        /**
+         * @param objectKey    key of an object relative to a node, as in a manifest
+         * @param size         size of an object in bytes
+         * @param lastModified time an object was uploaded or refreshed last time, in milliseconds since epoch
+         */
+        void visit(final Path objectKey, final long size, final long lastModified) throws Exception;
+    }
+
+    /**
+     * Content of a text object with its version, e.g. ETag or generation, a conditional write of it expects.
+     */
+    public static class VersionedText {
+
+        public final String text;
+        public final String version;
+
+        public VersionedText(final String text, final String version) {
+            this.text = text;
+            this.version = version;
+        }
+    }
+
     private boolean isClosed = false;
 
     public void init(List<ManifestEntry> manifestEntries) {}
@@ -63,6 +63,7 @@ public class ImportOperation extends Operation<ImportOperationRequest> {
                             @JsonProperty("noInvalidateCaches") final boolean noInvalidateCaches,
                             @JsonProperty("quick") final boolean quick,
                             @JsonProperty("extendedVerify") final boolean extendedVerify,
+                            @JsonProperty("noCopyData") final boolean noCopyData,
                             @JsonProperty("sourceDir")
                             @JsonDeserialize(using = NioPathDeserializer.class)
                             @JsonSerialize(using = NioPathSerializer.class) final Path sourceDir) {
@@ -83,6 +84,7 @@ public class ImportOperation extends Operation<ImportOperationRequest> {
                                          noInvalidateCaches,
                                          quick,
                                          extendedVerify,
+                                         noCopyData,
                                          sourceDir));
         this.cassandraJMXService = null;
         this.cassandraVersion = null;
@@ -128,7 +130,7 @@ public class ImportOperation extends Operation<ImportOperationRequest> {
                                                                                        !request.noVerifyTokens,
                                                                                        !request.noInvalidateCaches,
                                                                                        request.extendedVerify,
-                                                                                       true);
+                                                                                       !request.noCopyData);
 
                 logger.info(format("Importing SSTables of %s.%s has finished.", request.keyspace, request.table));
 
@@ -133,6 +133,11 @@ public class ImportOperationRequest extends OperationRequest {
         description = "upon import, run an extended verify, verifying all values in the new sstables")
     public boolean extendedVerify = false;
 
+    @Option(names = {"--import-no-copy-data"},
+        description = "upon import, move SSTables to Cassandra data directories instead of copying them, imported SSTables will not be in "
+            + "the directory they were imported from anymore")
+    public boolean noCopyData = false;
+
     @JsonDeserialize(using = NioPathDeserializer.class)
     @JsonSerialize(using = NioPathSerializer.class)
     @Option(names = {"--import-source-dir"},
@@ -174,6 +179,7 @@ public class ImportOperationRequest extends OperationRequest {
                                   @JsonProperty("noInvalidateCaches") final boolean noInvalidateCaches,
                                   @JsonProperty("quick") final boolean quick,
                                   @JsonProperty("extendedVerify") final boolean extendedVerify,
+                                  @JsonProperty("noCopyData") final boolean noCopyData,
                                   @JsonProperty("sourceDir")
                                   @JsonDeserialize(using = NioPathDeserializer.class)
                                   @JsonSerialize(using = NioPathSerializer.class) final Path sourceDir) {
@@ -186,6 +192,7 @@ public class ImportOperationRequest extends OperationRequest {
         this.noInvalidateCaches = noInvalidateCaches;
         this.quick = quick;
         this.extendedVerify = extendedVerify;
+        this.noCopyData = noCopyData;
         this.sourceDir = sourceDir;
         this.type = "import";
 
@@ -216,6 +223,7 @@ public class ImportOperationRequest extends OperationRequest {
                                           this.noInvalidateCaches,
                                           this.quick,
                                           this.extendedVerify,
+                                          this.noCopyData,
                                           this.sourceDir);
     }
 
@@ -231,6 +239,7 @@ public class ImportOperationRequest extends OperationRequest {
             .add("noInvalidateCaches", noInvalidateCaches)
             .add("quick", quick)
             .add("extendedVerify", extendedVerify)
+            .add("noCopyData", noCopyData)
             .add("sourceDir", sourceDir)
             .toString();
     }
@@ -4,7 +4,6 @@ import java.net.InetAddress;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Map;
@@ -19,6 +18,7 @@ import com.instaclustr.esop.guice.BackuperFactory;
 import com.instaclustr.esop.guice.BucketServiceFactory;
 import com.instaclustr.esop.impl.AbstractTracker.Session;
 import com.instaclustr.esop.impl.BucketService;
+import com.instaclustr.esop.impl.CommitLogBuckets;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.StorageLocation;
 import com.instaclustr.esop.impl.backup.UploadTracker.UploadUnit;
@@ -36,7 +36,6 @@ import static com.instaclustr.esop.impl.ManifestEntry.Type.COMMIT_LOG;
 public class BackupCommitLogsOperation extends Operation<BackupCommitLogsOperationRequest> {
 
     private static final Logger logger = LoggerFactory.getLogger(BackupCommitLogsOperation.class);
-    private static final Path CASSANDRA_COMMITLOG = Paths.get("commitlog");
 
     private final Map<String, BackuperFactory> backuperFactoryMap;
     private final Map<String, BucketServiceFactory> bucketServiceMap;
@@ -81,7 +80,8 @@ public class BackupCommitLogsOperation extends Operation<BackupCommitLogsOperati
                 // when using File.lastModified
                 long commitLogLastModified = Files.getLastModifiedTime(commitLog.toFile().toPath()).toMillis();
 
-                final Path bucketKey = CASSANDRA_COMMITLOG.resolve(commitLog.getFileName().toString() + "." + commitLogLastModified);
+                // in a bucket of the day it was last modified, so a restore lists only days it needs
+                final Path bucketKey = CommitLogBuckets.objectKey(commitLog.getFileName().toString(), commitLogLastModified);
 
                 manifestEntries.add(new ManifestEntry(bucketKey, commitLog, COMMIT_LOG, null, request.kmsKeyId));
             }
@@ -0,0 +1,80 @@
+package com.instaclustr.esop.impl.backup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.instaclustr.esop.impl.RemoteObjectReference;
+import com.instaclustr.esop.impl.backup.Backuper.FreshenResult;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Refreshes remote objects in batches, in parallel with uploads. An upload unit asks for the result of its object
+ * by {@link #await(RemoteObjectReference)}. When an object was not part of any batch or its batch has failed,
+ * {@code null} is returned and the unit refreshes the object on its own as before.
+ */
+public abstract class BatchFreshener implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchFreshener.class);
+
+    private final Map<String, CompletableFuture<FreshenResult>> results = new ConcurrentHashMap<>();
+    private final ListeningExecutorService executorService;
+    private final int batchSize;
+
+    protected BatchFreshener(final int batchSize, final Integer concurrency) {
+        this.batchSize = batchSize;
+        this.executorService = new FixedTasksExecutorSupplier().get(concurrency);
+    }
+
+    public void submit(final List<RemoteObjectReference> references) {
+        for (final List<RemoteObjectReference> batch : Lists.partition(references, batchSize)) {
+            final Map<String, CompletableFuture<FreshenResult>> batchResults = new HashMap<>();
+
+            for (final RemoteObjectReference reference : batch) {
+                final CompletableFuture<FreshenResult> future = new CompletableFuture<>();
+                batchResults.put(reference.canonicalPath, future);
+                results.put(reference.canonicalPath, future);
+            }
+
+            executorService.submit(() -> {
+                try {
+                    final Map<String, FreshenResult> freshened = freshen(batch);
+                    batchResults.forEach((key, future) -> future.complete(freshened.get(key)));
+                } catch (final Throwable t) {
+                    logger.warn("Unable to refresh a batch of {} objects, they will be refreshed one by one: {}", batch.size(), t.getMessage());
+                    batchResults.values().forEach(future -> future.complete(null));
+                }
+            });
+        }
+
+        logger.info("Submitted {} objects to be refreshed in batches of {}", references.size(), batchSize);
+    }
+
+    /**
+     * @param reference remote object to get the result of a batch refresh for
+     * @return result of a batch refresh or null if the object has to be refreshed on its own
+     */
+    public FreshenResult await(final RemoteObjectReference reference) throws Exception {
+        final CompletableFuture<FreshenResult> future = results.remove(reference.canonicalPath);
+        return future == null ? null : future.get();
+    }
+
+    /**
+     * @param batch objects to refresh
+     * @return results of refreshing by canonical path, objects without a result will be refreshed one by one
+     */
+    protected abstract Map<String, FreshenResult> freshen(final List<RemoteObjectReference> batch) throws Exception;
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+        results.values().forEach(future -> future.complete(null));
+        results.clear();
+    }
+}
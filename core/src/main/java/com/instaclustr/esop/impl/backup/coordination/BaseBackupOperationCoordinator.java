@@ -1,6 +1,8 @@
 package com.instaclustr.esop.impl.backup.coordination;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +15,7 @@ import com.instaclustr.cassandra.CassandraVersion;
 import com.instaclustr.esop.guice.BackuperFactory;
 import com.instaclustr.esop.guice.BucketServiceFactory;
 import com.instaclustr.esop.impl.AbstractTracker.Session;
+import com.instaclustr.esop.impl.BackupCatalog;
 import com.instaclustr.esop.impl.BucketService;
 import com.instaclustr.esop.impl.CassandraData;
 import com.instaclustr.esop.impl.Manifest;
@@ -148,9 +151,11 @@ public class BaseBackupOperationCoordinator extends OperationCoordinator<BackupO
                 backuper.init(manifest.getManifestEntries(true));
                 performUpload(manifest.getManifestEntries(false), backuper, operation, request);
 
-                manifest.setSize(manifest.getManifestEntries(true).stream().map(m -> m.size).reduce(Long::sum).orElse(0L));
-                backuper.uploadText(objectMapper.writeValueAsString(manifest),
-                                    backuper.objectKeyToNodeAwareRemoteReference(manifest.getManifest().objectKey));
+                manifest.setSize(manifest.getTotalSize(true));
+                uploadManifest(manifest, backuper);
+
+                // backup is committed by its manifest, it is recorded in the catalog of backups of this node afterwards
+                BackupCatalog.add(backuper, objectMapper, manifest);
 
                 if (operation.request.uploadClusterTopology) {
                     // here we will upload all topology because we do not know what restore might look like (what dc a restorer will restore against if any)
@@ -170,6 +175,22 @@ public class BaseBackupOperationCoordinator extends OperationCoordinator<BackupO
         }
     }
 
+    // a manifest is streamed to its local file and uploaded from there, so it is never held in memory as a string
+    private void uploadManifest(final Manifest manifest, final Backuper backuper) throws Exception {
+        final ManifestEntry manifestEntry = manifest.getManifest();
+
+        try {
+            Manifest.write(manifest, manifestEntry.localFile, objectMapper);
+            manifestEntry.size = Files.size(manifestEntry.localFile);
+
+            try (final InputStream inputStream = Files.newInputStream(manifestEntry.localFile)) {
+                backuper.uploadFile(manifestEntry, inputStream, backuper.objectKeyToNodeAwareRemoteReference(manifestEntry.objectKey));
+            }
+        } finally {
+            manifest.cleanup();
+        }
+    }
+
     private void performUpload(List<ManifestEntry> manifestEntries,
                                Backuper backuper,
                                Operation<? extends BaseBackupOperationRequest> operation,
@@ -0,0 +1,16 @@
+package com.instaclustr.esop.impl.gc;
+
+import com.google.inject.AbstractModule;
+
+import static com.instaclustr.operations.OperationBindings.installOperationBindings;
+
+public class GarbageCollectionModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+        installOperationBindings(binder(),
+                                 "gc",
+                                 GarbageCollectionRequest.class,
+                                 GarbageCollectionOperation.class);
+    }
+}
@@ -0,0 +1,256 @@
+package com.instaclustr.esop.impl.gc;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.assistedinject.Assisted;
+import com.instaclustr.esop.guice.RestorerFactory;
+import com.instaclustr.esop.impl.BackupCatalog;
+import com.instaclustr.esop.impl.LazyManifest;
+import com.instaclustr.esop.impl.ParallelNodeProcessor;
+import com.instaclustr.esop.impl.ParallelNodeProcessor.NodeResult;
+import com.instaclustr.esop.impl.ProxySettings;
+import com.instaclustr.esop.impl.StorageInteractor;
+import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.impl.retry.RetrySpec;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import com.instaclustr.esop.topology.CassandraSimpleTopology;
+import com.instaclustr.esop.topology.CassandraSimpleTopology.CassandraSimpleTopologyResult;
+import com.instaclustr.measure.Time;
+import com.instaclustr.operations.Operation;
+import jmx.org.apache.cassandra.service.CassandraJMXService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.instaclustr.esop.impl.list.ListOperationRequest.getForLocalListing;
+import static java.lang.String.format;
+
+/**
+ * Deletes objects under {@code data} of a node which no manifest of that node references, e.g. those left by failed
+ * or aborted backups. Keys referenced by manifests are streamed into a {@link ReferenceFilter} sized by the number of
+ * distinct objects in the {@link BackupCatalog} of a node, and objects are streamed from a remote listing, so neither
+ * manifests nor the listing are held in memory. Orphaned objects uploaded
+ * or refreshed within a grace period are kept, they might belong to a backup which has not uploaded its manifest yet.
+ */
+public class GarbageCollectionOperation extends Operation<GarbageCollectionRequest> {
+
+    private static final Logger logger = LoggerFactory.getLogger(GarbageCollectionOperation.class);
+
+    private static final double FALSE_POSITIVE_PROBABILITY = Double.parseDouble(System.getProperty("gc.false.positive.probability", "0.01"));
+
+    // orphaned objects are deleted whenever this many of them are found, so they are not held in memory
+    private static final int DELETION_BATCH_SIZE = 10_000;
+
+    private static final Path DATA_PREFIX = Paths.get("data");
+
+    private final Map<String, RestorerFactory> restorerFactoryMap;
+    private final ObjectMapper objectMapper;
+    private final CassandraJMXService cassandraJMXService;
+    private final long time;
+
+    @Inject
+    public GarbageCollectionOperation(@Assisted final GarbageCollectionRequest request,
+                                      final CassandraJMXService cassandraJMXService,
+                                      final Map<String, RestorerFactory> restorerFactoryMap,
+                                      final ObjectMapper objectMapper) {
+        super(request);
+        time = System.currentTimeMillis();
+        this.restorerFactoryMap = restorerFactoryMap;
+        this.objectMapper = objectMapper;
+        this.cassandraJMXService = cassandraJMXService;
+    }
+
+    @JsonCreator
+    private GarbageCollectionOperation(@JsonProperty("type") final String type,
+                                       @JsonProperty("id") final UUID id,
+                                       @JsonProperty("creationTime") final Instant creationTime,
+                                       @JsonProperty("state") final State state,
+                                       @JsonProperty("errors") final List<Error> errors,
+                                       @JsonProperty("progress") final float progress,
+                                       @JsonProperty("startTime") final Instant startTime,
+                                       @JsonProperty("storageLocation") final StorageLocation storageLocation,
+                                       @JsonProperty("insecure") final boolean insecure,
+                                       @JsonProperty("skipBucketVerification") final boolean skipBucketVerification,
+                                       @JsonProperty("proxySettings") final ProxySettings proxySettings,
+                                       @JsonProperty("retry") final RetrySpec retry,
+                                       @JsonProperty("dry") final boolean dry,
+                                       @JsonProperty("resolveNodes") final boolean resolveNodes,
+                                       @JsonProperty("gracePeriod") final Time gracePeriod,
+                                       @JsonProperty("cacheDir") final Path cacheDir,
+                                       @JsonProperty("concurrentConnections") final Integer concurrentConnections,
+                                       @JsonProperty("globalRequest") final boolean globalRequest) {
+        super(type, id, creationTime, state, errors, progress, startTime, new GarbageCollectionRequest(type,
+                                                                                                       storageLocation,
+                                                                                                       insecure,
+                                                                                                       skipBucketVerification,
+                                                                                                       proxySettings,
+                                                                                                       retry,
+                                                                                                       dry,
+                                                                                                       resolveNodes,
+                                                                                                       gracePeriod,
+                                                                                                       cacheDir,
+                                                                                                       concurrentConnections,
+                                                                                                       globalRequest));
+        this.restorerFactoryMap = null;
+        this.objectMapper = null;
+        this.cassandraJMXService = null;
+        this.time = System.currentTimeMillis();
+    }
+
+    @Override
+    protected void run0() throws Exception {
+        assert restorerFactoryMap != null;
+        assert objectMapper != null;
+
+        request.validate(null);
+
+        if (request.resolveNodes) {
+            assert cassandraJMXService != null;
+            CassandraSimpleTopologyResult simpleTopology = new CassandraSimpleTopology(cassandraJMXService).act();
+            request.storageLocation = StorageLocation.update(request.storageLocation,
+                                                             simpleTopology.getClusterName(),
+                                                             simpleTopology.getDc(),
+                                                             simpleTopology.getHostId());
+        }
+
+        final RestorerFactory restorerFactory = restorerFactoryMap.get(request.storageLocation.storageProvider);
+
+        try (final StorageInteractor interactor = restorerFactory.createDeletingInteractor(request.getForDeletion())) {
+            interactor.update(request.storageLocation, new LocalFileRestorer(getForLocalListing(request,
+                                                                                                request.cacheDir,
+                                                                                                request.storageLocation),
+                                                                             objectMapper));
+
+            final List<NodeResult<Void>> results;
+
+            if (request.globalRequest) {
+                // nodes are processed in parallel, each worker by its own interactor
+                results = new ParallelNodeProcessor().process(interactor.listNodes(request.dcs),
+                                                              () -> restorerFactory.createDeletingInteractor(request.getForDeletion()),
+                                                              this::collect);
+            } else {
+                results = Collections.singletonList(collectSingleNode(interactor, request.storageLocation));
+            }
+
+            // errors are added here, by one thread, as errors of an operation are not thread-safe
+            for (final NodeResult<Void> result : results) {
+                if (result.isFailed()) {
+                    this.addError(Error.from(result.error));
+                }
+            }
+        } catch (final Exception ex) {
+            logger.error("Unable to perform garbage collection! - " + ex.getMessage(), ex);
+            this.addError(Error.from(ex));
+        }
+    }
+
+    private NodeResult<Void> collectSingleNode(final StorageInteractor interactor, final StorageLocation nodeLocation) {
+        try {
+            return NodeResult.of(nodeLocation, collect(interactor, nodeLocation));
+        } catch (final Exception ex) {
+            logger.error(format("Unable to collect orphaned objects of node %s - %s", nodeLocation.nodePath(), ex.getMessage()), ex);
+            return NodeResult.failed(nodeLocation, ex);
+        }
+    }
+
+    private Void collect(final StorageInteractor interactor, final StorageLocation nodeLocation) throws Exception {
+        interactor.update(nodeLocation, new LocalFileRestorer(getForLocalListing(request,
+                                                                                 request.cacheDir,
+                                                                                 nodeLocation),
+                                                              objectMapper));
+
+        final List<LazyManifest> manifests = interactor.listLazyManifests();
+
+        // a node without any manifest is left as it is, its listing might have gone wrong or its first backup is running
+        if (manifests.isEmpty()) {
+            logger.info("No backups found for {}, its objects are left as they are", nodeLocation.nodePath());
+            return null;
+        }
+
+        final ReferenceFilter filter = buildFilter(interactor, manifests);
+        final long cut = time - request.gracePeriod.toMilliseconds();
+        final Statistics statistics = new Statistics();
+        final List<Path> orphans = new ArrayList<>();
+
+        logger.info("Collecting orphaned objects of node {} referenced by none of its {} manifests", nodeLocation.nodePath(), manifests.size());
+
+        interactor.visitNodeAwareObjects(DATA_PREFIX, (objectKey, size, lastModified) -> {
+            statistics.listed++;
+
+            if (filter.mightBeReferenced(objectKey.toString())) {
+                return;
+            }
+
+            // refresh time is resolved only for objects about to be deleted, it might take a request per object
+            if (lastModified >= cut || interactor.lastRefreshed(objectKey, lastModified) >= cut) {
+                statistics.withinGracePeriod++;
+                return;
+            }
+
+            statistics.orphans++;
+            statistics.orphansSize += size;
+
+            if (request.dry) {
+                logger.info("Deletion of orphaned object {} was executed in dry mode.", objectKey);
+                return;
+            }
+
+            orphans.add(objectKey);
+
+            if (orphans.size() >= DELETION_BATCH_SIZE) {
+                interactor.deleteNodeAwareKeys(orphans);
+                orphans.clear();
+            }
+        });
+
+        if (!orphans.isEmpty()) {
+            interactor.deleteNodeAwareKeys(orphans);
+        }
+
+        logger.info(format("%s %s orphaned objects of %s bytes of node %s, %s objects listed, %s orphaned objects are within grace period of %s",
+                           request.dry ? "Found" : "Deleted",
+                           statistics.orphans,
+                           statistics.orphansSize,
+                           nodeLocation.nodePath(),
+                           statistics.listed,
+                           statistics.withinGracePeriod,
+                           request.gracePeriod));
+
+        return null;
+    }
+
+    private ReferenceFilter buildFilter(final StorageInteractor interactor, final List<LazyManifest> manifests) throws Exception {
+        // manifests reference mostly the same objects, so the filter is sized by distinct objects of a catalog,
+        // a filter holding more keys than expected just has more false positives, it never misses a key
+        final int distinctKeys = BackupCatalog.load(interactor, objectMapper, interactor.listManifestNames(), !request.dry).objectCount();
+
+        final ReferenceFilter filter = new ReferenceFilter(distinctKeys, FALSE_POSITIVE_PROBABILITY);
+
+        // keys are added from manifests themselves, they are what a backup is restored from
+        for (final LazyManifest manifest : manifests) {
+            manifest.visitEntries((objectKey, size, type) -> filter.add(objectKey));
+        }
+
+        logger.info("Filter of {} referenced objects built, its false positive probability is {}", distinctKeys, filter.expectedFalsePositiveProbability());
+
+        return filter;
+    }
+
+    private static class Statistics {
+
+        long listed;
+        long withinGracePeriod;
+        long orphans;
+        long orphansSize;
+    }
+}
@@ -0,0 +1,134 @@
+package com.instaclustr.esop.impl.gc;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.MoreObjects;
+import com.instaclustr.esop.impl.ProxySettings;
+import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
+import com.instaclustr.esop.impl.restore.BaseRestoreOperationRequest;
+import com.instaclustr.esop.impl.retry.RetrySpec;
+import com.instaclustr.jackson.PathDeserializer;
+import com.instaclustr.jackson.PathSerializer;
+import com.instaclustr.measure.Time;
+import com.instaclustr.measure.Time.TimeUnit;
+import com.instaclustr.picocli.typeconverter.TimeMeasureTypeConverter;
+import picocli.CommandLine.Option;
+
+public class GarbageCollectionRequest extends BaseRestoreOperationRequest {
+
+    @Option(names = {"-d", "--dry"}, description = "If set, orphaned objects are only logged, they are not deleted.")
+    public boolean dry;
+
+    @Option(names = {"--resolve-nodes"}, description = "If set, we expect storage location to contain path to node, e.g. file:///my/path/cluster/dc/node1, "
+                                                              + "If this is not set, there will be automatic attempt to resolve cluster, dc and node names by connecting to "
+                                                              + "a running node Esop / Icarus is connected to. This expects that node to be up as it uses JMX to resolve it. If this is not set, "
+                                                              + "it is expected that storageLocation represents the correct path.")
+    public boolean resolveNodes = false;
+
+    @Option(names = {"--grace-period"},
+            description = "Orphaned objects uploaded or refreshed within this time period are not deleted as they might belong to a backup "
+                          + "which is still running, defaults to 1 day",
+            converter = TimeMeasureTypeConverter.class)
+    public Time gracePeriod = defaultGracePeriod();
+
+    @Option(names = {"--dcs"}, description = "Only in effect when --global-request is set, if not specified, it will "
+                                             + "collect orphaned objects of all datacenters")
+    @JsonIgnore
+    public List<String> dcs = new ArrayList<>();
+
+    @Option(names = {"--global-request"}, description = "If true, it will collect orphaned objects of all nodes in storage location, in datacenters based on --dcs option")
+    public boolean globalRequest;
+
+    @Option(names = {"--cache-dir"}, description = "Directory where Esop caches downloaded manifests, defaults to a directory called '.esop' in user's home dir.")
+    @JsonSerialize(using = PathSerializer.class)
+    @JsonDeserialize(using = PathDeserializer.class)
+    public Path cacheDir = Paths.get(System.getProperty("user.home"), ".esop");
+
+    public GarbageCollectionRequest() {
+        // for picocli
+    }
+
+    @JsonCreator
+    public GarbageCollectionRequest(@JsonProperty("type") final String type,
+                                    @JsonProperty("storageLocation") final StorageLocation storageLocation,
+                                    @JsonProperty("insecure") final boolean insecure,
+                                    @JsonProperty("skipBucketVerification") final boolean skipBucketVerification,
+                                    @JsonProperty("proxySettings") final ProxySettings proxySettings,
+                                    @JsonProperty("retry") final RetrySpec retry,
+                                    @JsonProperty("dry") final boolean dry,
+                                    @JsonProperty("resolveNodes") final boolean resolveNodes,
+                                    @JsonProperty("gracePeriod") final Time gracePeriod,
+                                    @JsonProperty("cacheDir") final Path cacheDir,
+                                    @JsonProperty("concurrentConnections") final Integer concurrentConnections,
+                                    @JsonProperty("globalRequest") final boolean globalRequest) {
+        super(storageLocation, concurrentConnections, insecure, skipBucketVerification, proxySettings, retry, null);
+        this.type = type;
+        this.dry = dry;
+        this.resolveNodes = resolveNodes;
+        this.gracePeriod = gracePeriod == null ? defaultGracePeriod() : gracePeriod;
+        this.cacheDir = (cacheDir == null) ? Paths.get(System.getProperty("user.home"), ".esop") : cacheDir;
+        this.globalRequest = globalRequest;
+    }
+
+    /**
+     * Storage interactors delete and list objects of nodes on behalf of removal of backups, so garbage collection
+     * uses the same interactors.
+     */
+    public RemoveBackupRequest getForDeletion() {
+        final RemoveBackupRequest removeBackupRequest = new RemoveBackupRequest("remove-backup",
+                                                                                storageLocation,
+                                                                                insecure,
+                                                                                skipBucketVerification,
+                                                                                proxySettings,
+                                                                                retry,
+                                                                                null,
+                                                                                dry,
+                                                                                resolveNodes,
+                                                                                null,
+                                                                                cacheDir,
+                                                                                false,
+                                                                                concurrentConnections,
+                                                                                globalRequest);
+        removeBackupRequest.dcs = dcs;
+        return removeBackupRequest;
+    }
+
+    private static Time defaultGracePeriod() {
+        return new Time(1L, TimeUnit.DAYS);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                          .add("dry", dry)
+                          .add("resolveNodes", resolveNodes)
+                          .add("gracePeriod", gracePeriod)
+                          .add("cacheDir", cacheDir)
+                          .add("globalRequest", globalRequest)
+                          .add("dcs", dcs)
+                          .toString();
+    }
+
+    @Override
+    public void validate(final Set<String> storageProviders) {
+        super.validate(storageProviders);
+
+        if (gracePeriod == null) {
+            gracePeriod = defaultGracePeriod();
+        }
+
+        if (gracePeriod.value < 0) {
+            throw new IllegalStateException("Grace period can not be negative!");
+        }
+    }
+}
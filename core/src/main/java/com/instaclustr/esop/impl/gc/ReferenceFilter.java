@@ -0,0 +1,46 @@
+package com.instaclustr.esop.impl.gc;
+
+import java.nio.file.Paths;
+import java.util.UUID;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Bloom filter of object keys referenced by manifests of a node. A key which is not in a filter is not referenced
+ * for sure, so such object might be deleted. A key which is in a filter is referenced or it is a false positive,
+ * such object is never deleted. Keys are salted by a random salt of each filter, so an orphaned object which is
+ * a false positive of one filter is very likely not a false positive of a filter of the next collection.
+ */
+public class ReferenceFilter {
+
+    private final BloomFilter<CharSequence> filter;
+    private final String salt = UUID.randomUUID().toString();
+
+    /**
+     * @param expectedKeys             number of keys to be added, keys added more than once might be counted more times
+     * @param falsePositiveProbability probability a key which was not added is in a filter
+     */
+    public ReferenceFilter(final long expectedKeys, final double falsePositiveProbability) {
+        this.filter = BloomFilter.create(Funnels.stringFunnel(UTF_8), Math.max(1, expectedKeys), falsePositiveProbability);
+    }
+
+    public void add(final String objectKey) {
+        filter.put(salt + normalize(objectKey));
+    }
+
+    public boolean mightBeReferenced(final String objectKey) {
+        return filter.mightContain(salt + normalize(objectKey));
+    }
+
+    public double expectedFalsePositiveProbability() {
+        return filter.expectedFpp();
+    }
+
+    // keys of manifests and keys of listed objects are compared as paths
+    private static String normalize(final String objectKey) {
+        return Paths.get(objectKey).normalize().toString();
+    }
+}
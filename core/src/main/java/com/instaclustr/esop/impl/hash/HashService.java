@@ -14,6 +14,11 @@ public interface HashService {
 
     void verify(Path file, String hash) throws HashVerificationException;
 
+    /**
+     * @return false if hashing is turned off so verification of a file always passes
+     */
+    boolean isEnabled();
+
     class HashingException extends Exception {
 
         public HashingException(final String message) {
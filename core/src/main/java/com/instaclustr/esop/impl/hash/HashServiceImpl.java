@@ -83,6 +83,11 @@ public class HashServiceImpl implements HashService {
         }
     }
 
+    @Override
+    public boolean isEnabled() {
+        return hashSpec.algorithm != HashSpec.HashAlgorithm.NONE;
+    }
+
     private String getHash(final File file) throws Exception
     {
         if (hashSpec.algorithm == HashSpec.HashAlgorithm.NONE)
@@ -43,6 +43,18 @@ public class HashSpec {
         String getHash(InputStream is) throws Exception;
 
         String getHash(byte[] digest) throws Exception;
+
+        /**
+         * @return digest to feed bytes to as they come, e.g. while a file is being downloaded
+         */
+        Digest getDigest() throws Exception;
+    }
+
+    public interface Digest {
+
+        void update(byte[] bytes, int offset, int length);
+
+        String getHash() throws Exception;
     }
 
     private static class SHAHasher implements Hasher {
@@ -80,6 +92,23 @@ public class HashSpec {
 
             return sb.toString();
         }
+
+        @Override
+        public Digest getDigest() throws Exception {
+            final MessageDigest digest = MessageDigest.getInstance(algorithm);
+
+            return new Digest() {
+                @Override
+                public void update(final byte[] bytes, final int offset, final int length) {
+                    digest.update(bytes, offset, length);
+                }
+
+                @Override
+                public String getHash() throws Exception {
+                    return SHAHasher.this.getHash(digest.digest());
+                }
+            };
+        }
     }
 
     public static class NoOp implements Hasher {
@@ -92,6 +121,20 @@ public class HashSpec {
         public String getHash(byte[] digest) throws Exception {
             return null;
         }
+
+        @Override
+        public Digest getDigest() {
+            return new Digest() {
+                @Override
+                public void update(final byte[] bytes, final int offset, final int length) {
+                }
+
+                @Override
+                public String getHash() {
+                    return null;
+                }
+            };
+        }
     }
 
     public static class CRCHasher implements Hasher {
@@ -114,6 +157,23 @@ public class HashSpec {
         public String getHash(byte[] digest) throws Exception {
             throw new UnsupportedOperationException();
         }
+
+        @Override
+        public Digest getDigest() {
+            final Checksum checksum = new CRC32();
+
+            return new Digest() {
+                @Override
+                public void update(final byte[] bytes, final int offset, final int length) {
+                    checksum.update(bytes, offset, length);
+                }
+
+                @Override
+                public String getHash() {
+                    return Long.toString(checksum.getValue());
+                }
+            };
+        }
     }
 
     public enum HashAlgorithm {
@@ -0,0 +1,85 @@
+package com.instaclustr.esop.impl.list;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
+import com.instaclustr.esop.impl.Manifest.ConditionalHumanUnitsSerializer;
+
+/**
+ * Reports of all nodes listed by a global request, keyed by paths of nodes, with totals over all of them.
+ */
+public class ClusterReport {
+
+    @JsonSerialize(using = ConditionalHumanUnitsSerializer.class)
+    public long totalSize;
+    public int totalFiles;
+    public int totalManifests;
+    public int totalNodes;
+    public Map<String, AllManifestsReport> nodes = new LinkedHashMap<>();
+    public List<String> failedNodes = new ArrayList<>();
+
+    public void add(final String nodePath, final AllManifestsReport report) {
+        nodes.put(nodePath, report);
+        totalNodes++;
+        totalSize += report.totalSize;
+        totalFiles += report.totalFiles;
+        totalManifests += report.totalManifests;
+    }
+
+    public void addFailure(final String nodePath) {
+        failedNodes.add(nodePath);
+        totalNodes++;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(final long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public int getTotalFiles() {
+        return totalFiles;
+    }
+
+    public void setTotalFiles(final int totalFiles) {
+        this.totalFiles = totalFiles;
+    }
+
+    public int getTotalManifests() {
+        return totalManifests;
+    }
+
+    public void setTotalManifests(final int totalManifests) {
+        this.totalManifests = totalManifests;
+    }
+
+    public int getTotalNodes() {
+        return totalNodes;
+    }
+
+    public void setTotalNodes(final int totalNodes) {
+        this.totalNodes = totalNodes;
+    }
+
+    public Map<String, AllManifestsReport> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(final Map<String, AllManifestsReport> nodes) {
+        this.nodes = nodes;
+    }
+
+    public List<String> getFailedNodes() {
+        return failedNodes;
+    }
+
+    public void setFailedNodes(final List<String> failedNodes) {
+        this.failedNodes = failedNodes;
+    }
+}
@@ -6,6 +6,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -17,9 +18,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.instaclustr.esop.guice.RestorerFactory;
+import com.instaclustr.esop.impl.BackupCatalog;
 import com.instaclustr.esop.impl.Manifest;
 import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
+import com.instaclustr.esop.impl.Manifest.ManifestAgeComparator;
 import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
+import com.instaclustr.esop.impl.ParallelNodeProcessor;
+import com.instaclustr.esop.impl.ParallelNodeProcessor.NodeResult;
 import com.instaclustr.esop.impl.ProxySettings;
 import com.instaclustr.esop.impl.StorageInteractor;
 import com.instaclustr.esop.impl.StorageLocation;
@@ -83,7 +88,9 @@ public class ListOperation extends Operation<ListOperationRequest> {
                           @JsonProperty("cacheDir") final Path cacheDir,
                           @JsonProperty("toRequest") final boolean toRequest,
                           @JsonProperty("response") final Manifest.AllManifestsReport response,
-                          @JsonProperty("concurrentConnections") final Integer concurrentConnections) {
+                          @JsonProperty("concurrentConnections") final Integer concurrentConnections,
+                          @JsonProperty("globalRequest") final boolean globalRequest,
+                          @JsonProperty("clusterResponse") final ClusterReport clusterResponse) {
         super(type, id, creationTime, state, errors, progress, startTime, new ListOperationRequest(type,
                                                                                                    storageLocation,
                                                                                                    insecure,
@@ -101,7 +108,9 @@ public class ListOperation extends Operation<ListOperationRequest> {
                                                                                                    cacheDir,
                                                                                                    toRequest,
                                                                                                    concurrentConnections,
-                                                                                                   response));
+                                                                                                   response,
+                                                                                                   globalRequest,
+                                                                                                   clusterResponse));
         this.restorerFactoryMap = null;
         this.objectMapper = null;
         this.cassandraJMXService = null;
@@ -120,7 +129,7 @@ public class ListOperation extends Operation<ListOperationRequest> {
             FileUtils.createDirectory(localPath);
         }
 
-        if (request.storageLocation.incompleteNodeLocation() && !request.resolveNodes) {
+        if (request.storageLocation.incompleteNodeLocation() && !request.resolveNodes && !request.globalRequest) {
             throw new IllegalArgumentException("You have to specify full path to a node to list!");
         }
 
@@ -133,15 +142,21 @@ public class ListOperation extends Operation<ListOperationRequest> {
                                                              simpleTopology.getHostId());
         }
 
-        try (final StorageInteractor interactor = restorerFactoryMap.get(request.storageLocation.storageProvider).createListingInteractor(request)) {
+        final RestorerFactory restorerFactory = restorerFactoryMap.get(request.storageLocation.storageProvider);
+
+        try (final StorageInteractor interactor = restorerFactory.createListingInteractor(ListOperationRequest.getForWorker(request))) {
             interactor.update(request.storageLocation, new LocalFileRestorer(getForLocalListing(request,
                                                                                                 request.cacheDir,
                                                                                                 request.storageLocation),
                                                                              objectMapper));
 
-            final AllManifestsReport report = AllManifestsReport.report(interactor.listManifests());
-            filterFromTimestamp(report, request.fromTimestamp);
-            filterLastN(report, request.lastN);
+            if (request.globalRequest) {
+                listCluster(restorerFactory, interactor);
+                return;
+            }
+
+            final AllManifestsReport report = report(interactor, request.storageLocation);
+
             if (request.toRequest) {
                 request.response = report;
             } else {
@@ -155,6 +170,58 @@ public class ListOperation extends Operation<ListOperationRequest> {
         }
     }
 
+    private void listCluster(final RestorerFactory restorerFactory, final StorageInteractor interactor) throws Exception {
+        // nodes are listed in parallel, each worker by its own interactor
+        final List<NodeResult<AllManifestsReport>> results = new ParallelNodeProcessor().process(interactor.listNodes(request.dcs),
+                                                                                                 () -> restorerFactory.createListingInteractor(ListOperationRequest.getForWorker(request)),
+                                                                                                 this::report);
+
+        final ClusterReport clusterReport = new ClusterReport();
+
+        // errors are added here, by one thread, as errors of an operation are not thread-safe
+        for (final NodeResult<AllManifestsReport> result : results) {
+            if (result.isFailed()) {
+                clusterReport.addFailure(result.node.nodePath());
+                this.addError(Error.from(result.error));
+            } else {
+                clusterReport.add(result.node.nodePath(), result.result);
+            }
+        }
+
+        logger.info("Listed {} manifests of {} nodes, {} nodes failed", clusterReport.totalManifests, clusterReport.totalNodes, clusterReport.failedNodes.size());
+
+        if (request.toRequest) {
+            request.clusterResponse = clusterReport;
+        } else {
+            try (final PrintStream ps = getOutputStream(request)) {
+                print(objectMapper, clusterReport, request, ps);
+            }
+        }
+    }
+
+    private AllManifestsReport report(final StorageInteractor interactor, final StorageLocation nodeLocation) throws Exception {
+        interactor.update(nodeLocation, new LocalFileRestorer(getForLocalListing(request,
+                                                                                 request.cacheDir,
+                                                                                 nodeLocation),
+                                                              objectMapper));
+
+        // manifests are selected by their names, so only manifests which are reported are read
+        final List<String> manifestNames = new ArrayList<>(interactor.listManifestNames());
+        manifestNames.sort(new ManifestAgeComparator());
+
+        final List<String> selectedManifests = filterLastN(filterFromTimestamp(manifestNames, request.fromTimestamp), request.lastN);
+
+        if (request.simpleFormat && !request.toRequest) {
+            // just names are printed
+            return AllManifestsReport.names(selectedManifests);
+        } else if (request.skipDownload) {
+            // cached manifests are listed as they are, a catalog is read otherwise
+            return AllManifestsReport.report(interactor.listLazyManifests(), selectedManifests);
+        } else {
+            return BackupCatalog.load(interactor, objectMapper, manifestNames, false).report(selectedManifests);
+        }
+    }
+
     private PrintStream getOutputStream(final ListOperationRequest request) throws Exception {
         if (request.toFile != null) {
             return new PrintStream(new FileOutputStream(request.toFile));
@@ -164,37 +231,33 @@ public class ListOperation extends Operation<ListOperationRequest> {
     }
 
 
-    private void filterFromTimestamp(final AllManifestsReport report, final long fromTimestamp) {
+    private List<String> filterFromTimestamp(final List<String> manifestNames, final long fromTimestamp) {
         // nothing to filter on
         if (fromTimestamp == Long.MAX_VALUE) {
-            return;
+            return manifestNames;
         }
-        final List<ManifestReport> filtered = report.getReports()
-            .stream()
-            .filter(mr -> mr.unixtimestamp <= fromTimestamp)
-            .collect(toList());
 
-        report.getReports().clear();
-        report.getReports().addAll(filtered);
+        return manifestNames.stream()
+            .filter(name -> ManifestAgeComparator.extractTimestamp(name) <= fromTimestamp)
+            .collect(toList());
     }
 
-    private void filterLastN(final AllManifestsReport report, final int lastN) {
+    private List<String> filterLastN(final List<String> manifestNames, final int lastN) {
         // nothing to filter on
         if (lastN < 1) {
-            return;
+            return manifestNames;
         }
 
         // we get if from newest to oldest,
         // wanting "last n" means taking last n from the tail
         // so we reverse it first
-        final List<ManifestReport> manifestReports = new ArrayList<>(report.getReports());
-        reverse(manifestReports);
+        final List<String> names = new ArrayList<>(manifestNames);
+        reverse(names);
 
-        final List<ManifestReport> filtered = manifestReports.stream().limit(lastN).collect(toList());
+        final List<String> filtered = names.stream().limit(lastN).collect(toList());
         // here we reverse it back so we have newest on top again
         reverse(filtered);
-        report.getReports().clear();
-        report.getReports().addAll(filtered);
+        return filtered;
     }
 
     @VisibleForTesting
@@ -217,6 +280,45 @@ public class ListOperation extends Operation<ListOperationRequest> {
         }
     }
 
+    @VisibleForTesting
+    public static void print(final ObjectMapper mapper,
+                             final ClusterReport report,
+                             final ListOperationRequest request,
+                             final PrintStream ps) throws Exception {
+        if (request.json) {
+            if (request.simpleFormat) {
+                final Map<String, List<String>> names = new LinkedHashMap<>();
+                report.nodes.forEach((node, nodeReport) -> names.put(node, nodeReport.reports.stream().map(mr -> mr.name).collect(toList())));
+                ps.println(mapper.writeValueAsString(names));
+            } else {
+                ps.println(mapper.writerWithDefaultPrettyPrinter().withAttribute(HUMAN_UNITS_SERIALISATION_PROPERTY, request.humanUnits).writeValueAsString(report));
+            }
+            return;
+        }
+
+        for (final Map.Entry<String, AllManifestsReport> node : report.nodes.entrySet()) {
+            ps.println(node.getKey());
+            print(mapper, node.getValue(), request, ps);
+            ps.println();
+        }
+
+        final TableBuilder builder = new TableBuilder();
+
+        builder.add("Nodes", "Failed nodes", "Manifests", "Files", "Occupied space");
+        final String totalSize = request.humanUnits ? humanReadableByteCountSI(report.totalSize) : Long.toString(report.totalSize);
+        builder.add(Integer.toString(report.totalNodes),
+                    Integer.toString(report.failedNodes.size()),
+                    Integer.toString(report.totalManifests),
+                    Integer.toString(report.totalFiles),
+                    totalSize);
+
+        builder.printTo(ps);
+
+        for (final String failedNode : report.failedNodes) {
+            ps.println("Unable to list " + failedNode);
+        }
+    }
+
     private static void printComplexJson(final ObjectMapper objectMapper,
                                          final ListOperationRequest request,
                                          final AllManifestsReport report,
@@ -2,8 +2,11 @@ package com.instaclustr.esop.impl.list;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
@@ -38,6 +41,8 @@ public class ListOperationRequest extends BaseRestoreOperationRequest {
 
     public Manifest.AllManifestsReport response;
 
+    public ClusterReport clusterResponse;
+
     @Option(names = {"--simple-format"}, description = "If set, the output will consists of name of backups only and nothing else")
     public boolean simpleFormat = false;
 
@@ -56,6 +61,14 @@ public class ListOperationRequest extends BaseRestoreOperationRequest {
     @JsonDeserialize(using = PathDeserializer.class)
     public Path cacheDir = Paths.get(System.getProperty("user.home"), ".esop");
 
+    @Option(names = {"--dcs"}, description = "Only in effect when --global-request is set, if not specified, it will "
+                                             + "list backups of all datacenters")
+    @JsonIgnore
+    public List<String> dcs = new ArrayList<>();
+
+    @Option(names = {"--global-request"}, description = "If true, it will list backups of all nodes in storage location, in datacenters based on --dcs option")
+    public boolean globalRequest;
+
     public ListOperationRequest() {
         // for picocli
     }
@@ -78,7 +91,9 @@ public class ListOperationRequest extends BaseRestoreOperationRequest {
                                 @JsonProperty("cacheDir") final Path cacheDir,
                                 @JsonProperty("toRequest") final boolean toRequest,
                                 @JsonProperty("concurrentConnections") final Integer concurrentConnections,
-                                @JsonProperty("response") final Manifest.AllManifestsReport response) {
+                                @JsonProperty("response") final Manifest.AllManifestsReport response,
+                                @JsonProperty("globalRequest") final boolean globalRequest,
+                                @JsonProperty("clusterResponse") final ClusterReport clusterResponse) {
         super(storageLocation, 1, insecure, skipBucketVerification, proxySettings, retry, null);
         this.json = json;
         this.resolveNodes = resolveNodes;
@@ -91,6 +106,8 @@ public class ListOperationRequest extends BaseRestoreOperationRequest {
         this.cacheDir = (cacheDir == null) ? Paths.get(System.getProperty("user.home"), ".esop") : cacheDir;
         this.response = response;
         this.toRequest = toRequest;
+        this.globalRequest = globalRequest;
+        this.clusterResponse = clusterResponse;
         this.type = type;
     }
 
@@ -123,9 +140,42 @@ public class ListOperationRequest extends BaseRestoreOperationRequest {
                 cacheDir,
                 false,
                 null,
+                null,
+                false,
                 null);
     }
 
+    /**
+     * @return copy of a request for an interactor of one worker of a global request, as an interactor updates
+     * storage location of its request to a node it processes
+     */
+    public static ListOperationRequest getForWorker(final ListOperationRequest request) {
+        final ListOperationRequest copy = new ListOperationRequest(request.type,
+                                                                   request.storageLocation,
+                                                                   request.insecure,
+                                                                   request.skipBucketVerification,
+                                                                   request.proxySettings,
+                                                                   request.retry,
+                                                                   request.json,
+                                                                   request.resolveNodes,
+                                                                   request.humanUnits,
+                                                                   request.toFile,
+                                                                   request.simpleFormat,
+                                                                   request.fromTimestamp,
+                                                                   request.lastN,
+                                                                   request.skipDownload,
+                                                                   request.cacheDir,
+                                                                   request.toRequest,
+                                                                   request.concurrentConnections,
+                                                                   null,
+                                                                   request.globalRequest,
+                                                                   null);
+        copy.dcs = request.dcs;
+        copy.concurrentConnections = request.concurrentConnections;
+        copy.kmsKeyId = request.kmsKeyId;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
@@ -138,6 +188,8 @@ public class ListOperationRequest extends BaseRestoreOperationRequest {
                           .add("lastN", lastN)
                           .add("skipDownload", skipDownload)
                           .add("cacheDir", cacheDir)
+                          .add("globalRequest", globalRequest)
+                          .add("dcs", dcs)
                           .toString();
     }
 }
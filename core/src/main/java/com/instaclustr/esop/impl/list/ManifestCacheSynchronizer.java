@@ -0,0 +1,127 @@
+package com.instaclustr.esop.impl.list;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.instaclustr.io.FileUtils;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Synchronizes a local cache of manifests of a node with its remote manifests. A manifest is never changed once it is
+ * uploaded, so a cached manifest of the same name and size is not downloaded again. Manifests which are not cached yet
+ * are downloaded in parallel and cached manifests which are not remote anymore are deleted.
+ */
+public class ManifestCacheSynchronizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ManifestCacheSynchronizer.class);
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final int concurrency;
+
+    public ManifestCacheSynchronizer(final Integer concurrency) {
+        this.concurrency = concurrency == null ? 10 : Math.max(1, concurrency);
+    }
+
+    /**
+     * @param cacheDir        local directory with cached manifests of a node
+     * @param remoteManifests file names of remote manifests of a node to their sizes
+     * @param downloader      downloads a remote manifest of a file name to a local file
+     */
+    public void sync(final Path cacheDir, final Map<String, Long> remoteManifests, final ManifestDownloader downloader) throws Exception {
+        FileUtils.createDirectory(cacheDir);
+
+        final Map<String, Path> cachedManifests = new HashMap<>();
+
+        try (final Stream<Path> files = Files.list(cacheDir)) {
+            files.filter(Files::isRegularFile).forEach(file -> cachedManifests.put(file.getFileName().toString(), file));
+        }
+
+        int deleted = 0;
+
+        for (final Map.Entry<String, Path> cachedManifest : cachedManifests.entrySet()) {
+            if (!remoteManifests.containsKey(cachedManifest.getKey())) {
+                Files.deleteIfExists(cachedManifest.getValue());
+                deleted++;
+            }
+        }
+
+        final List<String> manifestsToDownload = new ArrayList<>();
+
+        for (final Map.Entry<String, Long> remoteManifest : remoteManifests.entrySet()) {
+            final Path cachedManifest = cachedManifests.get(remoteManifest.getKey());
+
+            if (cachedManifest == null || remoteManifest.getValue() == null || Files.size(cachedManifest) != remoteManifest.getValue()) {
+                manifestsToDownload.add(remoteManifest.getKey());
+            }
+        }
+
+        download(cacheDir, manifestsToDownload, downloader);
+
+        logger.info(format("Synchronized cache of manifests in %s, %s downloaded, %s deleted, %s up to date",
+                           cacheDir, manifestsToDownload.size(), deleted, remoteManifests.size() - manifestsToDownload.size()));
+    }
+
+    private void download(final Path cacheDir, final List<String> manifests, final ManifestDownloader downloader) throws Exception {
+        if (manifests.isEmpty()) {
+            return;
+        }
+
+        final Map<String, String> failures = new ConcurrentHashMap<>();
+        final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(Math.min(concurrency, manifests.size()));
+
+        try {
+            final List<ListenableFuture<?>> futures = new ArrayList<>();
+
+            for (final String manifest : manifests) {
+                futures.add(executorService.submit(() -> {
+                    // a manifest is complete or it is not in a cache at all
+                    final Path temporaryFile = cacheDir.resolve("." + manifest + TEMPORARY_FILE_SUFFIX);
+
+                    try {
+                        downloader.download(manifest, temporaryFile);
+                        Files.move(temporaryFile, cacheDir.resolve(manifest), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (final Exception ex) {
+                        logger.error(format("Unable to download manifest %s: %s", manifest, ex.getMessage()));
+                        failures.put(manifest, String.valueOf(ex.getMessage()));
+
+                        try {
+                            Files.deleteIfExists(temporaryFile);
+                        } catch (final Exception ex2) {
+                            logger.warn(format("Unable to delete %s: %s", temporaryFile, ex2.getMessage()));
+                        }
+                    }
+                }));
+            }
+
+            Futures.allAsList(futures).get();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        if (!failures.isEmpty()) {
+            throw new IOException(format("Unable to download manifests: %s", failures.keySet().stream().sorted().collect(Collectors.joining(","))));
+        }
+    }
+
+    public interface ManifestDownloader {
+
+        void download(final String manifestName, final Path localFile) throws Exception;
+    }
+}
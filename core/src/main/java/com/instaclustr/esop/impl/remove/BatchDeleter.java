@@ -0,0 +1,95 @@
+package com.instaclustr.esop.impl.remove;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Deletes remote objects in batches of a storage provider, in parallel. A failure of an object or of a whole batch
+ * does not stop other batches, all failed objects are reported together once all batches are done.
+ */
+public abstract class BatchDeleter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchDeleter.class);
+
+    // how many failed objects are named in an error message, all of them are logged
+    private static final int REPORTED_FAILURES = 10;
+
+    private final int batchSize;
+    private final int concurrency;
+
+    protected BatchDeleter(final int batchSize, final Integer concurrency) {
+        this.batchSize = Math.max(1, batchSize);
+        this.concurrency = concurrency == null ? 10 : Math.max(1, concurrency);
+    }
+
+    /**
+     * @param keys canonical paths of objects to delete
+     * @throws IOException if some objects were not deleted, after all batches were tried
+     */
+    public void delete(final List<String> keys) throws Exception {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        final List<List<String>> batches = Lists.partition(keys, batchSize);
+        final Map<String, String> failures = new ConcurrentHashMap<>();
+        final AtomicInteger deleted = new AtomicInteger();
+        final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(Math.min(concurrency, batches.size()));
+
+        try {
+            final List<ListenableFuture<?>> futures = new ArrayList<>();
+
+            for (final List<String> batch : batches) {
+                futures.add(executorService.submit(() -> {
+                    try {
+                        final Map<String, String> batchFailures = deleteBatch(batch);
+                        failures.putAll(batchFailures);
+                        deleted.addAndGet(batch.size() - batchFailures.size());
+                    } catch (final Exception ex) {
+                        logger.error(format("Unable to delete a batch of %s objects: %s", batch.size(), ex.getMessage()));
+                        batch.forEach(key -> failures.put(key, String.valueOf(ex.getMessage())));
+                    }
+                }));
+            }
+
+            Futures.allAsList(futures).get();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        logger.info(format("Deleted %s of %s objects in %s batches", deleted.get(), keys.size(), batches.size()));
+
+        if (!failures.isEmpty()) {
+            final List<String> failedKeys = failures.keySet().stream().sorted().collect(Collectors.toList());
+
+            failedKeys.forEach(key -> logger.error(format("Unable to delete %s: %s", key, failures.get(key))));
+
+            throw new IOException(format("Unable to delete %s of %s objects: %s%s",
+                                         failedKeys.size(),
+                                         keys.size(),
+                                         String.join(",", failedKeys.subList(0, Math.min(REPORTED_FAILURES, failedKeys.size()))),
+                                         failedKeys.size() > REPORTED_FAILURES ? ",..." : ""));
+        }
+    }
+
+    /**
+     * @param batch canonical paths of objects to delete in one request, objects which do not exist count as deleted
+     * @return reasons of failures by canonical paths of objects which were not deleted
+     */
+    protected abstract Map<String, String> deleteBatch(final List<String> batch) throws Exception;
+}
@@ -16,8 +16,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.instaclustr.esop.guice.RestorerFactory;
-import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
+import com.instaclustr.esop.impl.BackupCatalog;
+import com.instaclustr.esop.impl.Manifest.ManifestAgeComparator;
 import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
+import com.instaclustr.esop.impl.ParallelNodeProcessor;
+import com.instaclustr.esop.impl.ParallelNodeProcessor.NodeResult;
 import com.instaclustr.esop.impl.ProxySettings;
 import com.instaclustr.esop.impl.StorageInteractor;
 import com.instaclustr.esop.impl.StorageLocation;
@@ -97,14 +100,6 @@ public class RemoveBackupOperation extends Operation<RemoveBackupRequest> {
         this.time = System.currentTimeMillis();
     }
 
-    private List<StorageLocation> getStorageLocations(final StorageInteractor restorer) throws Exception {
-        if (request.globalRequest) {
-            return restorer.listNodes(request.dcs);
-        } else {
-            return Collections.singletonList(request.storageLocation);
-        }
-    }
-
     @Override
     protected void run0() throws Exception {
         assert restorerFactoryMap != null;
@@ -121,48 +116,27 @@ public class RemoveBackupOperation extends Operation<RemoveBackupRequest> {
                                                              simpleTopology.getHostId());
         }
 
-        try (final StorageInteractor interactor = restorerFactoryMap.get(request.storageLocation.storageProvider).createDeletingInteractor(request)) {
+        final RestorerFactory restorerFactory = restorerFactoryMap.get(request.storageLocation.storageProvider);
+
+        try (final StorageInteractor interactor = restorerFactory.createDeletingInteractor(RemoveBackupRequest.getForWorker(request))) {
             interactor.update(request.storageLocation, new LocalFileRestorer(getForLocalListing(request,
                                                                                                 request.cacheDir,
                                                                                                 request.storageLocation),
                                                                              objectMapper));
-            for (final StorageLocation nodeLocation : getStorageLocations(interactor)) {
-                logger.info("Looking for backups to delete for node {}", nodeLocation.nodePath());
-                request.storageLocation = nodeLocation;
-                interactor.update(nodeLocation, new LocalFileRestorer(getForLocalListing(request,
-                                                                                         request.cacheDir,
-                                                                                         request.storageLocation),
-                                                                      objectMapper));
-
-                final Optional<AllManifestsReport> reportOptional = getReport(interactor);
-
-                if (!reportOptional.isPresent()) {
-                    logger.info("No backups found for {}", nodeLocation.nodePath());
-                    continue;
-                }
-
-                final AllManifestsReport report = reportOptional.get();
-                logger.debug(report.toString());
-                final List<ManifestReport> allBackupsToDelete = getBackupsToDelete(report);
-
-                if (allBackupsToDelete.isEmpty()) {
-                    if (request.backupName != null) {
-                        logger.info("There is not any {} backup to remove for node {}", request.backupName, nodeLocation);
-                    } else {
-                        logger.info("There is not any backup to remove for node {}", nodeLocation);
-                    }
-                    continue;
-                }
 
-                logger.info("Removing backups for node {}: {}",
-                            nodeLocation.nodePath(),
-                            allBackupsToDelete.stream().map(mr -> mr.name).collect(Collectors.joining(",")));
+            final List<NodeResult<NodeRemoval>> results;
 
-                for (final ManifestReport mr : allBackupsToDelete) {
-                    interactor.delete(mr, request);
-                }
+            if (request.globalRequest) {
+                // nodes are processed in parallel, each worker by its own interactor
+                results = new ParallelNodeProcessor().process(interactor.listNodes(request.dcs),
+                                                              () -> restorerFactory.createDeletingInteractor(RemoveBackupRequest.getForWorker(request)),
+                                                              this::removeBackups);
+            } else {
+                results = Collections.singletonList(removeBackupsOfSingleNode(interactor, request.storageLocation));
             }
 
+            report(results);
+
             if (!request.dry) {
                 interactor.deleteTopology(request.backupName);
             } else {
@@ -174,29 +148,141 @@ public class RemoveBackupOperation extends Operation<RemoveBackupRequest> {
         }
     }
 
-    private List<ManifestReport> getBackupsToDelete(final AllManifestsReport allManifestsReport) {
-        final List<ManifestReport> manifestReports = new ArrayList<>();
+    private NodeResult<NodeRemoval> removeBackupsOfSingleNode(final StorageInteractor interactor, final StorageLocation nodeLocation) {
+        try {
+            return NodeResult.of(nodeLocation, removeBackups(interactor, nodeLocation));
+        } catch (final Exception ex) {
+            logger.error(String.format("Unable to remove backups of node %s - %s", nodeLocation.nodePath(), ex.getMessage()), ex);
+            return NodeResult.failed(nodeLocation, ex);
+        }
+    }
+
+    private NodeRemoval removeBackups(final StorageInteractor interactor, final StorageLocation nodeLocation) throws Exception {
+        final NodeRemoval removal = new NodeRemoval();
+
+        logger.info("Looking for backups to delete for node {}", nodeLocation.nodePath());
+        interactor.update(nodeLocation, new LocalFileRestorer(getForLocalListing(request,
+                                                                                 request.cacheDir,
+                                                                                 nodeLocation),
+                                                              objectMapper));
+
+        final List<String> manifestNames = new ArrayList<>(interactor.listManifestNames());
+        manifestNames.sort(new ManifestAgeComparator());
+
+        // backups are selected by names of their manifests, so nothing is read when there is nothing to remove
+        final List<String> allBackupsToDelete = getBackupsToDelete(manifestNames);
+
+        if (allBackupsToDelete.isEmpty()) {
+            if (request.backupName != null) {
+                logger.info("There is not any {} backup to remove for node {}", request.backupName, nodeLocation);
+            } else {
+                logger.info("There is not any backup to remove for node {}", nodeLocation);
+            }
+            return removal;
+        }
+
+        // a catalog is stored once backups are removed, not when it is loaded
+        final BackupCatalog catalog = BackupCatalog.load(interactor, objectMapper, manifestNames, false);
+
+        logger.info("Removing backups for node {}: {}",
+                    nodeLocation.nodePath(),
+                    allBackupsToDelete.stream().map(name -> name.substring(0, name.lastIndexOf("."))).collect(Collectors.joining(",")));
+
+        try {
+            for (final String backupToDelete : allBackupsToDelete) {
+                // reported just before its deletion, so files left only by backups removed before it are removed too
+                final Optional<ManifestReport> report = catalog.report(Collections.singletonList(backupToDelete)).getLatest();
+
+                if (!report.isPresent()) {
+                    continue;
+                }
+
+                final ManifestReport mr = report.get();
+                logger.debug(mr.toString());
+
+                try {
+                    interactor.delete(mr, request);
+                } catch (final Exception ex) {
+                    // its manifest is kept, so objects which were not deleted are still referenced and removal of it might be repeated
+                    logger.error(String.format("Unable to remove backup %s of node %s - %s", mr.name, nodeLocation.nodePath(), ex.getMessage()), ex);
+                    removal.errors.add(ex);
+                    continue;
+                }
+
+                removal.removedBackups++;
+                removal.reclaimedSpace += mr.reclaimableSpace;
+
+                if (!request.dry) {
+                    catalog.remove(mr);
+                }
+            }
+        } finally {
+            if (!request.dry) {
+                catalog.store(interactor, objectMapper);
+            }
+        }
+
+        return removal;
+    }
+
+    // errors are added here, by one thread, as errors of an operation are not thread-safe
+    private void report(final List<NodeResult<NodeRemoval>> results) {
+        int removedBackups = 0;
+        long reclaimedSpace = 0;
+        int failedNodes = 0;
+
+        for (final NodeResult<NodeRemoval> result : results) {
+            if (result.isFailed()) {
+                failedNodes++;
+                this.addError(Error.from(result.error));
+                continue;
+            }
+
+            removedBackups += result.result.removedBackups;
+            reclaimedSpace += result.result.reclaimedSpace;
+
+            if (!result.result.errors.isEmpty()) {
+                failedNodes++;
+                result.result.errors.forEach(ex -> this.addError(Error.from(ex)));
+            }
+        }
+
+        logger.info("{} {} backups of {} nodes, {} bytes reclaimed, {} nodes with errors",
+                    request.dry ? "Would remove" : "Removed",
+                    removedBackups,
+                    results.size(),
+                    reclaimedSpace,
+                    failedNodes);
+    }
+
+    /**
+     * @param manifestNames file names of manifests of a node, newest first
+     * @return file names of manifests of backups to delete
+     */
+    private List<String> getBackupsToDelete(final List<String> manifestNames) {
+        final List<String> backupsToDelete = new ArrayList<>();
 
         if (request.removeOldest) {
-            allManifestsReport.getOldest().map(manifestReports::add);
+            if (!manifestNames.isEmpty()) {
+                backupsToDelete.add(manifestNames.get(manifestNames.size() - 1));
+            }
         } else if (request.backupName != null) {
-            allManifestsReport.get(request.backupName).map(manifestReports::add);
+            manifestNames.stream()
+                .filter(name -> name.substring(0, name.lastIndexOf(".")).equals(request.backupName))
+                .findFirst()
+                .map(backupsToDelete::add);
         } else if (request.olderThan.value > 0) {
             final long cut = this.time - request.olderThan.toMilliseconds();
-            manifestReports.addAll(allManifestsReport.filter(report -> report.unixtimestamp < cut));
+            manifestNames.stream().filter(name -> ManifestAgeComparator.extractTimestamp(name) < cut).forEach(backupsToDelete::add);
         }
 
-        return manifestReports;
+        return backupsToDelete;
     }
 
-    private Optional<AllManifestsReport> getReport(final StorageInteractor storageInteractor) {
-        try {
-            return Optional.of(AllManifestsReport.report(storageInteractor.listManifests()));
-        } catch (final Exception ex) {
-            logger.error(String.format("Unable to perform listing against node %s - %s", storageInteractor.getStorageLocation(), ex.getMessage()), ex);
-            this.addError(Error.from(ex));
-        }
+    private static class NodeRemoval {
 
-        return Optional.empty();
+        int removedBackups;
+        long reclaimedSpace;
+        final List<Exception> errors = new ArrayList<>();
     }
 }
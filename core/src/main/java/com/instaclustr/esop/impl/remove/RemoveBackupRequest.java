@@ -89,6 +89,30 @@ public class RemoveBackupRequest extends BaseRestoreOperationRequest {
         this.globalRequest = globalRequest;
     }
 
+    /**
+     * @return copy of a request for an interactor of one worker of a global request, as an interactor updates
+     * storage location of its request to a node it processes
+     */
+    public static RemoveBackupRequest getForWorker(final RemoveBackupRequest request) {
+        final RemoveBackupRequest copy = new RemoveBackupRequest(request.type,
+                                                                 request.storageLocation,
+                                                                 request.insecure,
+                                                                 request.skipBucketVerification,
+                                                                 request.proxySettings,
+                                                                 request.retry,
+                                                                 request.backupName,
+                                                                 request.dry,
+                                                                 request.resolveNodes,
+                                                                 request.olderThan,
+                                                                 request.cacheDir,
+                                                                 request.removeOldest,
+                                                                 request.concurrentConnections,
+                                                                 request.globalRequest);
+        copy.dcs = request.dcs;
+        copy.kmsKeyId = request.kmsKeyId;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
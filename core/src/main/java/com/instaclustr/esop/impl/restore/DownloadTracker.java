@@ -2,19 +2,27 @@ package com.instaclustr.esop.impl.restore;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.Inject;
 import com.instaclustr.esop.impl.AbstractTracker;
+import com.instaclustr.esop.impl.KeyspaceTable;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.ManifestEntry.Type;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.hash.HashService.HashVerificationException;
 import com.instaclustr.esop.impl.hash.HashServiceImpl;
 import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.esop.impl.hash.HashSpec.HashAlgorithm;
 import com.instaclustr.esop.impl.restore.DownloadTracker.DownloadSession;
 import com.instaclustr.esop.impl.restore.DownloadTracker.DownloadUnit;
 import com.instaclustr.esop.impl.restore.RestoreModules.DownloadingFinisher;
@@ -38,13 +46,17 @@ public class DownloadTracker extends AbstractTracker<DownloadUnit, DownloadSessi
         super(finisherExecutorService, operationsService, hashSpec);
     }
 
+    // ledger and local sources of a request being submitted, submission is synchronized
+    private VerificationLedger verificationLedger;
+    private LocalSourceResolver localSourceResolver;
+
     @Override
     public DownloadUnit constructUnitToSubmit(final Restorer restorer,
                                               final ManifestEntry manifestEntry,
                                               final AtomicBoolean shouldCancel,
                                               final String snapshotTag,
                                               final HashSpec hashSpec) {
-        return new DownloadUnit(restorer, manifestEntry, shouldCancel, snapshotTag, hashSpec);
+        return new DownloadUnit(restorer, manifestEntry, shouldCancel, snapshotTag, hashSpec, verificationLedger, localSourceResolver);
     }
 
     @Override
@@ -53,20 +65,66 @@ public class DownloadTracker extends AbstractTracker<DownloadUnit, DownloadSessi
     }
 
     @Override
-    public Session<DownloadUnit> submit(final Restorer restorer,
-                                        final Operation<? extends BaseRestoreOperationRequest> operation,
-                                        final Collection<ManifestEntry> entries,
-                                        final String snapshotTag,
-                                        final int concurrentConnections) {
-        return super.submit(restorer,
-                            operation,
-                            entries,
-                            snapshotTag,
-                            concurrentConnections);
+    public synchronized Session<DownloadUnit> submit(final Restorer restorer,
+                                                     final Operation<? extends BaseRestoreOperationRequest> operation,
+                                                     final Collection<ManifestEntry> entries,
+                                                     final String snapshotTag,
+                                                     final int concurrentConnections) {
+        verificationLedger = VerificationLedger.forRequest(operation.request);
+        localSourceResolver = LocalSourceResolver.forRequest(operation.request);
+
+        try {
+            return super.submit(restorer,
+                                operation,
+                                entries,
+                                snapshotTag,
+                                concurrentConnections);
+        } finally {
+            verificationLedger = null;
+            localSourceResolver = null;
+        }
     }
 
     public static class DownloadSession extends AbstractTracker.Session<DownloadUnit> {
 
+        // tables as "keyspace.table" which were already reported as downloaded
+        private final Set<String> reportedTables = new HashSet<>();
+
+        /**
+         * Signals completion of tables, so a table might be processed while other tables are still being downloaded.
+         *
+         * @return tables all files of which were downloaded successfully since this method was called last time
+         */
+        public synchronized List<KeyspaceTable> getDownloadedTables() {
+            final Map<String, List<DownloadUnit>> unitsByTable = new LinkedHashMap<>();
+
+            synchronized (units) {
+                for (final DownloadUnit unit : units) {
+                    final KeyspaceTable keyspaceTable = unit.getManifestEntry().keyspaceTable;
+
+                    if (keyspaceTable == null) {
+                        continue;
+                    }
+
+                    final String table = keyspaceTable.keyspace + "." + keyspaceTable.table;
+
+                    if (!reportedTables.contains(table)) {
+                        unitsByTable.computeIfAbsent(table, t -> new ArrayList<>()).add(unit);
+                    }
+                }
+            }
+
+            final List<KeyspaceTable> downloadedTables = new ArrayList<>();
+
+            unitsByTable.forEach((table, tableUnits) -> {
+                if (tableUnits.stream().allMatch(unit -> unit.getState() == FINISHED)) {
+                    reportedTables.add(table);
+                    downloadedTables.add(tableUnits.get(0).getManifestEntry().keyspaceTable);
+                }
+            });
+
+            return downloadedTables;
+        }
     }
 
     public static class DownloadUnit extends AbstractTracker.Unit {
@@ -74,13 +132,23 @@ public class DownloadTracker extends AbstractTracker<DownloadUnit, DownloadSessi
         @JsonIgnore
         private final Restorer restorer;
 
+        @JsonIgnore
+        private final VerificationLedger verificationLedger;
+
+        @JsonIgnore
+        private final LocalSourceResolver localSourceResolver;
+
         public DownloadUnit(final Restorer restorer,
                             final ManifestEntry manifestEntry,
                             final AtomicBoolean shouldCancel,
                             final String snapshotTag,
-                            final HashSpec hashSpec) {
+                            final HashSpec hashSpec,
+                            final VerificationLedger verificationLedger,
+                            final LocalSourceResolver localSourceResolver) {
             super(manifestEntry, shouldCancel, hashSpec);
             this.restorer = restorer;
+            this.verificationLedger = verificationLedger;
+            this.localSourceResolver = localSourceResolver;
             super.snapshotTag = snapshotTag;
         }
 
@@ -96,20 +164,36 @@ public class DownloadTracker extends AbstractTracker<DownloadUnit, DownloadSessi
                     localPath = manifestEntry.localFile.getParent().resolve("schema.cql");
                 }
 
-                if (!Files.exists(localPath)) {
-                    logger.info(String.format("Downloading file %s to %s.", remoteObjectReference.getObjectKey(), manifestEntry.localFile));
+                if (!Files.exists(localPath) && localSourceResolver.link(manifestEntry, localPath, hashSpec)) {
+                    // same file is on a local disk already and it was verified
+                    if (hashSpec.algorithm != HashAlgorithm.NONE) {
+                        verificationLedger.verified(localPath, manifestEntry.hash);
+                    }
 
-                    restorer.downloadFile(localPath, manifestEntry, remoteObjectReference);
+                    state = FINISHED;
+                } else if (!Files.exists(localPath)) {
+                    logger.info(String.format("Downloading file %s to %s.", remoteObjectReference.getObjectKey(), manifestEntry.localFile));
 
-                    // hash upon downloading
-                    try {
-                        if (manifestEntry.type == Type.FILE) {
-                            new HashServiceImpl(hashSpec).verify(localPath, manifestEntry.hash);
+                    if (RangedDownload.isApplicable(manifestEntry) && restorer.supportsRangedDownload(manifestEntry, remoteObjectReference)) {
+                        // hashed while downloading, a file with wrong hash is not left behind
+                        new RangedDownload(restorer, remoteObjectReference, manifestEntry, restorer.request.retry, hashSpec).download(localPath);
+                    } else {
+                        restorer.downloadFile(localPath, manifestEntry, remoteObjectReference);
+
+                        // hash upon downloading
+                        try {
+                            if (manifestEntry.type == Type.FILE) {
+                                new HashServiceImpl(hashSpec).verify(localPath, manifestEntry.hash);
+                            }
+                        } catch (final HashVerificationException ex) {
+                            // delete it if has is wrong so on the next try, it will be missing and we will download it again
+                            Files.deleteIfExists(localPath);
+                            throw ex;
                         }
-                    } catch (final HashVerificationException ex) {
-                        // delete it if has is wrong so on the next try, it will be missing and we will download it again
-                        Files.deleteIfExists(localPath);
-                        throw ex;
+                    }
+
+                    if (manifestEntry.type == Type.FILE && hashSpec.algorithm != HashAlgorithm.NONE) {
+                        verificationLedger.verified(localPath, manifestEntry.hash);
                     }
 
                     logger.info(String.format("Successfully downloaded file %s to %s.", remoteObjectReference.getObjectKey(), localPath));
@@ -120,8 +204,14 @@ public class DownloadTracker extends AbstractTracker<DownloadUnit, DownloadSessi
                 } else if (manifestEntry.hash != null) {
                     logger.info(String.format("Skipping download of file %s to %s, file already exists locally.",
                                               remoteObjectReference.getObjectKey(), manifestEntry.localFile));
-                    // if it exists, verify its hash to be sure it was not altered
-                    new HashServiceImpl(hashSpec).verify(localPath, manifestEntry.hash);
+                    // if it exists, verify its hash to be sure it was not altered, unless it was verified already and not changed since
+                    if (!verificationLedger.isVerified(localPath, manifestEntry.hash)) {
+                        new HashServiceImpl(hashSpec).verify(localPath, manifestEntry.hash);
+
+                        if (hashSpec.algorithm != HashAlgorithm.NONE) {
+                            verificationLedger.verified(localPath, manifestEntry.hash);
+                        }
+                    }
                     state = FINISHED;
                 } else {
                     // if it exists and manifest does not have hash field, consider it to be finished without any check
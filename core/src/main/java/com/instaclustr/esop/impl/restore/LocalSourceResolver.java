@@ -0,0 +1,190 @@
+package com.instaclustr.esop.impl.restore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.SSTableUtils;
+import com.instaclustr.esop.impl.hash.HashServiceImpl;
+import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.operations.OperationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Finds SSTables a manifest refers to among files which are already on a node, in snapshots and backups
+ * directories of Cassandra data directories, so they do not need to be downloaded. Such file has to have
+ * the same name, belong to a table of the same keyspace and name (its id might be different if the table was
+ * recreated), its SSTable digest has to match the one in its object key and its hash has to match the hash
+ * in a manifest. A matching file is hardlinked to where it would be downloaded to; if it can not be linked,
+ * e.g. because it is on a different file system, it is downloaded.
+ * <p>
+ * Lookup of local files is turned off by system property {@code download.local.sources} set to false.
+ */
+public class LocalSourceResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalSourceResolver.class);
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("download.local.sources", "true"));
+
+    private static final LocalSourceResolver DISABLED = new LocalSourceResolver(Collections.emptyList());
+
+    // keyspace/table[/.index]/file of data dirs
+    private static final int MAX_DEPTH = 6;
+
+    private final List<Path> dataDirs;
+
+    // keyspace/table name[/.index]/file name to files having such name
+    private Map<String, List<Path>> sources;
+
+    private LocalSourceResolver(final List<Path> dataDirs) {
+        this.dataDirs = dataDirs;
+    }
+
+    public static LocalSourceResolver forRequest(final OperationRequest request) {
+        if (!ENABLED || !(request instanceof RestoreOperationRequest)) {
+            return DISABLED;
+        }
+
+        final RestoreOperationRequest restoreRequest = (RestoreOperationRequest) request;
+
+        if (restoreRequest.dataDirs == null || restoreRequest.dataDirs.isEmpty()) {
+            return DISABLED;
+        }
+
+        return new LocalSourceResolver(restoreRequest.dataDirs);
+    }
+
+    /**
+     * Hardlinks a local file of the same content as an entry to the path the entry would be downloaded to.
+     *
+     * @return true if a file was linked so it is not necessary to download it, false otherwise
+     */
+    public boolean link(final ManifestEntry manifestEntry, final Path localPath, final HashSpec hashSpec) {
+        if (dataDirs.isEmpty() || manifestEntry.type != ManifestEntry.Type.FILE || manifestEntry.hash == null) {
+            return false;
+        }
+
+        final String key = entryKey(manifestEntry.objectKey);
+
+        if (key == null) {
+            return false;
+        }
+
+        final List<Path> candidates = getSources().get(key);
+
+        if (candidates == null) {
+            return false;
+        }
+
+        final String sstableHash = manifestEntry.objectKey.getName(SSTableUtils.isSecondaryIndexManifest(manifestEntry.objectKey) ? 4 : 3).toString();
+
+        for (final Path candidate : candidates) {
+            if (!SSTableUtils.isExistingSStable(candidate, sstableHash)) {
+                continue;
+            }
+
+            try {
+                new HashServiceImpl(hashSpec).verify(candidate, manifestEntry.hash);
+            } catch (final Exception ex) {
+                logger.debug(format("Local file %s does not match %s: %s", candidate, manifestEntry.objectKey, ex.getMessage()));
+                continue;
+            }
+
+            try {
+                Files.createDirectories(localPath.getParent());
+                Files.createLink(localPath, candidate);
+                logger.info(format("Linked local file %s to %s instead of downloading %s", candidate, localPath, manifestEntry.objectKey));
+                return true;
+            } catch (final Exception ex) {
+                logger.info(format("Unable to link local file %s to %s, it will be downloaded: %s", candidate, localPath, ex.getMessage()));
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private synchronized Map<String, List<Path>> getSources() {
+        if (sources == null) {
+            sources = new HashMap<>();
+
+            for (final Path dataDir : dataDirs) {
+                if (!Files.isDirectory(dataDir)) {
+                    continue;
+                }
+
+                try (final Stream<Path> paths = Files.walk(dataDir, MAX_DEPTH)) {
+                    paths.filter(Files::isRegularFile).forEach(path -> {
+                        final String key = sourceKey(dataDir.relativize(path));
+
+                        if (key != null) {
+                            sources.computeIfAbsent(key, k -> new ArrayList<>()).add(path);
+                        }
+                    });
+                } catch (final Exception ex) {
+                    logger.warn(format("Unable to look for local SSTables in %s: %s", dataDir, ex.getMessage()));
+                }
+            }
+
+            logger.info(format("Found %s distinct SSTable files in snapshots and backups of %s", sources.size(), dataDirs));
+        }
+
+        return sources;
+    }
+
+    // keyspace/table-id/snapshots/tag[/.index]/file or keyspace/table-id/backups[/.index]/file
+    private static String sourceKey(final Path relativePath) {
+        final int nameCount = relativePath.getNameCount();
+
+        if (nameCount < 4) {
+            return null;
+        }
+
+        final String directory = relativePath.getName(2).toString();
+        final int fileStart;
+
+        if (directory.equals("snapshots") && nameCount >= 5) {
+            fileStart = 4;
+        } else if (directory.equals("backups")) {
+            fileStart = 3;
+        } else {
+            return null;
+        }
+
+        if (nameCount - fileStart > 2) {
+            return null;
+        }
+
+        return key(relativePath.getName(0).toString(), relativePath.getName(1).toString(), relativePath.subpath(fileStart, nameCount).toString());
+    }
+
+    // data/keyspace/table-id[/.index]/gen-digest/file
+    private static String entryKey(final Path objectKey) {
+        final boolean secondaryIndex = SSTableUtils.isSecondaryIndexManifest(objectKey);
+
+        if (objectKey.getNameCount() != (secondaryIndex ? 6 : 5)) {
+            return null;
+        }
+
+        final String file = secondaryIndex
+            ? objectKey.getName(3).resolve(objectKey.getFileName()).toString()
+            : objectKey.getFileName().toString();
+
+        return key(objectKey.getName(1).toString(), objectKey.getName(2).toString(), file);
+    }
+
+    private static String key(final String keyspace, final String tableDirectory, final String file) {
+        final int idSeparator = tableDirectory.lastIndexOf('-');
+        final String table = idSeparator == -1 ? tableDirectory : tableDirectory.substring(0, idSeparator);
+        return keyspace + "/" + table + "/" + file;
+    }
+}
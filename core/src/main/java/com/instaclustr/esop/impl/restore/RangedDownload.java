@@ -0,0 +1,269 @@
+package com.instaclustr.esop.impl.restore;
+
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.RemoteObjectReference;
+import com.instaclustr.esop.impl.hash.HashService.HashVerificationException;
+import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.esop.impl.hash.HashSpec.Digest;
+import com.instaclustr.esop.impl.retry.Retrier.RetriableException;
+import com.instaclustr.esop.impl.retry.RetrySpec;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.instaclustr.esop.impl.retry.RetrierFactory.getRetrier;
+import static java.lang.String.format;
+
+/**
+ * Downloads a remote object by byte ranges fetched concurrently and written to their positions in a preallocated file.
+ * Each range is retried on its own. The file is written under a temporary name and moved to its final location only
+ * when all ranges were downloaded and the hash of the file matches, so a failed download never leaves a partial
+ * or corrupted file behind.
+ * <p>
+ * The hash is computed while the file is being downloaded, so a downloaded file is not read again to verify it.
+ * Files smaller than {@link #THRESHOLD} are downloaded as one stream which is hashed as it is written, without any
+ * thread pool or preallocated file. Ranges of bigger files are hashed in their order by a thread of its own as soon as
+ * they are written, while next ranges are still being downloaded, so their bytes are read back from page cache rather
+ * than from disk.
+ */
+public class RangedDownload {
+
+    private static final Logger logger = LoggerFactory.getLogger(RangedDownload.class);
+
+    // files of this size in bytes or bigger are downloaded by more ranges
+    public static final long THRESHOLD = Long.parseLong(System.getProperty("download.range.threshold", Long.toString(256L * 1024 * 1024)));
+
+    public static final long RANGE_SIZE = Long.parseLong(System.getProperty("download.range.size", Long.toString(64L * 1024 * 1024)));
+
+    // number of ranges of one file downloaded concurrently, 1 turns downloads by more ranges off
+    public static final int CONCURRENCY = Integer.parseInt(System.getProperty("download.range.concurrency", "4"));
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Restorer restorer;
+    private final RemoteObjectReference objectReference;
+    private final ManifestEntry manifestEntry;
+    private final RetrySpec retrySpec;
+    private final HashSpec hashSpec;
+    private final long threshold;
+    private final long rangeSize;
+    private final int concurrency;
+
+    public RangedDownload(final Restorer restorer,
+                          final RemoteObjectReference objectReference,
+                          final ManifestEntry manifestEntry,
+                          final RetrySpec retrySpec,
+                          final HashSpec hashSpec) {
+        this(restorer, objectReference, manifestEntry, retrySpec, hashSpec, THRESHOLD, RANGE_SIZE, CONCURRENCY);
+    }
+
+    @VisibleForTesting
+    public RangedDownload(final Restorer restorer,
+                          final RemoteObjectReference objectReference,
+                          final ManifestEntry manifestEntry,
+                          final RetrySpec retrySpec,
+                          final HashSpec hashSpec,
+                          final long threshold,
+                          final long rangeSize,
+                          final int concurrency) {
+        this.restorer = restorer;
+        this.objectReference = objectReference;
+        this.manifestEntry = manifestEntry;
+        this.retrySpec = retrySpec;
+        this.hashSpec = hashSpec;
+        this.threshold = threshold;
+        this.rangeSize = rangeSize;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @return true if an entry is a file to be hashed while it is downloaded, provided its storage supports reading it by ranges
+     */
+    public static boolean isApplicable(final ManifestEntry manifestEntry) {
+        return manifestEntry.type == ManifestEntry.Type.FILE;
+    }
+
+    private int numberOfRanges(final long size) {
+        if (concurrency > 1 && rangeSize > 0 && size >= threshold && size > rangeSize) {
+            return (int) ((size + rangeSize - 1) / rangeSize);
+        }
+
+        return 1;
+    }
+
+    public void download(final Path localPath) throws Exception {
+        Files.createDirectories(localPath.getParent());
+
+        final Path partialFile = localPath.resolveSibling(localPath.getFileName() + ".download");
+
+        final int numberOfRanges = numberOfRanges(manifestEntry.size);
+
+        try {
+            if (numberOfRanges == 1) {
+                try (final FileChannel channel = FileChannel.open(partialFile,
+                                                                  StandardOpenOption.CREATE,
+                                                                  StandardOpenOption.TRUNCATE_EXISTING,
+                                                                  StandardOpenOption.WRITE)) {
+                    verify(downloadRange(channel, 0, manifestEntry.size, true));
+                }
+            } else {
+                verify(downloadRanges(partialFile, numberOfRanges));
+            }
+        } catch (final Exception ex) {
+            Files.deleteIfExists(partialFile);
+            throw ex;
+        }
+
+        Files.move(partialFile, localPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return hash of a file downloaded by ranges concurrently
+     */
+    private String downloadRanges(final Path partialFile, final int numberOfRanges) throws Exception {
+        try (final RandomAccessFile file = new RandomAccessFile(partialFile.toFile(), "rw")) {
+            file.setLength(manifestEntry.size);
+        }
+
+        logger.debug("Downloading {} by {} ranges", objectReference.canonicalPath, numberOfRanges);
+
+        final ListeningExecutorService rangeExecutorService = new FixedTasksExecutorSupplier().get(Math.min(concurrency, numberOfRanges));
+        // hashing has a thread of its own, so it follows ranges as they are written rather than being queued behind them
+        final ListeningExecutorService hashExecutorService = new FixedTasksExecutorSupplier().get(1);
+
+        try (final FileChannel channel = FileChannel.open(partialFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final List<ListenableFuture<String>> futures = new ArrayList<>();
+
+            for (int i = 0; i < numberOfRanges; i++) {
+                final long offset = i * rangeSize;
+                final long length = Math.min(rangeSize, manifestEntry.size - offset);
+
+                futures.add(rangeExecutorService.submit(() -> downloadRange(channel, offset, length, false)));
+            }
+
+            final List<ListenableFuture<String>> ranges = new ArrayList<>(futures);
+            final ListenableFuture<String> hashFuture = hashExecutorService.submit(() -> hashRanges(channel, ranges));
+
+            futures.add(hashFuture);
+
+            // fails as soon as any range fails instead of waiting for hashing
+            Futures.allAsList(futures).get();
+
+            return hashFuture.get();
+        } finally {
+            rangeExecutorService.shutdownNow();
+            hashExecutorService.shutdownNow();
+        }
+    }
+
+    private void verify(final String hash) throws HashVerificationException {
+        if (hashSpec.algorithm == HashSpec.HashAlgorithm.NONE) {
+            return;
+        }
+
+        if (manifestEntry.hash == null) {
+            throw new HashVerificationException("hash to expect is null!");
+        }
+
+        if (!manifestEntry.hash.equals(hash)) {
+            throw new HashVerificationException(format("hash of downloaded %s (%s) does not match with expected hash %s",
+                                                       objectReference.canonicalPath,
+                                                       hash,
+                                                       manifestEntry.hash));
+        }
+    }
+
+    /**
+     * @return hash of the range if it was asked to digest it, null otherwise
+     */
+    private String downloadRange(final FileChannel channel, final long offset, final long length, final boolean digest) throws Exception {
+        // an empty file has no range to request
+        if (length == 0) {
+            return digest ? hashSpec.algorithm.getHasher().getDigest().getHash() : null;
+        }
+
+        final String[] hash = new String[1];
+
+        getRetrier(retrySpec).submit(() -> {
+            try (final InputStream rangeStream = restorer.downloadRange(objectReference, offset, length)) {
+                // every attempt starts over with a new digest
+                hash[0] = write(rangeStream, channel, offset, length, digest ? hashSpec.algorithm.getHasher().getDigest() : null);
+            } catch (final Exception ex) {
+                throw new RetriableException(format("Retrying download of range %s-%s of %s", offset, offset + length - 1, objectReference.canonicalPath), ex);
+            }
+        });
+
+        return hash[0];
+    }
+
+    private String write(final InputStream rangeStream, final FileChannel channel, final long offset, final long length, final Digest digest) throws Exception {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        int read;
+
+        while (written < length && (read = rangeStream.read(buffer, 0, (int) Math.min(buffer.length, length - written))) != -1) {
+            if (digest != null) {
+                digest.update(buffer, 0, read);
+            }
+
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+
+            while (byteBuffer.hasRemaining()) {
+                written += channel.write(byteBuffer, offset + written);
+            }
+        }
+
+        if (written != length) {
+            throw new IllegalStateException(format("Range %s-%s of %s has only %s bytes", offset, offset + length - 1, objectReference.canonicalPath, written));
+        }
+
+        return digest == null ? null : digest.getHash();
+    }
+
+    private String hashRanges(final FileChannel channel, final List<ListenableFuture<String>> ranges) throws Exception {
+        final Digest digest = hashSpec.algorithm.getHasher().getDigest();
+
+        if (hashSpec.algorithm == HashSpec.HashAlgorithm.NONE) {
+            return digest.getHash();
+        }
+
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long position = 0;
+
+        for (final ListenableFuture<String> range : ranges) {
+            // waits for the range to be written, a failed range fails hashing too
+            range.get();
+
+            final long end = Math.min(position + rangeSize, manifestEntry.size);
+
+            while (position < end) {
+                final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, end - position));
+                final int read = channel.read(byteBuffer, position);
+
+                if (read == -1) {
+                    throw new IllegalStateException(format("Unexpected end of %s at %s", objectReference.canonicalPath, position));
+                }
+
+                digest.update(buffer, 0, read);
+                position += read;
+            }
+        }
+
+        return digest.getHash();
+    }
+}
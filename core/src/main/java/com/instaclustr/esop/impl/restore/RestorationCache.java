@@ -0,0 +1,151 @@
+package com.instaclustr.esop.impl.restore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.instaclustr.esop.impl.CassandraData;
+import com.instaclustr.esop.impl.Manifest;
+import jmx.org.apache.cassandra.service.CassandraJMXService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.HOURS;
+
+/**
+ * Caches what every phase of a restoration needs, so a restore executed phase by phase does not download and parse
+ * a manifest and does not parse Cassandra metadata over and over again.
+ * <p>
+ * A manifest is cached by a node, a snapshot tag and schema versions it is resolved for. Its downloaded copy is kept
+ * in download directory, so phases run as separate operations do not download it again, and parsed manifests are
+ * cached in memory, so phases run by the same process do not parse it again. Cassandra metadata are cached in memory
+ * by schema version, a change of tables changes schema version too.
+ * <p>
+ * Init phase always downloads a manifest, so a restore run again starts with a fresh one, and cleanup phase
+ * invalidates everything which was cached.
+ */
+public final class RestorationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RestorationCache.class);
+
+    public static final String MANIFEST_FILE_PREFIX = ".esop-manifest-";
+
+    private static final Cache<String, Manifest> manifests = CacheBuilder.newBuilder().maximumSize(4).expireAfterAccess(1, HOURS).build();
+
+    private static final Cache<String, CassandraData> cassandraData = CacheBuilder.newBuilder().maximumSize(4).expireAfterAccess(1, HOURS).build();
+
+    private RestorationCache() {
+    }
+
+    /**
+     * @return manifest to restore from, every call returns its own copy so it can be enriched
+     */
+    public static Manifest getManifest(final RestoreOperationRequest request,
+                                       final Restorer restorer,
+                                       final String schemaVersion,
+                                       final ObjectMapper objectMapper) throws Exception {
+        final String key = manifestKey(request, schemaVersion);
+
+        Manifest manifest = manifests.getIfPresent(key);
+
+        if (manifest == null) {
+            manifest = readManifest(request, restorer, schemaVersion, key, objectMapper);
+            manifests.put(key, manifest);
+        } else {
+            logger.info("Using cached manifest of snapshot {}", request.snapshotTag);
+        }
+
+        return manifest.clone();
+    }
+
+    /**
+     * Downloads a manifest regardless it is cached or not and caches it.
+     */
+    public static Manifest refreshManifest(final RestoreOperationRequest request,
+                                           final Restorer restorer,
+                                           final String schemaVersion,
+                                           final ObjectMapper objectMapper) throws Exception {
+        final String key = manifestKey(request, schemaVersion);
+
+        manifests.invalidate(key);
+
+        final Path manifestCopy = manifestCopy(request, key);
+
+        if (manifestCopy != null) {
+            Files.deleteIfExists(manifestCopy);
+        }
+
+        return getManifest(request, restorer, schemaVersion, objectMapper);
+    }
+
+    /**
+     * @return Cassandra metadata for given schema version, every call returns its own copy so a request can be set on it
+     */
+    public static CassandraData getCassandraData(final CassandraJMXService jmx, final String schemaVersion) throws Exception {
+        return cassandraData.get(schemaVersion, () -> CassandraData.parse(jmx)).copy();
+    }
+
+    public static void invalidate() {
+        manifests.invalidateAll();
+        cassandraData.invalidateAll();
+    }
+
+    private static Manifest readManifest(final RestoreOperationRequest request,
+                                         final Restorer restorer,
+                                         final String schemaVersion,
+                                         final String key,
+                                         final ObjectMapper objectMapper) throws Exception {
+        final Path manifestCopy = manifestCopy(request, key);
+
+        if (manifestCopy == null) {
+            return RestorationUtilities.downloadManifest(request, restorer, schemaVersion, objectMapper);
+        }
+
+        if (Files.exists(manifestCopy)) {
+            logger.info("Using manifest of snapshot {} downloaded to {}", request.snapshotTag, manifestCopy);
+            return Manifest.read(manifestCopy, objectMapper);
+        }
+
+        try {
+            Files.createDirectories(manifestCopy.getParent());
+        } catch (final Exception ex) {
+            logger.warn("Unable to keep a copy of manifest of snapshot {} in {}: {}", request.snapshotTag, manifestCopy, ex.getMessage());
+            return RestorationUtilities.downloadManifest(request, restorer, schemaVersion, objectMapper);
+        }
+
+        // a manifest is downloaded right to its copy, under other name until it is complete
+        final Path partialCopy = manifestCopy.resolveSibling(manifestCopy.getFileName() + ".download");
+
+        try {
+            RestorationUtilities.downloadManifest(request, restorer, schemaVersion, partialCopy);
+            Files.move(partialCopy, manifestCopy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partialCopy);
+        }
+
+        return Manifest.read(manifestCopy, objectMapper);
+    }
+
+    private static Path manifestCopy(final RestoreOperationRequest request, final String key) {
+        if (request.importing == null || request.importing.sourceDir == null) {
+            return null;
+        }
+
+        return request.importing.sourceDir.resolve(MANIFEST_FILE_PREFIX + Hashing.sha256().hashString(key, UTF_8) + ".json");
+    }
+
+    private static String manifestKey(final RestoreOperationRequest request, final String schemaVersion) {
+        return format("%s|%s|%s|%s|%s",
+                      request.storageLocation.nodePath(),
+                      request.snapshotTag,
+                      request.schemaVersion,
+                      request.exactSchemaVersion,
+                      request.exactSchemaVersion ? schemaVersion : null);
+    }
+}
@@ -3,27 +3,33 @@ package com.instaclustr.esop.impl.restore;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.instaclustr.cassandra.CassandraVersion;
 import com.instaclustr.esop.ManifestEnricher;
 import com.instaclustr.esop.impl.AbstractTracker.Session;
 import com.instaclustr.esop.impl.BucketService;
 import com.instaclustr.esop.impl.CassandraData;
 import com.instaclustr.esop.impl.DatabaseEntities;
+import com.instaclustr.esop.impl.KeyspaceTable;
 import com.instaclustr.esop.impl.Manifest;
 import com.instaclustr.esop.impl.ManifestEntry;
-import com.instaclustr.esop.impl._import.ImportOperation;
 import com.instaclustr.esop.impl._import.ImportOperationRequest;
 import com.instaclustr.esop.impl.interaction.CassandraSameTokens;
 import com.instaclustr.esop.impl.interaction.CassandraSchemaVersion;
@@ -31,16 +37,15 @@ import com.instaclustr.esop.impl.interaction.CassandraState;
 import com.instaclustr.esop.impl.interaction.ClusterSchemaVersions;
 import com.instaclustr.esop.impl.interaction.ClusterState;
 import com.instaclustr.esop.impl.interaction.FailureDetector;
-import com.instaclustr.esop.impl.refresh.RefreshOperation;
-import com.instaclustr.esop.impl.refresh.RefreshOperationRequest;
+import com.instaclustr.esop.impl.restore.DownloadTracker.DownloadSession;
 import com.instaclustr.esop.impl.restore.DownloadTracker.DownloadUnit;
-import com.instaclustr.esop.impl.restore.strategy.DataSynchronizator.PathSSTableClassifier;
 import com.instaclustr.esop.impl.restore.strategy.RestorationContext;
 import com.instaclustr.esop.impl.truncate.TruncateOperation;
 import com.instaclustr.esop.impl.truncate.TruncateOperationRequest;
 import com.instaclustr.io.FileUtils;
 import com.instaclustr.operations.Operation;
 import com.instaclustr.operations.OperationFailureException;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
@@ -72,7 +77,7 @@ public abstract class RestorationPhase {
 
         if (parseCassandraData) {
             final CassandraData cassandraData = ctxt.operation.request.restorationStrategyType == IN_PLACE
-                    ? CassandraData.parse(ctxt.operation.request.dataDirs.get(0)) : CassandraData.parse(ctxt.jmx);
+                    ? CassandraData.parse(ctxt.operation.request.dataDirs.get(0)) : RestorationCache.getCassandraData(ctxt.jmx, getSchemaVersion());
             cassandraData.setDatabaseEntitiesFromRequest(ctxt.operation.request.entities);
             cassandraData.setRenamedEntitiesFromRequest(ctxt.operation.request.rename);
             cassandraData.validate();
@@ -84,6 +89,20 @@ public abstract class RestorationPhase {
         this(ctxt, false);
     }
 
+    protected String getSchemaVersion() throws Exception {
+        if (ctxt.schemaVersion == null) {
+            ctxt.schemaVersion = new CassandraSchemaVersion(ctxt.jmx).act();
+        }
+
+        return ctxt.schemaVersion;
+    }
+
+    protected Manifest getManifest() throws Exception {
+        final Manifest manifest = RestorationCache.getManifest(ctxt.operation.request, ctxt.restorer, getSchemaVersion(), ctxt.objectMapper);
+        new ManifestEnricher().enrich(ctxt.cassandraData, manifest, ctxt.operation.request.importing.sourceDir);
+        return manifest;
+    }
+
     public abstract RestorationPhaseType getRestorationPhaseType();
 
     public abstract void execute() throws RestorationPhaseException;
@@ -176,8 +195,6 @@ public abstract class RestorationPhase {
         }
 
         private void checkManifestExists() throws Exception {
-            final String schemaVersion = new CassandraSchemaVersion(ctxt.jmx).act();
-
             final RestoreOperationRequest request = ctxt.operation.request;
 
             if (!ctxt.operation.request.skipBucketVerification) {
@@ -186,7 +203,11 @@ public abstract class RestorationPhase {
                 }
             }
 
-            RestorationUtilities.downloadManifest(request, ctxt.restorer, schemaVersion, ctxt.objectMapper);
+            // a restore starts with a fresh manifest, next phases take it from the cache
+            RestorationCache.refreshManifest(request, ctxt.restorer, getSchemaVersion(), ctxt.objectMapper);
+
+            // tables restored by a previous restore are not restored by this one
+            new TableRestorer(ctxt).forgetRestoredTables();
         }
     }
 
@@ -275,17 +296,13 @@ public abstract class RestorationPhase {
                     }
                 }
 
-                final String schemaVersion = new CassandraSchemaVersion(ctxt.jmx).act();
+                FileUtils.createDirectory(ctxt.operation.request.importing.sourceDir);
 
-                final Manifest manifest = RestorationUtilities.downloadManifest(request, ctxt.restorer, schemaVersion, ctxt.objectMapper);
+                final Manifest manifest = getManifest();
 
                 // verify that we are downloading data for same token so data fit a node
                 new CassandraSameTokens(ctxt.jmx, manifest.getTokens()).act();
 
-                FileUtils.createDirectory(ctxt.operation.request.importing.sourceDir);
-
-                new ManifestEnricher().enrich(ctxt.cassandraData, manifest, ctxt.operation.request.importing.sourceDir);
-
                 // looking into downloaded manifest, download only these sstables for keyspaces / tables
                 // which were specified in request in "entities"
                 // there will be only entries in this list which are backed by existing keyspace on disk
@@ -304,6 +321,12 @@ public abstract class RestorationPhase {
                                                           request.snapshotTag,
                                                           request.concurrentConnections);
 
+                    final Map<String, String> failedTables = new HashMap<>();
+
+                    if (request.pipelined) {
+                        restoreDownloadedTables((DownloadSession) session, failedTables);
+                    }
+
                     session.waitUntilConsideredFinished();
                     ctxt.downloadTracker.cancelIfNecessary(session);
 
@@ -314,6 +337,15 @@ public abstract class RestorationPhase {
                         logger.error(message);
                         throw new IOException(format("Unable to download files successfully: %s", message));
                     }
+
+                    if (request.pipelined) {
+                        // tables finished after the last check
+                        restoreTables((DownloadSession) session, failedTables);
+
+                        if (!failedTables.isEmpty()) {
+                            throw new RestorationPhaseException(format("Failed tables to import: %s", failedTables));
+                        }
+                    }
                 } finally {
                     ctxt.downloadTracker.removeSession(session);
                     session = null;
@@ -324,6 +356,43 @@ public abstract class RestorationPhase {
                 throw RestorationPhaseException.construct(ex, getRestorationPhaseType());
             }
         }
+
+        /**
+         * Restores tables as soon as all their files are downloaded until a download session is finished.
+         */
+        private void restoreDownloadedTables(final DownloadSession session, final Map<String, String> failedTables) throws Exception {
+            if (ctxt.operation.request.restorationStrategyType == RestorationStrategy.RestorationStrategyType.IMPORT && !CassandraVersion.isNewerOrEqualTo4(ctxt.cassandraVersion)) {
+                throw new OperationFailureException(format("Underlying version of Cassandra is not supported to import SSTables: %s. Use this method "
+                                                           + "only if you run Cassandra 4 and above", ctxt.cassandraVersion));
+            }
+
+            logger.info("Importing tables as soon as they are downloaded.");
+
+            while (!session.isConsideredFinished()) {
+                restoreTables(session, failedTables);
+                Thread.sleep(1000);
+            }
+        }
+
+        private void restoreTables(final DownloadSession session, final Map<String, String> failedTables) {
+            final DatabaseEntities toRestore = ctxt.cassandraData.getDatabaseEntitiesToProcessForRestore();
+            final TableRestorer tableRestorer = new TableRestorer(ctxt);
+            final Set<String> restoredTables = tableRestorer.getRestoredTables();
+
+            for (final KeyspaceTable keyspaceTable : session.getDownloadedTables()) {
+                if (!toRestore.contains(keyspaceTable.keyspace, keyspaceTable.table)
+                    || restoredTables.contains(keyspaceTable.keyspace + "." + keyspaceTable.table)) {
+                    continue;
+                }
+
+                try {
+                    tableRestorer.restore(keyspaceTable.keyspace, keyspaceTable.table);
+                } catch (final Throwable t) {
+                    logger.error(format("Unable to import table %s.%s: %s", keyspaceTable.keyspace, keyspaceTable.table, t.getMessage()), t);
+                    failedTables.put(keyspaceTable.keyspace + "." + keyspaceTable.table, t.getMessage());
+                }
+            }
+        }
     }
 
     /**
@@ -349,13 +418,8 @@ public abstract class RestorationPhase {
             try {
                 logger.info("Truncating phase has started.");
 
-                final String schemaVersion = new CassandraSchemaVersion(ctxt.jmx).act();
-                final Manifest manifest = RestorationUtilities.downloadManifest(ctxt.operation.request,
-                                                                                ctxt.restorer,
-                                                                                schemaVersion,
-                                                                                ctxt.objectMapper);
-
-                new ManifestEnricher().enrich(ctxt.cassandraData, manifest, ctxt.operation.request.importing.sourceDir);
+                // enriching of a manifest checks that all its tables exist
+                getManifest();
 
                 final DatabaseEntities toTruncate = ctxt.cassandraData.getDatabaseEntitiesToProcessForRestore();
 
@@ -366,20 +430,26 @@ public abstract class RestorationPhase {
                     logger.info(format("Going to truncate these tables: %s", toTruncate.getKeyspacesAndTables().toString()));
                 }
 
-                final Map<String, String> truncateFailuresMap = new HashMap<>();
+                // tables restored by pipelined downloading phase already contain restored data, truncating them would drop it
+                // and not truncating them would leave old data among restored ones, truncation is cluster-wide so it can not
+                // be done table by table in downloading phase of every node either
+                final Set<String> restoredTables = new TableRestorer(ctxt).getRestoredTables();
 
-                for (final Map.Entry<String, String> request : toTruncate.getKeyspacesAndTables().entries()) {
-                    try {
-                        final TruncateOperation op = new TruncateOperation(ctxt.jmx, new TruncateOperationRequest(request.getKey(), request.getValue()));
-                        op.run();
+                if (!restoredTables.isEmpty()) {
+                    throw new IllegalStateException(format("Tables %s were already restored by pipelined downloading phase, tables have to be "
+                                                               + "truncated before downloading phase of a pipelined restore", restoredTables));
+                }
 
-                        if (!op.errors.isEmpty()) {
-                            throw op.errors.get(0).throwable;
-                        }
-                    } catch (final Throwable t) {
-                        truncateFailuresMap.put(format("%s.%s", request.getKey(), request.getValue()), t.getMessage());
+                final List<Entry<String, String>> tablesToTruncate = new ArrayList<>(toTruncate.getKeyspacesAndTables().entries());
+
+                final Map<String, String> truncateFailuresMap = new TableOperationExecutor("Truncation", ctxt.operation.request).execute(tablesToTruncate, (keyspace, table) -> {
+                    final TruncateOperation op = new TruncateOperation(ctxt.jmx, new TruncateOperationRequest(keyspace, table));
+                    op.run();
+
+                    if (!op.errors.isEmpty()) {
+                        throw op.errors.get(0).throwable;
                     }
-                }
+                });
 
                 if (!truncateFailuresMap.isEmpty()) {
                     throw new RestorationPhaseException(format("Some tables were unable to be truncated: %s", truncateFailuresMap));
@@ -422,9 +492,7 @@ public abstract class RestorationPhase {
                                                                + "only if you run Cassandra 4 and above", ctxt.cassandraVersion));
                 }
 
-                final String schemaVersion = new CassandraSchemaVersion(ctxt.jmx).act();
-                final Manifest manifest = RestorationUtilities.downloadManifest(ctxt.operation.request, ctxt.restorer, schemaVersion, ctxt.objectMapper);
-                new ManifestEnricher().enrich(ctxt.cassandraData, manifest, ctxt.operation.request.importing.sourceDir);
+                final Manifest manifest = getManifest();
                 final DatabaseEntities databaseEntitiesToVerify = ctxt.cassandraData.getDatabaseEntitiesToProcessForVerification();
                 final DatabaseEntities databaseEntitiesToRestore = ctxt.cassandraData.getDatabaseEntitiesToProcessForRestore();
 
@@ -434,37 +502,31 @@ public abstract class RestorationPhase {
                                                         + "please consult the logs to see the details" + dataVerification.toString());
                 }
 
+                final TableRestorer tableRestorer = new TableRestorer(ctxt);
+                // tables restored by pipelined downloading phase already
+                final Set<String> restoredTables = tableRestorer.getRestoredTables();
+
                 final List<ImportOperationRequest> imports = databaseEntitiesToRestore
                         .getKeyspacesAndTables()
                         .entries()
                         .stream()
-                        // it has table in cassandra
-                        .filter(entry -> ctxt.cassandraData.getTablePath(entry.getKey(), entry.getValue()).isPresent())
-                        .filter(entry -> ctxt.cassandraData.getTableId(entry.getKey(), entry.getValue()).isPresent())
-                        .map(entry -> {
-                            final String keyspace = entry.getKey();
-                            final String table = entry.getValue();
-                            final String tableWithId = format("%s-%s", table, ctxt.cassandraData.getTableId(entry.getKey(), entry.getValue()).get());
-                            final Path tablePath = ctxt.operation.request.importing.sourceDir.resolve(keyspace).resolve(tableWithId);
-                            return ctxt.operation.request.importing.copy(keyspace, table, tablePath);
-                        })
-                        .filter(request -> Files.isDirectory(request.tablePath)).collect(toList());
-
-                final Map<String, String> failedImports = new HashMap<>();
+                        .filter(entry -> !restoredTables.contains(entry.getKey() + "." + entry.getValue()))
+                        .map(entry -> tableRestorer.importRequest(entry.getKey(), entry.getValue()))
+                        .filter(Optional::isPresent)
+                        .map(Optional::get)
+                        .collect(toList());
 
-                for (final ImportOperationRequest request : imports) {
-                    try {
-                        final ImportOperation op = new ImportOperation(ctxt.jmx, ctxt.cassandraVersion, request);
-                        op.run();
+                final Map<String, ImportOperationRequest> importsByTable = new HashMap<>();
+                final List<Entry<String, String>> tablesToImport = new ArrayList<>();
 
-                        if (!op.errors.isEmpty()) {
-                            throw op.errors.get(0).throwable;
-                        }
-                    } catch (final Throwable t) {
-                        failedImports.put(request.keyspace + "." + request.table, t.getMessage());
-                    }
+                for (final ImportOperationRequest request : imports) {
+                    importsByTable.put(request.keyspace + "." + request.table, request);
+                    tablesToImport.add(new SimpleImmutableEntry<>(request.keyspace, request.table));
                 }
 
+                final Map<String, String> failedImports = new TableOperationExecutor("Import", ctxt.operation.request)
+                    .execute(tablesToImport, (keyspace, table) -> tableRestorer.importTable(importsByTable.get(keyspace + "." + table)));
+
                 if (!failedImports.isEmpty()) {
                     throw new RestorationPhaseException(format("Failed tables to import: %s", failedImports));
                 }
@@ -499,9 +561,7 @@ public abstract class RestorationPhase {
             try {
                 logger.info("Hardlinking phase has started.");
 
-                final String schemaVersion = new CassandraSchemaVersion(ctxt.jmx).act();
-                final Manifest manifest = RestorationUtilities.downloadManifest(ctxt.operation.request, ctxt.restorer, schemaVersion, ctxt.objectMapper);
-                new ManifestEnricher().enrich(ctxt.cassandraData, manifest, ctxt.operation.request.importing.sourceDir);
+                final Manifest manifest = getManifest();
                 final DatabaseEntities databaseEntitiesToVerify = ctxt.cassandraData.getDatabaseEntitiesToProcessForVerification();
                 final DatabaseEntities databaseEntitiesToRestore = ctxt.cassandraData.getDatabaseEntitiesToProcessForRestore();
 
@@ -510,75 +570,23 @@ public abstract class RestorationPhase {
                     throw new RestorationPhaseException("Some local files were corrupted or they are missing, please consult the logs to see the details.");
                 }
 
-                final List<Path> downloadedFiles = CassandraData.list(ctxt.operation.request.importing.sourceDir);
-                final PathSSTableClassifier pathSSTableClassifier = new PathSSTableClassifier(ctxt.operation.request);
-                final Map<String, List<Path>> classifiedDownloadedFiles = pathSSTableClassifier.classify(downloadedFiles);
-                final Map<String, List<Path>> classifiedLinks = new LinkedHashMap<>(classifiedDownloadedFiles);
-                pathSSTableClassifier.map(classifiedLinks, ctxt.operation.request);
-
-                boolean failedLinkage = false;
-                final List<Path> successfulLinks = new ArrayList<>();
-
-                for (final Map.Entry<String, List<Path>> classifiedDownloadedSStable : classifiedDownloadedFiles.entrySet()) {
-                    List<Path> downloads = classifiedDownloadedSStable.getValue();
-                    List<Path> links = classifiedLinks.get(classifiedDownloadedSStable.getKey());
-
-                    if (failedLinkage) {
-                        break;
-                    }
-
-                    assert downloads.size() == links.size();
-
-                    for (int i = 0; i < downloads.size(); i++) {
-                        if (failedLinkage) {
-                            break;
-                        }
-                        Path existing = downloads.get(i);
-                        Path link = links.get(i);
-
-                        try {
-                            if (Files.exists(link)) {
-                                logger.debug(format("not linking from %s to %s as target already exists", existing, link));
-                            } else {
-                                logger.debug(format("linking from %s to %s", existing, link));
-                                Files.createLink(link, existing);
-                                successfulLinks.add(link);
-                            }
-                        } catch (final Exception ex) {
-                            logger.error(format("Unable to create a hardlink from %s to %s, skipping the linking of all other resources and deleting already linked ones.",
-                                                existing.toAbsolutePath(),
-                                                link.toAbsolutePath()),
-                                         ex);
-
-                            failedLinkage = true;
-                        }
-                    }
-                }
+                final TableRestorer tableRestorer = new TableRestorer(ctxt);
+                // tables restored by pipelined downloading phase already
+                final Set<String> restoredTables = tableRestorer.getRestoredTables();
 
-                if (failedLinkage) {
-                    for (final Path linked : successfulLinks) {
-                        try {
-                            Files.deleteIfExists(linked);
-                        } catch (final Exception ex) {
-                            logger.error(format("It is not possible to delete link %s.", linked.toString()), ex);
-                        }
-                    }
+                final List<Path> downloadedFiles = CassandraData.list(ctxt.operation.request.importing.sourceDir);
 
+                if (!tableRestorer.link(downloadedFiles)) {
                     throw new RestorationPhaseException("Hardlinking phase finished with errors, the linking of downloaded SSTables to Cassandra directory has failed.");
                 } else {
-                    final Map<String, String> failedRefreshes = new HashMap<>();
+                    final List<Entry<String, String>> tablesToRefresh = databaseEntitiesToRestore.getKeyspacesAndTables()
+                        .entries()
+                        .stream()
+                        .filter(entry -> !restoredTables.contains(entry.getKey() + "." + entry.getValue()))
+                        .collect(toList());
 
-                    for (final Entry<String, String> entry : databaseEntitiesToRestore.getKeyspacesAndTables().entries()) {
-                        try {
-                            final RefreshOperation op = new RefreshOperation(ctxt.jmx, new RefreshOperationRequest(entry.getKey(), entry.getValue()));
-                            op.run();
-                            if (!op.errors.isEmpty() && !op.errors.get(0).throwable.getMessage().contains("Unknown")) {
-                                throw op.errors.get(0).throwable;
-                            }
-                        } catch (final Throwable t) {
-                            failedRefreshes.put(entry.getKey() + "." + entry.getValue(), t.getMessage());
-                        }
-                    }
+                    final Map<String, String> failedRefreshes = new TableOperationExecutor("Refresh", ctxt.operation.request)
+                        .execute(tablesToRefresh, tableRestorer::refresh);
 
                     if (!failedRefreshes.isEmpty()) {
                         throw new RestorationPhaseException(format("Failed tables to refresh: %s", failedRefreshes));
@@ -609,6 +617,8 @@ public abstract class RestorationPhase {
 
         @Override
         public void execute() throws RestorationPhaseException {
+            RestorationCache.invalidate();
+
             if (!ctxt.operation.request.noDeleteTruncates) {
                 try {
                     new TruncateDirCleaningPhase(ctxt).execute();
@@ -716,8 +726,8 @@ public abstract class RestorationPhase {
         private static final Logger logger = LoggerFactory.getLogger(DataVerification.class);
 
         private final RestorationContext ctxt;
-        public final List<String> nonExistingFiles = new ArrayList<>();
-        public final List<String> corruptedFiles = new ArrayList<>();
+        public final List<String> nonExistingFiles = Collections.synchronizedList(new ArrayList<>());
+        public final List<String> corruptedFiles = Collections.synchronizedList(new ArrayList<>());
 
         public DataVerification(final RestorationContext ctxt) {
             this.ctxt = ctxt;
@@ -727,26 +737,62 @@ public abstract class RestorationPhase {
             return !nonExistingFiles.isEmpty() || !corruptedFiles.isEmpty();
         }
 
-        public DataVerification verify(final Manifest manifest, final DatabaseEntities entities) {
+        public DataVerification verify(final Manifest manifest, final DatabaseEntities entities) throws Exception {
             final List<ManifestEntry> entries = manifest.getManifestFiles(entities, false, false, false, false);
 
+            // files verified upon downloading or by previous phases do not need to be hashed again
+            final VerificationLedger verificationLedger = VerificationLedger.forRequest(ctxt.operation.request);
+            // files of tables imported by pipelined downloading phase might not be in download directory anymore
+            final Set<String> restoredTables = new TableRestorer(ctxt).getRestoredTables();
+            final List<ManifestEntry> entriesToVerify = new ArrayList<>();
+
             for (final ManifestEntry entry : entries) {
+                if (entry.keyspaceTable != null && restoredTables.contains(entry.keyspaceTable.keyspace + "." + entry.keyspaceTable.table)) {
+                    continue;
+                }
+
                 if (!Files.exists(entry.localFile)) {
                     logger.error("File to import does not exist: " + entry.localFile.toAbsolutePath());
                     nonExistingFiles.add(entry.localFile.toAbsolutePath().toString());
                     continue;
                 }
 
-                if (entry.hash != null) {
-                    try {
-                        this.ctxt.hashService.verify(entry.localFile, entry.hash);
-                    } catch (final Exception ex) {
-                        logger.error(ex.getMessage());
-                        corruptedFiles.add(entry.localFile.toString());
-                    }
+                if (entry.hash != null && !verificationLedger.isVerified(entry.localFile, entry.hash)) {
+                    entriesToVerify.add(entry);
                 }
             }
 
+            if (entriesToVerify.isEmpty()) {
+                return this;
+            }
+
+            logger.info("Verifying {} files, {} files were verified already", entriesToVerify.size(), entries.size() - nonExistingFiles.size() - entriesToVerify.size());
+
+            final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(ctxt.operation.request.concurrentConnections);
+
+            try {
+                final List<ListenableFuture<?>> futures = new ArrayList<>();
+
+                for (final ManifestEntry entry : entriesToVerify) {
+                    futures.add(executorService.submit(() -> {
+                        try {
+                            this.ctxt.hashService.verify(entry.localFile, entry.hash);
+
+                            if (this.ctxt.hashService.isEnabled()) {
+                                verificationLedger.verified(entry.localFile, entry.hash);
+                            }
+                        } catch (final Exception ex) {
+                            logger.error(ex.getMessage());
+                            corruptedFiles.add(entry.localFile.toString());
+                        }
+                    }));
+                }
+
+                Futures.allAsList(futures).get();
+            } finally {
+                executorService.shutdownNow();
+            }
+
             return this;
         }
 
@@ -1,5 +1,7 @@
 package com.instaclustr.esop.impl.restore;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.function.Predicate;
 
@@ -13,10 +15,26 @@ public class RestorationUtilities {
                                             final String schemaVersion,
                                             final ObjectMapper objectMapper) throws Exception {
 
-        final String manifestAsString = restorer.downloadManifest(Paths.get("manifests"),
-                                                                  new ManifestFilteringPredicate(request, schemaVersion));
+        final Path localManifest = Files.createTempFile("esop-manifest-", ".json");
 
-        return Manifest.read(manifestAsString, objectMapper);
+        try {
+            downloadManifest(request, restorer, schemaVersion, localManifest);
+            return Manifest.read(localManifest, objectMapper);
+        } finally {
+            Files.deleteIfExists(localManifest);
+        }
+    }
+
+    /**
+     * Downloads a manifest to a local file, so it is parsed as it is read and it is never held in memory as a string.
+     */
+    public static void downloadManifest(final RestoreOperationRequest request,
+                                        final Restorer restorer,
+                                        final String schemaVersion,
+                                        final Path localManifest) throws Exception {
+        // not every storage provider replaces an existing file
+        Files.deleteIfExists(localManifest);
+        restorer.downloadManifest(localManifest, Paths.get("manifests"), new ManifestFilteringPredicate(request, schemaVersion));
     }
 
     public static abstract class AbstractFilteringPredicate implements Predicate<String> {
@@ -10,28 +10,36 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TimeZone;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.instaclustr.esop.guice.BucketServiceFactory;
 import com.instaclustr.esop.guice.RestorerFactory;
 import com.instaclustr.esop.impl.AbstractTracker.Session;
 import com.instaclustr.esop.impl.BucketService;
+import com.instaclustr.esop.impl.CommitLogBuckets;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.restore.DownloadTracker.DownloadUnit;
 import com.instaclustr.operations.Operation;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -104,47 +112,30 @@ public class RestoreCommitLogsOperation extends Operation<RestoreCommitLogsOpera
     }
 
     private void downloadCommitLogs(final Restorer restorer) throws Exception {
-        final RemoteObjectReference remoteObjectReference = restorer.objectKeyToNodeAwareRemoteReference(Paths.get("commitlog"));
-        final Pattern commitlogPattern = Pattern.compile(".*(CommitLog-\\d+-\\d+\\.log)\\.(\\d+)");
-        final Set<ManifestEntry> parsedCommitlogList = new HashSet<>();
+        // only buckets of days of the requested window are listed, and commit logs uploaded before there were buckets
+        final List<Path> prefixes = new ArrayList<>(CommitLogBuckets.buckets(request.timestampStart, request.timestampEnd));
+        prefixes.add(CommitLogBuckets.LEGACY_PREFIX);
 
-        logger.info("Commencing processing of commit log listing");
-        final AtomicReference<ManifestEntry> overhangingManifestEntry = new AtomicReference<>();
-        final AtomicLong overhangingTimestamp = new AtomicLong(Long.MAX_VALUE);
+        logger.info("Commencing processing of commit log listing of {} buckets", prefixes.size());
 
-        restorer.consumeFiles(remoteObjectReference, commitlogFile -> {
+        final CommitLogSelection selection = new CommitLogSelection();
 
-            final Matcher matcherCommitlog = commitlogPattern.matcher(commitlogFile.getObjectKey().toString());
+        listCommitLogs(restorer, prefixes, selection);
+
+        // Make sure we also catch the first commitlog that goes past the end of the timestamp,
+        // if it is not in the last bucket of the window, it is in the first non-empty bucket after it
+        if (!selection.hasOverhanging()) {
+            for (final Path bucket : CommitLogBuckets.buckets(request.timestampEnd + TimeUnit.DAYS.toMillis(1), System.currentTimeMillis())) {
+                listCommitLogs(restorer, Collections.singletonList(bucket), selection);
 
-            if (matcherCommitlog.matches()) {
-                final long commitlogTimestamp = Long.parseLong(matcherCommitlog.group(2));
-
-                if (commitlogTimestamp >= request.timestampStart && commitlogTimestamp <= request.timestampEnd) {
-                    parsedCommitlogList.add(new ManifestEntry(commitlogFile.getObjectKey(),
-                                                              request.commitlogDownloadDir.resolve(matcherCommitlog.group(1)),
-                                                              COMMIT_LOG,
-                                                              0,
-                                                              null,
-                                                              null,
-                                                              null));
-                } else if (commitlogTimestamp > request.timestampEnd && commitlogTimestamp < overhangingTimestamp.get()) {
-                    // Make sure we also catch the first commitlog that goes past the end of the timestamp
-                    overhangingTimestamp.set(commitlogTimestamp);
-                    overhangingManifestEntry.set(new ManifestEntry(commitlogFile.getObjectKey(),
-                                                                   request.commitlogDownloadDir.resolve(matcherCommitlog.group(1)),
-                                                                   COMMIT_LOG,
-                                                                   0,
-                                                                   null,
-                                                                   null,
-                                                                   null));
+                if (selection.hasOverhanging()) {
+                    break;
                 }
             }
-        });
-
-        if (overhangingManifestEntry.get() != null) {
-            parsedCommitlogList.add(overhangingManifestEntry.get());
         }
 
+        final Set<ManifestEntry> parsedCommitlogList = selection.getCommitLogs();
+
         logger.info("Found {} commit logs to download", parsedCommitlogList.size());
 
         if (parsedCommitlogList.size() == 0) {
@@ -162,6 +153,25 @@ public class RestoreCommitLogsOperation extends Operation<RestoreCommitLogsOpera
         }
     }
 
+    private void listCommitLogs(final Restorer restorer, final List<Path> prefixes, final CommitLogSelection selection) throws Exception {
+        final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(Math.min(request.concurrentConnections, prefixes.size()));
+
+        try {
+            final List<ListenableFuture<?>> futures = new ArrayList<>();
+
+            for (final Path prefix : prefixes) {
+                futures.add(executorService.submit(() -> {
+                    restorer.consumeFiles(restorer.objectKeyToNodeAwareRemoteReference(prefix), selection::consume);
+                    return null;
+                }));
+            }
+
+            Futures.allAsList(futures).get();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     private void updateCommitLogArchivingProperties() {
         final Path commitlogArchivingPropertiesPath = request.cassandraConfigDirectory.resolve("commitlog_archiving.properties");
         Properties commitlogArchivingProperties = new Properties();
@@ -223,4 +233,59 @@ public class RestoreCommitLogsOperation extends Operation<RestoreCommitLogsOpera
             }
         }
     }
+
+    /**
+     * Commit logs of the requested window and the first one past its end, consumed by more listings at once.
+     * A commit log might be both in a bucket and right under commitlog if it was uploaded before and after
+     * there were buckets, it is downloaded once.
+     */
+    private class CommitLogSelection {
+
+        private final Pattern commitlogPattern = Pattern.compile(".*(CommitLog-\\d+-\\d+\\.log)\\.(\\d+)");
+
+        private final Map<String, ManifestEntry> commitLogs = new HashMap<>();
+        private ManifestEntry overhangingManifestEntry;
+        private long overhangingTimestamp = Long.MAX_VALUE;
+
+        synchronized void consume(final RemoteObjectReference commitlogFile) {
+            final Matcher matcherCommitlog = commitlogPattern.matcher(commitlogFile.getObjectKey().toString());
+
+            if (!matcherCommitlog.matches()) {
+                return;
+            }
+
+            final long commitlogTimestamp = Long.parseLong(matcherCommitlog.group(2));
+
+            if (commitlogTimestamp >= request.timestampStart && commitlogTimestamp <= request.timestampEnd) {
+                commitLogs.putIfAbsent(matcherCommitlog.group(1), manifestEntry(commitlogFile, matcherCommitlog.group(1)));
+            } else if (commitlogTimestamp > request.timestampEnd && commitlogTimestamp < overhangingTimestamp) {
+                overhangingTimestamp = commitlogTimestamp;
+                overhangingManifestEntry = manifestEntry(commitlogFile, matcherCommitlog.group(1));
+            }
+        }
+
+        synchronized boolean hasOverhanging() {
+            return overhangingManifestEntry != null;
+        }
+
+        synchronized Set<ManifestEntry> getCommitLogs() {
+            final Map<String, ManifestEntry> selected = new HashMap<>(commitLogs);
+
+            if (overhangingManifestEntry != null) {
+                selected.putIfAbsent(overhangingManifestEntry.localFile.getFileName().toString(), overhangingManifestEntry);
+            }
+
+            return new HashSet<>(selected.values());
+        }
+
+        private ManifestEntry manifestEntry(final RemoteObjectReference commitlogFile, final String commitLogName) {
+            return new ManifestEntry(commitlogFile.getObjectKey(),
+                                     request.commitlogDownloadDir.resolve(commitLogName),
+                                     COMMIT_LOG,
+                                     0,
+                                     null,
+                                     null,
+                                     null);
+        }
+    }
 }
@@ -94,6 +94,8 @@ public class RestoreOperation extends Operation<RestoreOperationRequest> impleme
                              @JsonProperty("rename") final Map<String, String> rename,
                              @JsonProperty("retry") final RetrySpec retry,
                              @JsonProperty("singlePhase") final boolean singlePhase,
+                             @JsonProperty("pipelined") final boolean pipelined,
+                             @JsonProperty("jmxConcurrency") final Integer jmxConcurrency,
                              @JsonProperty("dataDirs")
                              @JsonSerialize(using = ListPathSerializer.class)
                              @JsonDeserialize(contentUsing = PathDeserializer.class) List<Path> dataDirs,
@@ -127,6 +129,8 @@ public class RestoreOperation extends Operation<RestoreOperationRequest> impleme
                                                                                                       rename,
                                                                                                       retry,
                                                                                                       singlePhase,
+                                                                                                      pipelined,
+                                                                                                      jmxConcurrency,
                                                                                                       dataDirs,
                                                                                                       kmsKeyId));
         this.coordinator = null;
@@ -122,6 +122,22 @@ public class RestoreOperationRequest extends BaseRestoreOperationRequest {
         description = "Flag saying for restoration strategies if it should skip cleanup of downloaded data on cleanup phase. This option defaults to false.")
     public boolean noDownloadData;
 
+    @Option(names = {"--restoration-pipelined"},
+        description = "Flag saying to restoration strategies which are importing tables (import or hardlinks strategy) that download phase "
+            + "should import a table as soon as all its files are downloaded, while other tables are still being downloaded. Import phase "
+            + "then imports only tables which were not imported yet. Tables have to be truncated before download phase in this mode, "
+            + "truncate phase executed after download phase fails. "
+            + "This option defaults to false.")
+    @JsonProperty("pipelined")
+    public boolean pipelined;
+
+    @Option(names = {"--restoration-jmx-concurrency"},
+        description = "Number of tables which are truncated, imported or refreshed via JMX at the same time by restoration strategies "
+            + "which are importing tables (import or hardlinks strategy). This option defaults to 4.",
+        defaultValue = "4")
+    @JsonProperty("jmxConcurrency")
+    public int jmxConcurrency;
+
     @Option(names = "--schema-version",
         description = "version of schema in case there are multiple snapshots of same name")
     public UUID schemaVersion;
@@ -211,6 +227,8 @@ public class RestoreOperationRequest extends BaseRestoreOperationRequest {
                                    @JsonProperty("rename") final Map<String, String> rename,
                                    @JsonProperty("retry") final RetrySpec retry,
                                    @JsonProperty("singlePhase") final boolean singlePhase,
+                                   @JsonProperty("pipelined") final boolean pipelined,
+                                   @JsonProperty("jmxConcurrency") final Integer jmxConcurrency,
                                    @JsonProperty("dataDirs")
                                    @JsonSerialize(using = ListPathSerializer.class)
                                    @JsonDeserialize(contentUsing = PathDeserializer.class) List<Path> dataDirs,
@@ -239,6 +257,8 @@ public class RestoreOperationRequest extends BaseRestoreOperationRequest {
         this.newCluster = newCluster;
         this.rename = rename == null ? Collections.emptyMap() : rename;
         this.singlePhase = singlePhase;
+        this.pipelined = pipelined;
+        this.jmxConcurrency = jmxConcurrency == null || jmxConcurrency < 1 ? 4 : jmxConcurrency;
         this.dataDirs = dataDirs;
     }
 
@@ -272,6 +292,8 @@ public class RestoreOperationRequest extends BaseRestoreOperationRequest {
             .add("rename", rename)
             .add("retry", retry)
             .add("singlePhase", singlePhase)
+            .add("pipelined", pipelined)
+            .add("jmxConcurrency", jmxConcurrency)
             .add("dataDirs", dataDirs)
             .toString();
     }
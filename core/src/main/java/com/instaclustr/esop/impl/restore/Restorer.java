@@ -1,5 +1,6 @@
 package com.instaclustr.esop.impl.restore;
 
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -7,6 +8,8 @@ import java.util.function.Predicate;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.StorageInteractor;
+import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.local.LocalFileRestorer;
 
 public abstract class Restorer extends StorageInteractor {
 
@@ -17,6 +20,15 @@ public abstract class Restorer extends StorageInteractor {
         this.request = request;
     }
 
+    /**
+     * A restorer works with the node it is updated to, so storage location of its request is updated too.
+     */
+    @Override
+    public void update(final StorageLocation storageLocation, final LocalFileRestorer restorer) {
+        super.update(storageLocation, restorer);
+        this.request.storageLocation = storageLocation;
+    }
+
     public String downloadFileToString(final RemoteObjectReference objectReference, boolean isEncrypted) throws Exception {
         return downloadFileToString(objectReference);
     }
@@ -29,11 +41,26 @@ public abstract class Restorer extends StorageInteractor {
         downloadFile(localPath, null, objectReference);
     }
 
+    /**
+     * Tells if a remote object can be read by byte ranges via {@link #downloadRange(RemoteObjectReference, long, long)}.
+     * Objects which can not, e.g. because they are encrypted, are downloaded by {@link #downloadFile(Path, ManifestEntry, RemoteObjectReference)}.
+     */
+    public boolean supportsRangedDownload(final ManifestEntry manifestEntry, final RemoteObjectReference objectReference) throws Exception {
+        return false;
+    }
+
+    /**
+     * @return stream of {@code length} bytes of a remote object starting at {@code offset}
+     */
+    public InputStream downloadRange(final RemoteObjectReference objectReference, final long offset, final long length) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
     // topologies are always not encrypted
     public abstract String downloadTopology(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception;
 
-    // manifests are always not encrypted
-    public abstract String downloadManifest(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception;
+    // manifests are always not encrypted, the latest one is downloaded to a local file as it might be big
+    public abstract void downloadManifest(final Path localPath, final Path remotePrefix, final Predicate<String> keyFilter) throws Exception;
 
     // currently used only in tests
     public abstract String downloadNodeFile(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception;
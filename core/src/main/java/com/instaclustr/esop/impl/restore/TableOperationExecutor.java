@@ -0,0 +1,84 @@
+package com.instaclustr.esop.impl.restore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Executes an operation, typically a blocking JMX call, for each table, at most as many of them at once
+ * as a request allows. Every table is processed regardless of failures of the others.
+ */
+public class TableOperationExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableOperationExecutor.class);
+
+    private final String operationName;
+    private final int concurrency;
+
+    public TableOperationExecutor(final String operationName, final RestoreOperationRequest request) {
+        this.operationName = operationName;
+        this.concurrency = Math.max(1, request.jmxConcurrency);
+    }
+
+    /**
+     * @param tables keyspaces and tables to execute an operation for
+     * @return failed tables as "keyspace.table" with a message of their failure, empty if all succeeded
+     */
+    public Map<String, String> execute(final Collection<Entry<String, String>> tables, final TableOperation operation) throws Exception {
+        final Map<String, String> failures = new ConcurrentHashMap<>();
+
+        if (tables.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        final Stopwatch total = Stopwatch.createStarted();
+        final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(Math.min(concurrency, tables.size()));
+
+        try {
+            final List<ListenableFuture<?>> futures = new ArrayList<>();
+
+            for (final Entry<String, String> table : tables) {
+                futures.add(executorService.submit(() -> {
+                    final Stopwatch stopwatch = Stopwatch.createStarted();
+
+                    try {
+                        operation.execute(table.getKey(), table.getValue());
+                        logger.info(format("%s of table %s.%s took %s ms", operationName, table.getKey(), table.getValue(), stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+                    } catch (final Throwable t) {
+                        logger.error(format("%s of table %s.%s has failed after %s ms: %s",
+                                            operationName, table.getKey(), table.getValue(), stopwatch.elapsed(TimeUnit.MILLISECONDS), t.getMessage()));
+                        failures.put(format("%s.%s", table.getKey(), table.getValue()), String.valueOf(t.getMessage()));
+                    }
+                }));
+            }
+
+            Futures.allAsList(futures).get();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        logger.info(format("%s of %s tables took %s ms, %s of them failed", operationName, tables.size(), total.elapsed(TimeUnit.MILLISECONDS), failures.size()));
+
+        return new HashMap<>(failures);
+    }
+
+    public interface TableOperation {
+
+        void execute(final String keyspace, final String table) throws Throwable;
+    }
+}
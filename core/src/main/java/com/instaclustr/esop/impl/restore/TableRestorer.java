@@ -0,0 +1,326 @@
+package com.instaclustr.esop.impl.restore;
+
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.instaclustr.esop.impl.CassandraData;
+import com.instaclustr.esop.impl._import.ImportOperation;
+import com.instaclustr.esop.impl._import.ImportOperationRequest;
+import com.instaclustr.esop.impl.refresh.RefreshOperation;
+import com.instaclustr.esop.impl.refresh.RefreshOperationRequest;
+import com.instaclustr.esop.impl.restore.RestorationStrategy.RestorationStrategyType;
+import com.instaclustr.esop.impl.restore.strategy.DataSynchronizator.PathSSTableClassifier;
+import com.instaclustr.esop.impl.restore.strategy.RestorationContext;
+import com.instaclustr.io.FileUtils;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Makes downloaded SSTables of a table live, either by importing them or by hardlinking them to Cassandra data
+ * directories followed by refresh of the table. Used by importing and hardlinking phases as well as by downloading
+ * phase of a pipelined restore, which restores a table as soon as all its files were downloaded.
+ * <p>
+ * Tables restored by a pipelined restore are recorded in download directory, so importing and hardlinking phases
+ * skip them.
+ */
+public class TableRestorer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableRestorer.class);
+
+    public static final String RESTORED_TABLES_FILE_NAME = ".esop-restored-tables";
+
+    public static final String IMPORT_STAGING_DIR_NAME = ".esop-import-staging";
+
+    // imported SSTables are moved from a staging directory of their hardlinks instead of being copied by Cassandra
+    public static final boolean ZERO_COPY_IMPORT = Boolean.parseBoolean(System.getProperty("import.zero.copy", "true"));
+
+    private final RestorationContext ctxt;
+
+    public TableRestorer(final RestorationContext ctxt) {
+        this.ctxt = ctxt;
+    }
+
+    /**
+     * Restores a table by means of restoration strategy of a request and records it as restored.
+     */
+    public void restore(final String keyspace, final String table) throws Throwable {
+        if (ctxt.operation.request.restorationStrategyType == RestorationStrategyType.IMPORT) {
+            final Optional<ImportOperationRequest> importRequest = importRequest(keyspace, table);
+
+            if (!importRequest.isPresent()) {
+                logger.info("There is nothing to import for table {}.{}", keyspace, table);
+                return;
+            }
+
+            importTable(importRequest.get());
+        } else {
+            final Optional<Path> tableDir = downloadedTableDir(keyspace, table);
+
+            if (!tableDir.isPresent()) {
+                logger.info("There is nothing to link for table {}.{}", keyspace, table);
+                return;
+            }
+
+            if (!link(CassandraData.list(tableDir.get()))) {
+                throw new IllegalStateException(format("Linking of downloaded SSTables of table %s.%s has failed", keyspace, table));
+            }
+
+            refresh(keyspace, table);
+        }
+
+        markRestored(keyspace, table);
+
+        logger.info("Table {}.{} was restored.", keyspace, table);
+    }
+
+    public Optional<ImportOperationRequest> importRequest(final String keyspace, final String table) {
+        return downloadedTableDir(keyspace, table).map(tablePath -> ctxt.operation.request.importing.copy(keyspace, table, tablePath));
+    }
+
+    /**
+     * Imports SSTables of a table. When a download directory is on the same file system as a data directory,
+     * SSTables are hardlinked to a staging directory first and Cassandra moves them from there instead of copying
+     * them, so imported data are not written again while downloaded files stay where they are.
+     */
+    public void importTable(final ImportOperationRequest request) throws Throwable {
+        final Optional<Path> stagingDir = stage(request);
+
+        try {
+            final ImportOperationRequest importRequest = stagingDir.map(dir -> {
+                final ImportOperationRequest stagedRequest = request.copy(request.keyspace, request.table, dir);
+                stagedRequest.noCopyData = true;
+                return stagedRequest;
+            }).orElse(request);
+
+            final ImportOperation op = new ImportOperation(ctxt.jmx, ctxt.cassandraVersion, importRequest);
+            op.run();
+
+            if (!op.errors.isEmpty()) {
+                throw op.errors.get(0).throwable;
+            }
+        } finally {
+            if (stagingDir.isPresent()) {
+                try {
+                    FileUtils.deleteDirectory(stagingDir.get());
+                } catch (final Exception ex) {
+                    logger.warn(format("Unable to delete import staging directory %s: %s", stagingDir.get(), ex.getMessage()));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return staging directory with hardlinks of SSTables of a table to import, empty if they should be copied by Cassandra
+     */
+    private Optional<Path> stage(final ImportOperationRequest request) {
+        if (!ZERO_COPY_IMPORT || request.noCopyData || request.sourceDir == null || !isOnSameFileStoreAsDataDir(request.sourceDir)) {
+            return Optional.empty();
+        }
+
+        final Path tablePath = request.tablePath;
+        final Path stagingDir = request.sourceDir.resolve(IMPORT_STAGING_DIR_NAME).resolve(request.keyspace).resolve(tablePath.getFileName());
+
+        try {
+            FileUtils.deleteDirectory(stagingDir);
+
+            try (final Stream<Path> files = Files.walk(tablePath)) {
+                for (final Path file : (Iterable<Path>) files::iterator) {
+                    final Path staged = stagingDir.resolve(tablePath.relativize(file));
+
+                    if (Files.isDirectory(file)) {
+                        Files.createDirectories(staged);
+                    } else {
+                        Files.createLink(staged, file);
+                    }
+                }
+            }
+
+            return Optional.of(stagingDir);
+        } catch (final Exception ex) {
+            logger.info(format("Unable to stage SSTables of %s.%s for import without copying, they will be copied: %s",
+                               request.keyspace, request.table, ex.getMessage()));
+
+            try {
+                FileUtils.deleteDirectory(stagingDir);
+            } catch (final Exception ex2) {
+                logger.warn(format("Unable to delete import staging directory %s: %s", stagingDir, ex2.getMessage()));
+            }
+
+            return Optional.empty();
+        }
+    }
+
+    private boolean isOnSameFileStoreAsDataDir(final Path sourceDir) {
+        final List<Path> dataDirs = ctxt.operation.request.dataDirs;
+
+        if (dataDirs == null) {
+            return false;
+        }
+
+        try {
+            final FileStore sourceFileStore = Files.getFileStore(sourceDir);
+
+            for (final Path dataDir : dataDirs) {
+                if (Files.exists(dataDir) && sourceFileStore.equals(Files.getFileStore(dataDir))) {
+                    return true;
+                }
+            }
+        } catch (final Exception ex) {
+            logger.debug(format("Unable to resolve file store of %s: %s", sourceDir, ex.getMessage()));
+        }
+
+        return false;
+    }
+
+    public void refresh(final String keyspace, final String table) throws Throwable {
+        final RefreshOperation op = new RefreshOperation(ctxt.jmx, new RefreshOperationRequest(keyspace, table));
+        op.run();
+        if (!op.errors.isEmpty() && !op.errors.get(0).throwable.getMessage().contains("Unknown")) {
+            throw op.errors.get(0).throwable;
+        }
+    }
+
+    /**
+     * Hardlinks downloaded files to Cassandra data directories, SSTables are linked in parallel. If any link can not
+     * be created, links already created are deleted.
+     *
+     * @return true if all files were linked, false otherwise
+     */
+    public boolean link(final List<Path> downloadedFiles) throws Exception {
+        final PathSSTableClassifier pathSSTableClassifier = new PathSSTableClassifier(ctxt.operation.request);
+        final Map<String, List<Path>> classifiedDownloadedFiles = pathSSTableClassifier.classify(downloadedFiles);
+        final Map<String, List<Path>> classifiedLinks = new LinkedHashMap<>(classifiedDownloadedFiles);
+        pathSSTableClassifier.map(classifiedLinks, ctxt.operation.request);
+
+        final AtomicBoolean failedLinkage = new AtomicBoolean(false);
+        final List<Path> successfulLinks = Collections.synchronizedList(new ArrayList<>());
+
+        final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(Math.max(1, ctxt.operation.request.jmxConcurrency));
+
+        try {
+            final List<ListenableFuture<?>> futures = new ArrayList<>();
+
+            for (final Map.Entry<String, List<Path>> classifiedDownloadedSStable : classifiedDownloadedFiles.entrySet()) {
+                final List<Path> downloads = classifiedDownloadedSStable.getValue();
+                final List<Path> links = classifiedLinks.get(classifiedDownloadedSStable.getKey());
+
+                assert downloads.size() == links.size();
+
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < downloads.size(); i++) {
+                        if (failedLinkage.get()) {
+                            break;
+                        }
+                        Path existing = downloads.get(i);
+                        Path link = links.get(i);
+
+                        try {
+                            if (Files.exists(link)) {
+                                logger.debug(format("not linking from %s to %s as target already exists", existing, link));
+                            } else {
+                                logger.debug(format("linking from %s to %s", existing, link));
+                                Files.createLink(link, existing);
+                                successfulLinks.add(link);
+                            }
+                        } catch (final Exception ex) {
+                            logger.error(format("Unable to create a hardlink from %s to %s, skipping the linking of all other resources and deleting already linked ones.",
+                                                existing.toAbsolutePath(),
+                                                link.toAbsolutePath()),
+                                         ex);
+
+                            failedLinkage.set(true);
+                        }
+                    }
+                }));
+            }
+
+            Futures.allAsList(futures).get();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        if (failedLinkage.get()) {
+            for (final Path linked : successfulLinks) {
+                try {
+                    Files.deleteIfExists(linked);
+                } catch (final Exception ex) {
+                    logger.error(format("It is not possible to delete link %s.", linked.toString()), ex);
+                }
+            }
+        }
+
+        return !failedLinkage.get();
+    }
+
+    /**
+     * @return tables restored already, as "keyspace.table"
+     */
+    public Set<String> getRestoredTables() {
+        final Set<String> restoredTables = new HashSet<>();
+
+        if (ctxt.operation.request.importing == null || ctxt.operation.request.importing.sourceDir == null) {
+            return restoredTables;
+        }
+
+        final Path restoredTablesFile = ctxt.operation.request.importing.sourceDir.resolve(RESTORED_TABLES_FILE_NAME);
+
+        try {
+            if (Files.exists(restoredTablesFile)) {
+                restoredTables.addAll(Files.readAllLines(restoredTablesFile, UTF_8));
+            }
+        } catch (final Exception ex) {
+            throw new IllegalStateException(format("Unable to read restored tables from %s", restoredTablesFile), ex);
+        }
+
+        return restoredTables;
+    }
+
+    public void forgetRestoredTables() throws Exception {
+        if (ctxt.operation.request.importing != null && ctxt.operation.request.importing.sourceDir != null) {
+            Files.deleteIfExists(ctxt.operation.request.importing.sourceDir.resolve(RESTORED_TABLES_FILE_NAME));
+        }
+    }
+
+    private synchronized void markRestored(final String keyspace, final String table) throws Exception {
+        Files.write(ctxt.operation.request.importing.sourceDir.resolve(RESTORED_TABLES_FILE_NAME),
+                    (keyspace + "." + table + "\n").getBytes(UTF_8),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+    }
+
+    private Optional<Path> downloadedTableDir(final String keyspace, final String table) {
+        // it has table in cassandra
+        if (!ctxt.cassandraData.getTablePath(keyspace, table).isPresent()) {
+            return Optional.empty();
+        }
+
+        final Optional<String> tableId = ctxt.cassandraData.getTableId(keyspace, table);
+
+        if (!tableId.isPresent()) {
+            return Optional.empty();
+        }
+
+        final Path tablePath = ctxt.operation.request.importing.sourceDir.resolve(keyspace).resolve(format("%s-%s", table, tableId.get()));
+
+        return Files.isDirectory(tablePath) ? Optional.of(tablePath) : Optional.empty();
+    }
+}
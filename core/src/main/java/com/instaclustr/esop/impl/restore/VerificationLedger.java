@@ -0,0 +1,157 @@
+package com.instaclustr.esop.impl.restore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.instaclustr.operations.OperationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.instaclustr.esop.impl.restore.RestorationStrategy.RestorationStrategyType.IN_PLACE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Records files which were verified against their expected hash, so they are not hashed again by later restoration
+ * phases nor by a restore run again. A file is considered to be verified as long as its size and modification time
+ * are same as they were when it was verified and a hash expected from it is same too.
+ * <p>
+ * Records are appended to a file in download directory, a record per line, the last record of a path wins.
+ * A ledger is used only by restorations downloading data to a download directory (importing and hardlinking).
+ */
+public class VerificationLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(VerificationLedger.class);
+
+    public static final String LEDGER_FILE_NAME = ".esop-verified-files";
+
+    private static final VerificationLedger DISABLED = new VerificationLedger(null, Collections.emptyMap());
+
+    private final Path ledgerFile;
+    private final Map<String, Record> records;
+
+    private VerificationLedger(final Path ledgerFile, final Map<String, Record> records) {
+        this.ledgerFile = ledgerFile;
+        this.records = records;
+    }
+
+    public static VerificationLedger forRequest(final OperationRequest request) {
+        if (!(request instanceof RestoreOperationRequest)) {
+            return DISABLED;
+        }
+
+        final RestoreOperationRequest restoreRequest = (RestoreOperationRequest) request;
+
+        if (restoreRequest.restorationStrategyType == IN_PLACE || restoreRequest.importing == null || restoreRequest.importing.sourceDir == null) {
+            return DISABLED;
+        }
+
+        return load(restoreRequest.importing.sourceDir.resolve(LEDGER_FILE_NAME));
+    }
+
+    public static VerificationLedger load(final Path ledgerFile) {
+        final Map<String, Record> records = new ConcurrentHashMap<>();
+
+        try {
+            if (Files.exists(ledgerFile)) {
+                for (final String line : Files.readAllLines(ledgerFile, UTF_8)) {
+                    final Record record = Record.parse(line);
+
+                    if (record != null) {
+                        records.put(record.path, record);
+                    }
+                }
+            }
+        } catch (final Exception ex) {
+            logger.warn("Unable to read verification ledger {}, all files will be verified: {}", ledgerFile, ex.getMessage());
+            records.clear();
+        }
+
+        return new VerificationLedger(ledgerFile, records);
+    }
+
+    /**
+     * @return true if the file was verified to have the hash and it has not changed since then
+     */
+    public boolean isVerified(final Path file, final String hash) {
+        if (ledgerFile == null || hash == null) {
+            return false;
+        }
+
+        final Record record = records.get(file.toAbsolutePath().toString());
+
+        if (record == null || !record.hash.equals(hash)) {
+            return false;
+        }
+
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return record.size == attributes.size() && record.modified == attributes.lastModifiedTime().toMillis();
+        } catch (final Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Records that the file was just verified to have the hash. Failure to record it is not an error,
+     * the file will be just verified again.
+     */
+    public void verified(final Path file, final String hash) {
+        if (ledgerFile == null || hash == null) {
+            return;
+        }
+
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            final Record record = new Record(file.toAbsolutePath().toString(), attributes.size(), attributes.lastModifiedTime().toMillis(), hash);
+
+            synchronized (this) {
+                Files.createDirectories(ledgerFile.getParent());
+                Files.write(ledgerFile, (record.toLine() + "\n").getBytes(UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+
+            records.put(record.path, record);
+        } catch (final Exception ex) {
+            logger.warn("Unable to record verification of {} to {}: {}", file, ledgerFile, ex.getMessage());
+        }
+    }
+
+    private static final class Record {
+
+        private final String path;
+        private final long size;
+        private final long modified;
+        private final String hash;
+
+        private Record(final String path, final long size, final long modified, final String hash) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        // size, modification time and hash go first as a path might contain anything but a new line
+        private String toLine() {
+            return size + "\t" + modified + "\t" + hash + "\t" + path;
+        }
+
+        private static Record parse(final String line) {
+            final String[] parts = line.split("\t", 4);
+
+            if (parts.length != 4) {
+                return null;
+            }
+
+            try {
+                return new Record(parts[3], Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+            } catch (final NumberFormatException ex) {
+                // torn line of a record which was being written when a restore was interrupted
+                return null;
+            }
+        }
+    }
+}
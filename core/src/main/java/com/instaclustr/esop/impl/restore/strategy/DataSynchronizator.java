@@ -1,23 +1,39 @@
 package com.instaclustr.esop.impl.restore.strategy;
 
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.instaclustr.esop.impl.CassandraData;
 import com.instaclustr.esop.impl.DatabaseEntities;
 import com.instaclustr.esop.impl.Manifest;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.SSTableUtils;
 import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +70,9 @@ public class DataSynchronizator {
 
         logger.info("Restoring to existing cluster: {}", localDataFiles.size() > 0);
 
+        final List<Path> absoluteLocalDataFiles = localDataFiles.stream().map(Path::toAbsolutePath).collect(toList());
+        final SuffixIndex index = new SuffixIndex(entriesFromManifest, absoluteLocalDataFiles);
+
         // the first round, see what is in manifest and what is currently present,
         // if it is not present, we will download it
 
@@ -63,7 +82,7 @@ public class DataSynchronizator {
                 continue;
             }
 
-            if (CassandraData.containsFile(localDataFiles, entryFromManifest.localFile)) {
+            if (index.existsLocally(entryFromManifest)) {
                 // this file exists on a local disk as well as in manifest, there is nothing to download nor remove
                 logger.info(String.format("%s found locally, not downloading", entryFromManifest.localFile));
             } else {
@@ -76,28 +95,166 @@ public class DataSynchronizator {
         // if it is not in manifest, we need to delete it,
         // otherwise we compare hashes, if they do not match, we delete as well
 
-        for (final Path localExistingFile : localDataFiles) {
-            final Optional<ManifestEntry> first = entriesFromManifest.stream().filter(me -> localExistingFile.endsWith(me.localFile)).findFirst();
+        final Map<Path, ManifestEntry> filesToCompare = new LinkedHashMap<>();
 
-            if (first.isPresent()) {
-                // if it exists, hash has to be same, otherwise delete it
-                if (!SSTableUtils.isExistingSStable(localExistingFile,
-                                                    first.get().objectKey.getName(SSTableUtils.isSecondaryIndexManifest(first.get().objectKey) ? 4 : 3).toString())) {
-                    filesToDelete.add(localExistingFile);
-                }
+        for (final Path localExistingFile : absoluteLocalDataFiles) {
+            final ManifestEntry first = index.firstEntry(localExistingFile);
+
+            if (first != null) {
+                filesToCompare.put(localExistingFile, first);
             } else {
                 filesToDelete.add(localExistingFile);
             }
         }
 
+        // if it exists, hash has to be same, otherwise delete it
+        filesToDelete.addAll(filesWithDifferentHash(filesToCompare));
+
         return this;
     }
 
+    /**
+     * Compares hashes of SSTables of local files with hashes of their entries in parallel. A hash of an SSTable
+     * is read from its digest file just once for all its components.
+     */
+    private List<Path> filesWithDifferentHash(final Map<Path, ManifestEntry> filesToCompare) {
+        final List<Path> differentFiles = Collections.synchronizedList(new ArrayList<>());
+        final Map<Path, Optional<String>> sstableHashes = new ConcurrentHashMap<>();
+
+        final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(request.concurrentConnections);
+
+        try {
+            final List<ListenableFuture<?>> futures = new ArrayList<>();
+
+            for (final Map.Entry<Path, ManifestEntry> fileToCompare : filesToCompare.entrySet()) {
+                futures.add(executorService.submit(() -> {
+                    final Path localExistingFile = fileToCompare.getKey();
+                    final ManifestEntry entry = fileToCompare.getValue();
+                    final String expectedHash = entry.objectKey.getName(SSTableUtils.isSecondaryIndexManifest(entry.objectKey) ? 4 : 3).toString();
+
+                    final Matcher matcher = SSTableUtils.SSTABLE_RE.matcher(localExistingFile.getFileName().toString());
+
+                    final boolean same;
+
+                    if (matcher.matches()) {
+                        final Optional<String> hash = sstableHashes.computeIfAbsent(localExistingFile.resolveSibling(matcher.group(1)), sstable -> {
+                            try {
+                                return Optional.of(SSTableUtils.sstableHash(localExistingFile));
+                            } catch (final IOException ex) {
+                                // SSTableUtils.sstableHash may throw exception if SSTable has not been probably downloaded
+                                logger.error(ex.getMessage());
+                                return Optional.empty();
+                            }
+                        });
+
+                        same = hash.isPresent() && hash.get().equals(expectedHash);
+                    } else {
+                        same = SSTableUtils.isExistingSStable(localExistingFile, expectedHash);
+                    }
+
+                    if (!same) {
+                        differentFiles.add(localExistingFile);
+                    }
+                }));
+            }
+
+            Futures.allAsList(futures).get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while comparing hashes of local SSTables", ex);
+        } catch (final ExecutionException ex) {
+            throw new IllegalStateException("Unable to compare hashes of local SSTables", ex.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // keep the order of local files
+        final Set<Path> different = new HashSet<>(differentFiles);
+        return filesToCompare.keySet().stream().filter(different::contains).collect(toList());
+    }
+
+    /**
+     * Matches entries of a manifest and local files by trailing elements of their paths (keyspace/table/file, with
+     * index directory for secondary indexes), as {@link Path#endsWith(Path)} would. Both sides are indexed by them
+     * so matching takes linear time instead of comparing every entry with every local file.
+     */
+    public static class SuffixIndex {
+
+        private final List<ManifestEntry> entries;
+        private final Set<Integer> suffixLengths = new HashSet<>();
+        private final Map<String, Integer> manifestIndex = new HashMap<>();
+        private final Set<String> localIndex = new HashSet<>();
+
+        /**
+         * @param localFiles absolute paths of local files
+         */
+        public SuffixIndex(final List<ManifestEntry> entries, final Collection<Path> localFiles) {
+            this.entries = entries;
+
+            for (int i = 0; i < entries.size(); i++) {
+                final Path localFile = entries.get(i).localFile;
+                suffixLengths.add(localFile.getNameCount());
+                // the first entry wins as it would be found first in the manifest
+                manifestIndex.putIfAbsent(suffixKey(localFile, localFile.getNameCount()), i);
+            }
+
+            for (final Path localFile : localFiles) {
+                for (final int suffixLength : suffixLengths) {
+                    final String key = suffixKey(localFile, suffixLength);
+
+                    if (key != null) {
+                        localIndex.add(key);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return true if any local file ends with the local file of an entry
+         */
+        public boolean existsLocally(final ManifestEntry entry) {
+            return localIndex.contains(suffixKey(entry.localFile, entry.localFile.getNameCount()));
+        }
+
+        /**
+         * @return the first entry of a manifest a local file ends with, null if there is none
+         */
+        public ManifestEntry firstEntry(final Path localFile) {
+            int first = Integer.MAX_VALUE;
+
+            for (final int suffixLength : suffixLengths) {
+                final Integer index = manifestIndex.get(suffixKey(localFile, suffixLength));
+
+                if (index != null && index < first) {
+                    first = index;
+                }
+            }
+
+            return first == Integer.MAX_VALUE ? null : entries.get(first);
+        }
+
+        /**
+         * @return last elements of a path as a string, null if the path is too short
+         */
+        private static String suffixKey(final Path path, final int length) {
+            final int nameCount = path.getNameCount();
+
+            if (length == 0 || length > nameCount) {
+                return null;
+            }
+
+            return path.subpath(nameCount - length, nameCount).toString();
+        }
+    }
+
     public static abstract class SSTableClassifier<ENTRY_TYPE> {
 
         // some/path/keyspace/tableId/me-1-big-Data.db
         private static final Pattern p = Pattern.compile("(.*)/(.*)/" + SSTableUtils.SSTABLE_RE.pattern());
 
+        // SSTable to device it was placed to by the last mapping
+        private final Map<String, String> devices = new HashMap<>();
+
         public String getSimplePath(ENTRY_TYPE entry) {
             String path = getPath(entry);
             final Matcher matcher = p.matcher(path);
@@ -133,19 +290,180 @@ public class DataSynchronizator {
             return classified;
         }
 
+        /**
+         * Places SSTables into data directories. SSTables are placed from the biggest one, each into a device
+         * (file store) of data directories which has the most free space left after SSTables placed before it,
+         * and into the data directory of that device which got the least bytes so far, so data directories
+         * on the same disk as well as disks themselves are filled evenly. If free space of a device is not known,
+         * SSTables are spread just by their size.
+         */
         public void map(final Map<String, List<ENTRY_TYPE>> classified,
                         final RestoreOperationRequest request) {
-            Iterator<Map.Entry<String, List<ENTRY_TYPE>>> iterator = classified.entrySet().iterator();
+            if (request.dataDirs == null || request.dataDirs.isEmpty()) {
+                throw new IllegalStateException("There is no data directory to place SSTables into");
+            }
+
+            final Map<Path, String> dataDirDevices = new LinkedHashMap<>();
+            final Map<String, Long> freeSpace = new HashMap<>();
+            final Map<String, Long> placedToDevice = new HashMap<>();
+            final Map<Path, Long> placedToDataDir = new HashMap<>();
+
+            for (final Path dataDir : request.dataDirs) {
+                final String device = getDevice(dataDir);
+
+                dataDirDevices.put(dataDir, device);
+                freeSpace.put(device, getUsableSpace(dataDir));
+                placedToDevice.put(device, 0L);
+                placedToDataDir.put(dataDir, 0L);
+            }
+
+            final List<Map.Entry<String, List<ENTRY_TYPE>>> sstables = new ArrayList<>(classified.entrySet());
+            final Map<String, Long> sizes = new HashMap<>();
+
+            for (final Map.Entry<String, List<ENTRY_TYPE>> sstable : sstables) {
+                sizes.put(sstable.getKey(), sstable.getValue().stream().mapToLong(this::getSize).sum());
+            }
+
+            // stable sort, SSTables of the same size keep their order
+            sstables.sort(Comparator.comparingLong((Map.Entry<String, List<ENTRY_TYPE>> sstable) -> sizes.get(sstable.getKey())).reversed());
+
+            for (final Map.Entry<String, List<ENTRY_TYPE>> sstable : sstables) {
+                final long size = sizes.get(sstable.getKey());
+                final List<Path> candidates = getCandidateDataDirs(sstable.getValue(), request.dataDirs);
+
+                Path dataDir = null;
+
+                for (final Path candidate : candidates) {
+                    if (dataDir == null || isBetterPlacement(candidate, dataDir, dataDirDevices, freeSpace, placedToDevice, placedToDataDir)) {
+                        dataDir = candidate;
+                    }
+                }
+
+                final String device = dataDirDevices.get(dataDir);
+
+                if (freeSpace.get(device) - placedToDevice.get(device) < size) {
+                    logger.warn(String.format("SSTable %s of %s bytes is placed into %s which might not have enough free space for it",
+                                              sstable.getKey(), size, dataDir));
+                }
+
+                placedToDevice.merge(device, size, Long::sum);
+                placedToDataDir.merge(dataDir, size, Long::sum);
+                devices.put(sstable.getKey(), device);
 
-            int sstableNumber = 0;
-            int numberOfDataDirs = request.dataDirs.size();
+                sstable.setValue(mapping(sstable.getValue(), dataDir));
+            }
+        }
+
+        /**
+         * Orders classified and mapped entries so SSTables placed to different devices alternate. Entries are written
+         * in the order they are submitted for download, so writes are spread over all devices at any time.
+         */
+        public List<ENTRY_TYPE> orderForWriting(final Map<String, List<ENTRY_TYPE>> mapped) {
+            final Map<String, Deque<List<ENTRY_TYPE>>> byDevice = new LinkedHashMap<>();
+
+            for (final Map.Entry<String, List<ENTRY_TYPE>> sstable : mapped.entrySet()) {
+                byDevice.computeIfAbsent(devices.getOrDefault(sstable.getKey(), ""), device -> new ArrayDeque<>()).add(sstable.getValue());
+            }
+
+            final List<ENTRY_TYPE> ordered = new ArrayList<>();
+
+            while (!byDevice.isEmpty()) {
+                final Iterator<Deque<List<ENTRY_TYPE>>> iterator = byDevice.values().iterator();
+
+                while (iterator.hasNext()) {
+                    final Deque<List<ENTRY_TYPE>> sstables = iterator.next();
+                    ordered.addAll(sstables.poll());
+
+                    if (sstables.isEmpty()) {
+                        iterator.remove();
+                    }
+                }
+            }
+
+            return ordered;
+        }
+
+        /**
+         * @return size of an entry in bytes, used to place SSTables into data directories
+         */
+        public abstract long getSize(ENTRY_TYPE entry);
+
+        /**
+         * @return data directories an SSTable can be placed into, all of them by default
+         */
+        protected List<Path> getCandidateDataDirs(final List<ENTRY_TYPE> entries, final List<Path> dataDirs) {
+            return dataDirs;
+        }
+
+        private static boolean isBetterPlacement(final Path candidate,
+                                                 final Path current,
+                                                 final Map<Path, String> dataDirDevices,
+                                                 final Map<String, Long> freeSpace,
+                                                 final Map<String, Long> placedToDevice,
+                                                 final Map<Path, Long> placedToDataDir) {
+            final String candidateDevice = dataDirDevices.get(candidate);
+            final String currentDevice = dataDirDevices.get(current);
+
+            if (!candidateDevice.equals(currentDevice)) {
+                final long candidateFree = freeSpace.get(candidateDevice) - placedToDevice.get(candidateDevice);
+                final long currentFree = freeSpace.get(currentDevice) - placedToDevice.get(currentDevice);
+
+                if (candidateFree != currentFree) {
+                    return candidateFree > currentFree;
+                }
+
+                if (!placedToDevice.get(candidateDevice).equals(placedToDevice.get(currentDevice))) {
+                    return placedToDevice.get(candidateDevice) < placedToDevice.get(currentDevice);
+                }
+            }
+
+            return placedToDataDir.get(candidate) < placedToDataDir.get(current);
+        }
+
+        /**
+         * @return device (file store) a data directory is on, the data directory itself if it can not be resolved
+         */
+        protected String getDevice(final Path dataDir) {
+            final FileStore fileStore = getFileStore(dataDir);
+            return fileStore == null ? dataDir.toString() : fileStore.toString();
+        }
 
-            while (iterator.hasNext()) {
-                final Map.Entry<String, List<ENTRY_TYPE>> next = iterator.next();
-                final Path dataDir = request.dataDirs.get(sstableNumber % numberOfDataDirs);
-                List<ENTRY_TYPE> mapping = mapping(next.getValue(), dataDir);
-                next.setValue(mapping);
-                ++sstableNumber;
+        /**
+         * @return free space of a device of a data directory, {@link Long#MAX_VALUE} if it is not known
+         */
+        protected long getUsableSpace(final Path dataDir) {
+            final FileStore fileStore = getFileStore(dataDir);
+
+            if (fileStore == null) {
+                return Long.MAX_VALUE;
+            }
+
+            try {
+                return fileStore.getUsableSpace();
+            } catch (final IOException ex) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+        /**
+         * @return file store of a path or of its closest existing parent, null if it can not be resolved
+         */
+        protected static FileStore getFileStore(final Path path) {
+            Path existing = path.toAbsolutePath();
+
+            while (existing != null && !Files.exists(existing)) {
+                existing = existing.getParent();
+            }
+
+            if (existing == null) {
+                return null;
+            }
+
+            try {
+                return Files.getFileStore(existing);
+            } catch (final IOException ex) {
+                logger.warn(String.format("Unable to resolve file store of %s: %s", path, ex.getMessage()));
+                return null;
             }
         }
     }
@@ -163,6 +481,11 @@ public class DataSynchronizator {
             }
         }
 
+        @Override
+        public long getSize(final ManifestEntry entry) {
+            return entry.size;
+        }
+
         @Override
         public List<ManifestEntry> mapping(List<ManifestEntry> entries, Path path) {
             for (final ManifestEntry entry : entries) {
@@ -185,6 +508,32 @@ public class DataSynchronizator {
             return request.importing.sourceDir.relativize(entry).toString();
         }
 
+        @Override
+        public long getSize(final Path entry) {
+            try {
+                return Files.size(entry);
+            } catch (final IOException ex) {
+                return 0;
+            }
+        }
+
+        /**
+         * Downloaded files are hardlinked so only data directories on the same file store as a download directory
+         * are considered, unless there is none.
+         */
+        @Override
+        protected List<Path> getCandidateDataDirs(final List<Path> entries, final List<Path> dataDirs) {
+            final FileStore sourceFileStore = getFileStore(entries.get(0));
+
+            if (sourceFileStore == null) {
+                return dataDirs;
+            }
+
+            final List<Path> sameFileStore = dataDirs.stream().filter(dataDir -> sourceFileStore.equals(getFileStore(dataDir))).collect(toList());
+
+            return sameFileStore.isEmpty() ? dataDirs : sameFileStore;
+        }
+
         @Override
         public List<Path> mapping(List<Path> entries, Path path) {
             return entries.stream().map(entry -> path.resolve(request.importing.sourceDir.relativize(entry))).collect(toList());
@@ -3,8 +3,11 @@ package com.instaclustr.esop.impl.restore.strategy;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
@@ -103,12 +106,23 @@ public class InPlaceRestorationStrategy implements RestorationStrategy {
             final Map<String, List<ManifestEntry>> classified = classifier.classify(synchronizator.entriesToDownload());
             classifier.map(classified, request);
 
+            // SSTables placed to different disks are downloaded in turns, non-SSTable files go last
+            final List<ManifestEntry> entriesToDownload = classifier.orderForWriting(classified);
+            final Set<ManifestEntry> orderedEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+            orderedEntries.addAll(entriesToDownload);
+
+            for (final ManifestEntry entry : synchronizator.entriesToDownload()) {
+                if (!orderedEntries.contains(entry)) {
+                    entriesToDownload.add(entry);
+                }
+            }
+
             Session<DownloadUnit> downloadSession = null;
 
             try {
                 downloadSession = downloadTracker.submit(restorer,
                                                          operation,
-                                                         synchronizator.entriesToDownload(),
+                                                         entriesToDownload,
                                                          operation.request.snapshotTag, operation.request.concurrentConnections);
                 downloadSession.waitUntilConsideredFinished();
                 downloadTracker.cancelIfNecessary(downloadSession);
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
 
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
@@ -61,13 +62,19 @@ public class LocalFileBackuper extends Backuper {
     }
 
     @Override
-    public synchronized void uploadFile(final ManifestEntry manifestEntry,
+    public void uploadFile(final ManifestEntry manifestEntry,
                            final InputStream localFileStream,
                            final RemoteObjectReference objectReference) throws Exception {
         Path remotePath = resolveFullRemoteObjectPath(objectReference);
-        Files.createDirectories(remotePath.getParent());
-        if (!Files.exists(remotePath)) {
-            Files.copy(localFileStream, remotePath);
+        if (Files.exists(remotePath)) {
+            return;
+        }
+        // a stream is read only when upload is rate limited, otherwise a file is linked or copied directly,
+        // commit logs are not linked as Cassandra might recycle their segments
+        if (request.bandwidth == null && manifestEntry.localFile != null && Files.isRegularFile(manifestEntry.localFile)) {
+            LocalFileTransfer.transfer(manifestEntry.localFile, remotePath, request instanceof BackupOperationRequest);
+        } else {
+            LocalFileTransfer.write(localFileStream, remotePath);
         }
     }
 
@@ -83,6 +90,16 @@ public class LocalFileBackuper extends Backuper {
         }
     }
 
+    @Override
+    public Optional<VersionedText> readNodeAwareText(final Path objectKey) throws Exception {
+        return LocalFileTransfer.readVersioned(resolveFullRemoteObjectPath(objectKeyToNodeAwareRemoteReference(objectKey)));
+    }
+
+    @Override
+    public boolean writeNodeAwareText(final Path objectKey, final String text, final String version) throws Exception {
+        return LocalFileTransfer.writeVersioned(resolveFullRemoteObjectPath(objectKeyToNodeAwareRemoteReference(objectKey)), text, version);
+    }
+
     @Override
     public void cleanup() throws Exception {
         //No clean up required
@@ -1,29 +1,38 @@
 package com.instaclustr.esop.local;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
+import com.instaclustr.esop.impl.LazyManifest;
 import com.instaclustr.esop.impl.Manifest;
 import com.instaclustr.esop.impl.Manifest.ManifestAgePathComparator;
 import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
 import com.instaclustr.esop.impl.ManifestEntry;
-import com.instaclustr.esop.impl.ManifestEntry.Type;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.StorageLocation;
 import com.instaclustr.esop.impl.list.ListOperationRequest;
@@ -40,6 +49,10 @@ import static java.util.stream.Collectors.toList;
 public class LocalFileRestorer extends Restorer {
 
     private static final Logger logger = LoggerFactory.getLogger(LocalFileRestorer.class);
+
+    // change time of a file is available only by the unix view
+    private static final boolean UNIX_ATTRIBUTES = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
     private ObjectMapper objectMapper;
 
     @AssistedInject
@@ -98,10 +111,33 @@ public class LocalFileRestorer extends Restorer {
             .resolve(request.storageLocation.bucket)
             .resolve(Paths.get(objectReference.canonicalPath));
 
-        //Assume that any path passed in to this function is a file
-        Files.createDirectories(localFilePath.getParent());
+        //Assume that any path passed in to this function is a file,
+        // commit logs are not linked as Cassandra might recycle their segments after replaying them
+        LocalFileTransfer.transfer(remoteFilePath, localFilePath, request instanceof RestoreOperationRequest);
+    }
+
+    @Override
+    public boolean supportsRangedDownload(final ManifestEntry manifestEntry, final RemoteObjectReference objectReference) {
+        if (manifestEntry.localFile == null || !(request instanceof RestoreOperationRequest)) {
+            return true;
+        }
+
+        final Path remoteFilePath = request.storageLocation.fileBackupDirectory
+            .resolve(request.storageLocation.bucket)
+            .resolve(Paths.get(objectReference.canonicalPath));
+
+        // a file which can be linked is not copied at all
+        return !LocalFileTransfer.canLink(remoteFilePath, manifestEntry.localFile);
+    }
 
-        Files.copy(remoteFilePath, localFilePath, StandardCopyOption.REPLACE_EXISTING);
+    @Override
+    public InputStream downloadRange(final RemoteObjectReference objectReference, final long offset, final long length) throws Exception {
+        final Path remoteFilePath = request.storageLocation.fileBackupDirectory
+            .resolve(request.storageLocation.bucket)
+            .resolve(Paths.get(objectReference.canonicalPath));
+
+        final FileChannel channel = FileChannel.open(remoteFilePath, StandardOpenOption.READ).position(offset);
+        return ByteStreams.limit(Channels.newInputStream(channel), length);
     }
 
     @Override
@@ -121,10 +157,11 @@ public class LocalFileRestorer extends Restorer {
     }
 
     @Override
-    public String downloadManifest(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
+    public void downloadManifest(final Path localPath, final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
         final Path pathToList = Paths.get(request.storageLocation.rawLocation.replaceAll("file://", "")).resolve(remotePrefix);
         final String blobItem = getManifest(pathToList, keyFilter, remotePrefix);
-        return new String(Files.readAllBytes(Paths.get(blobItem)));
+        // a manifest is never changed in place so its copy might be a hardlink
+        LocalFileTransfer.transfer(Paths.get(blobItem), localPath, true);
     }
 
     @Override
@@ -164,41 +201,85 @@ public class LocalFileRestorer extends Restorer {
 
         final Path directoryToWalk = request.storageLocation.fileBackupDirectory.resolve(request.storageLocation.bucket).resolve(prefix.canonicalPath);
 
-        if (!Files.exists(directoryToWalk)) {
+        final List<Path> pathsList;
+
+        if (Files.isDirectory(directoryToWalk)) {
+            try (final Stream<Path> paths = Files.walk(directoryToWalk)) {
+                pathsList = paths.filter(Files::isRegularFile).collect(toList());
+            }
+        } else if (directoryToWalk.getParent() != null && Files.isDirectory(directoryToWalk.getParent())) {
+            // a prefix which is not a directory matches files of its parent directory which start with it
+            final String namePrefix = directoryToWalk.getFileName().toString();
+
+            try (final Stream<Path> paths = Files.list(directoryToWalk.getParent())) {
+                pathsList = paths.filter(Files::isRegularFile).filter(path -> path.getFileName().toString().startsWith(namePrefix)).collect(toList());
+            }
+        } else {
             return;
         }
 
-        final List<Path> pathsList = Files.walk(directoryToWalk)
-            .filter(Files::isRegularFile)
-            .collect(toList());
-
         for (final Path path : pathsList) {
             consumer.accept(objectKeyToNodeAwareRemoteReference(path));
         }
     }
 
     @Override
-    public List<Manifest> listManifests() throws Exception {
-        assert objectMapper != null;
-        Path path;
+    public List<String> listManifestNames() throws Exception {
+        final Path path = getManifestsDirectory();
+
+        if (!Files.exists(path)) {
+            return Collections.emptyList();
+        }
+
+        try (final Stream<Path> manifests = Files.list(path)) {
+            return manifests.filter(LocalFileRestorer::isManifestFile).map(manifest -> manifest.getFileName().toString()).collect(toList());
+        }
+    }
+
+    // temporary files of manifests being downloaded to a cache are hidden
+    private static boolean isManifestFile(final Path path) {
+        return Files.isRegularFile(path) && !path.getFileName().toString().startsWith(".");
+    }
+
+    @Override
+    public Optional<VersionedText> readNodeAwareText(final Path objectKey) throws Exception {
+        return LocalFileTransfer.readVersioned(resolveRoot().resolve(resolveNodeAwareRemotePath(objectKey)));
+    }
+
+    @Override
+    public boolean writeNodeAwareText(final Path objectKey, final String text, final String version) throws Exception {
+        return LocalFileTransfer.writeVersioned(resolveRoot().resolve(resolveNodeAwareRemotePath(objectKey)), text, version);
+    }
+
+    private Path getManifestsDirectory() {
         if (!storageLocation.cloudLocation)
-             path = Paths.get(storageLocation.rawLocation.replaceAll("file://", ""), "manifests");
+            return Paths.get(storageLocation.rawLocation.replaceAll("file://", ""), "manifests");
         else
-            path = Paths.get(localFileRestorer.storageLocation.rawLocation.replaceAll("file://", ""), "manifests");
+            return Paths.get(localFileRestorer.storageLocation.rawLocation.replaceAll("file://", ""), "manifests");
+    }
+
+    @Override
+    public List<LazyManifest> listLazyManifests() throws Exception {
+        assert objectMapper != null;
+        final Path path = getManifestsDirectory();
 
         if (!Files.exists(path))
             return Collections.emptyList();
 
-        final List<Path> manifests = Files.list(path)
-            .sorted(new ManifestAgePathComparator())
-            .collect(toList());
+        try (final Stream<Path> manifests = Files.list(path)) {
+            return manifests.filter(LocalFileRestorer::isManifestFile)
+                .sorted(new ManifestAgePathComparator())
+                .map(manifest -> new LazyManifest(manifest.getFileName().toString(), manifest, objectMapper))
+                .collect(toList());
+        }
+    }
 
+    @Override
+    public List<Manifest> listManifests() throws Exception {
         final List<Manifest> manifestsList = new ArrayList<>();
 
-        for (final Path manifest : manifests) {
-            final Manifest read = Manifest.read(manifest, objectMapper);
-            read.setManifest(new ManifestEntry(Paths.get("manifests", manifest.getFileName().toString()), manifest, Type.FILE, null, null));
-            manifestsList.add(read);
+        for (final LazyManifest manifest : listLazyManifests()) {
+            manifestsList.add(manifest.load());
         }
 
         return manifestsList;
@@ -246,6 +327,53 @@ public class LocalFileRestorer extends Restorer {
                                        .resolve(request.storageLocation.bucket), request.dry);
     }
 
+    @Override
+    public void visitNodeAwareObjects(final Path prefix, final ObjectVisitor visitor) throws Exception {
+        final Path nodeRoot = resolveRoot().resolve(resolveNodeAwareRemoteRoot());
+        final Path directory = nodeRoot.resolve(prefix);
+
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (final Stream<Path> files = Files.walk(directory)) {
+            for (final Path file : (Iterable<Path>) files::iterator) {
+                final BasicFileAttributes attributes;
+
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (final NoSuchFileException ex) {
+                    // deleted since it was listed
+                    continue;
+                }
+
+                if (attributes.isRegularFile()) {
+                    visitor.visit(nodeRoot.relativize(file), attributes.size(), lastChanged(file, attributes));
+                }
+            }
+        }
+    }
+
+    /**
+     * An uploaded file might be a hardlink of an SSTable, so it keeps modification time of that SSTable, which
+     * might be weeks old. Linking a file updates its change time, as refreshing does, so the later of both
+     * is the time a file was uploaded or refreshed at the latest.
+     */
+    private static long lastChanged(final Path file, final BasicFileAttributes attributes) throws IOException {
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+
+        if (!UNIX_ATTRIBUTES) {
+            return lastModified;
+        }
+
+        try {
+            return Math.max(lastModified, ((FileTime) Files.getAttribute(file, "unix:ctime")).toMillis());
+        } catch (final NoSuchFileException ex) {
+            // deleted since it was listed, it is not deleted again
+            return Long.MAX_VALUE;
+        }
+    }
+
     @Override
     public void deleteTopology(String name) throws Exception {
         super.deleteTopology(name);
@@ -0,0 +1,194 @@
+package com.instaclustr.esop.local;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.hash.Hashing;
+import com.instaclustr.esop.impl.StorageInteractor.VersionedText;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Transfers files between a local file backend and a node without holding any lock. A file is hardlinked
+ * when source and target are on the same file store, otherwise it is copied by {@link FileChannel#transferTo}.
+ * Either way, it is first created under a temporary name next to its target and renamed to its target atomically,
+ * so a file of a backup or of a restore is either complete or not present at all.
+ * <p>
+ * Hardlinks are turned off by system property {@code file.transfer.link} set to false.
+ */
+public final class LocalFileTransfer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileTransfer.class);
+
+    public static final boolean LINK = Boolean.parseBoolean(System.getProperty("file.transfer.link", "true"));
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    // directories to their file stores, resolving of a file store is not cheap
+    private static final Map<Path, FileStore> fileStores = new ConcurrentHashMap<>();
+
+    private LocalFileTransfer() {
+    }
+
+    /**
+     * Transfers source file to target, an existing target is replaced.
+     *
+     * @param link false if source might be changed in place later so target can not be its hardlink
+     */
+    public static void transfer(final Path source, final Path target, final boolean link) throws IOException {
+        Files.createDirectories(target.getParent());
+
+        if (link && canLink(source, target)) {
+            final Path temporaryLink = temporaryFile(target);
+
+            try {
+                Files.createLink(temporaryLink, source);
+            } catch (final IOException | UnsupportedOperationException ex) {
+                logger.debug(format("Unable to link %s to %s, copying it: %s", source, target, ex.getMessage()));
+                Files.deleteIfExists(temporaryLink);
+            }
+
+            if (Files.exists(temporaryLink)) {
+                move(temporaryLink, target);
+                return;
+            }
+        }
+
+        final Path temporaryFile = temporaryFile(target);
+
+        try (final FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+             final FileChannel targetChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            final long size = sourceChannel.size();
+            long position = 0;
+
+            while (position < size) {
+                position += sourceChannel.transferTo(position, size - position, targetChannel);
+            }
+        } catch (final Exception ex) {
+            Files.deleteIfExists(temporaryFile);
+            throw ex;
+        }
+
+        move(temporaryFile, target);
+    }
+
+    /**
+     * Writes a stream to target, an existing target is replaced.
+     */
+    public static void write(final InputStream inputStream, final Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+
+        final Path temporaryFile = temporaryFile(target);
+
+        try {
+            Files.copy(inputStream, temporaryFile);
+        } catch (final Exception ex) {
+            Files.deleteIfExists(temporaryFile);
+            throw ex;
+        }
+
+        move(temporaryFile, target);
+    }
+
+    /**
+     * @return content of a text file with its version, which is a hash of its content, empty if it does not exist
+     */
+    public static Optional<VersionedText> readVersioned(final Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        final byte[] content = Files.readAllBytes(file);
+
+        return Optional.of(new VersionedText(new String(content, UTF_8), Hashing.sha256().hashBytes(content).toString()));
+    }
+
+    /**
+     * Writes a text file only if its version is still the one given, null if it is expected not to exist. Writers are
+     * serialized by a lock of a hidden file next to it, which holds for processes of the same host.
+     *
+     * @return false if a file was changed or created meanwhile so nothing was written
+     */
+    public static synchronized boolean writeVersioned(final Path file, final String text, final String version) throws IOException {
+        Files.createDirectories(file.getParent());
+
+        try (final FileChannel lockChannel = FileChannel.open(file.resolveSibling("." + file.getFileName() + ".lock"),
+                                                              StandardOpenOption.CREATE,
+                                                              StandardOpenOption.WRITE);
+             final FileLock ignored = lockChannel.lock()) {
+            if (!Objects.equals(version, readVersioned(file).map(current -> current.version).orElse(null))) {
+                return false;
+            }
+
+            write(new ByteArrayInputStream(text.getBytes(UTF_8)), file);
+
+            return true;
+        }
+    }
+
+    /**
+     * @return true if source and target are on the same file store so target might be a hardlink of source
+     */
+    public static boolean canLink(final Path source, final Path target) {
+        if (!LINK) {
+            return false;
+        }
+
+        final FileStore sourceFileStore = getFileStore(source.toAbsolutePath().getParent());
+        final FileStore targetFileStore = getFileStore(target.toAbsolutePath().getParent());
+
+        return sourceFileStore != null && sourceFileStore.equals(targetFileStore);
+    }
+
+    private static void move(final Path temporaryFile, final Path target) throws IOException {
+        try {
+            Files.move(temporaryFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final Exception ex) {
+            Files.deleteIfExists(temporaryFile);
+            throw ex;
+        }
+    }
+
+    private static Path temporaryFile(final Path target) {
+        return target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + TEMPORARY_FILE_SUFFIX);
+    }
+
+    private static FileStore getFileStore(final Path directory) {
+        Path existing = directory;
+
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+
+        if (existing == null) {
+            return null;
+        }
+
+        final Path existingDirectory = existing;
+
+        return fileStores.computeIfAbsent(existingDirectory, dir -> {
+            try {
+                return Files.getFileStore(dir);
+            } catch (final IOException ex) {
+                logger.debug(format("Unable to resolve file store of %s: %s", dir, ex.getMessage()));
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,153 @@
+package com.instaclustr.esop.backup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Guice;
+import com.instaclustr.esop.impl.BackupCatalog;
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.Manifest.AllManifestsReport;
+import com.instaclustr.esop.impl.Manifest.ManifestAgeComparator;
+import com.instaclustr.esop.impl.Manifest.ManifestReporter.ManifestReport;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.StorageInteractor.VersionedText;
+import com.instaclustr.esop.local.LocalFileTransfer;
+import com.instaclustr.io.FileUtils;
+import com.instaclustr.jackson.JacksonModule;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BackupCatalogTest {
+
+    private final ObjectMapper objectMapper = Guice.createInjector(new JacksonModule()).getInstance(ObjectMapper.class);
+
+    @Test
+    public void testCatalogReportsSameAsManifests() throws Exception {
+        final List<Manifest> manifests = manifests();
+
+        assertReportsEqual(AllManifestsReport.report(manifests), BackupCatalog.from(manifests).report());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        final List<Manifest> manifests = manifests();
+        final BackupCatalog catalog = BackupCatalog.from(manifests);
+
+        final BackupCatalog read = objectMapper.readValue(objectMapper.writeValueAsString(catalog), BackupCatalog.class);
+
+        assertReportsEqual(AllManifestsReport.report(manifests), read.report());
+        assertTrue(read.covers(Arrays.asList("backup2-schema-2000.json", "backup1-schema-1000.json")));
+        assertFalse(read.covers(Arrays.asList("backup2-schema-2000.json")));
+    }
+
+    @Test
+    public void testConditionalWrite() throws Exception {
+        final Path dir = Files.createTempDirectory("catalog");
+
+        try {
+            final Path catalog = dir.resolve("catalog").resolve("catalog.json");
+
+            assertFalse(LocalFileTransfer.readVersioned(catalog).isPresent());
+            assertTrue(LocalFileTransfer.writeVersioned(catalog, "first", null));
+            // it exists already
+            assertFalse(LocalFileTransfer.writeVersioned(catalog, "second", null));
+
+            final VersionedText first = LocalFileTransfer.readVersioned(catalog).get();
+            assertEquals("first", first.text);
+
+            assertTrue(LocalFileTransfer.writeVersioned(catalog, "second", first.version));
+            // it was changed since the first version was read
+            assertFalse(LocalFileTransfer.writeVersioned(catalog, "third", first.version));
+            assertEquals("second", LocalFileTransfer.readVersioned(catalog).get().text);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testRemoval() throws Exception {
+        final List<Manifest> manifests = manifests();
+        final BackupCatalog catalog = BackupCatalog.from(manifests);
+
+        catalog.remove(catalog.report().get("backup1-schema-1000").get());
+
+        assertReportsEqual(AllManifestsReport.report(manifests.subList(0, 1)), catalog.report());
+        assertEquals(2, catalog.report().totalFiles);
+        assertEquals(50, catalog.report().getLatest().get().reclaimableSpace);
+    }
+
+    @Test
+    public void testSelectedReport() throws Exception {
+        final BackupCatalog catalog = BackupCatalog.from(manifests());
+
+        final AllManifestsReport report = catalog.report(Collections.singletonList("backup1-schema-1000.json"));
+
+        assertEquals(1, report.reports.size());
+        assertEquals("backup1-schema-1000", report.getLatest().get().name);
+        assertEquals(10, report.getLatest().get().reclaimableSpace);
+        // totals are over all backups
+        assertEquals(2, report.totalManifests);
+        assertEquals(3, report.totalFiles);
+        assertEquals(60, report.totalSize);
+    }
+
+    @Test
+    public void testManifestAgeOrdering() {
+        // timestamps differ more than an integer holds
+        final List<String> names = new ArrayList<>(Arrays.asList("backup1-schema-1000.json", "backup2-schema-5000000000.json"));
+        names.sort(new ManifestAgeComparator());
+
+        assertEquals(Arrays.asList("backup2-schema-5000000000.json", "backup1-schema-1000.json"), names);
+    }
+
+    private List<Manifest> manifests() throws Exception {
+        // newest first, as they are listed
+        return Arrays.asList(manifest("backup2-schema-2000", "b", 20, "c", 30),
+                             manifest("backup1-schema-1000", "a", 10, "b", 20));
+    }
+
+    private Manifest manifest(final String name, final String file1, final long size1, final String file2, final long size2) throws Exception {
+        final String json = "{\"snapshot\":{\"name\":\"" + name + "\",\"keyspaces\":{\"ks1\":{\"tables\":{\"tb1\":{\"entries\":["
+            + entry(file1, size1) + "," + entry(file2, size2) + "],\"id\":\"52d74870fb9911eaa75583ff20369112\"}}}}}}";
+
+        final Manifest manifest = Manifest.read(json, objectMapper);
+        manifest.setManifest(new ManifestEntry(Paths.get("manifests", name + ".json"), null, ManifestEntry.Type.FILE, null, null));
+
+        return manifest;
+    }
+
+    private String entry(final String file, final long size) {
+        return "{\"objectKey\":\"data/ks1/tb1-52d74870fb9911eaa75583ff20369112/1-123/na-1-big-" + file + ".db\",\"type\":\"FILE\",\"size\":" + size + "}";
+    }
+
+    private void assertReportsEqual(final AllManifestsReport expected, final AllManifestsReport actual) {
+        assertEquals(expected.totalFiles, actual.totalFiles);
+        assertEquals(expected.totalSize, actual.totalSize);
+        assertEquals(expected.totalManifests, actual.totalManifests);
+        assertEquals(expected.reports.size(), actual.reports.size());
+
+        for (int i = 0; i < expected.reports.size(); i++) {
+            final ManifestReport expectedReport = expected.reports.get(i);
+            final ManifestReport actualReport = actual.reports.get(i);
+
+            assertEquals(expectedReport.name, actualReport.name);
+            assertEquals(expectedReport.files, actualReport.files);
+            assertEquals(expectedReport.size, actualReport.size);
+            assertEquals(expectedReport.reclaimableSpace, actualReport.reclaimableSpace);
+            assertEquals(new HashSet<>(expectedReport.removableEntries), new HashSet<>(actualReport.removableEntries));
+            assertEquals(expectedReport.timestamp, actualReport.timestamp);
+            assertEquals(expectedReport.unixtimestamp, actualReport.unixtimestamp);
+            assertEquals(expectedReport.manifest.objectKey, actualReport.manifest.objectKey);
+        }
+    }
+}
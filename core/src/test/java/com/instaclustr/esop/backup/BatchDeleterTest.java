@@ -0,0 +1,80 @@
+package com.instaclustr.esop.backup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.instaclustr.esop.impl.remove.BatchDeleter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchDeleterTest {
+
+    @Test
+    public void testAllDeleted() throws Exception {
+        final Set<String> deleted = ConcurrentHashMap.newKeySet();
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        new BatchDeleter(3, 4) {
+            @Override
+            protected Map<String, String> deleteBatch(final List<String> batch) {
+                batchSizes.add(batch.size());
+                deleted.addAll(batch);
+                return Collections.emptyMap();
+            }
+        }.delete(keys(10));
+
+        assertEquals(10, deleted.size());
+        assertEquals(4, batchSizes.size());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 3));
+    }
+
+    @Test
+    public void testPartialFailure() {
+        final Set<String> tried = ConcurrentHashMap.newKeySet();
+
+        final IOException ex = assertThrows(IOException.class, () -> new BatchDeleter(2, 2) {
+            @Override
+            protected Map<String, String> deleteBatch(final List<String> batch) {
+                tried.addAll(batch);
+
+                if (batch.contains("key-0")) {
+                    throw new IllegalStateException("batch failed");
+                }
+
+                final Map<String, String> failures = new HashMap<>();
+
+                if (batch.contains("key-5")) {
+                    failures.put("key-5", "access denied");
+                }
+
+                return failures;
+            }
+        }.delete(keys(6)));
+
+        // other batches are tried even when some fail
+        assertEquals(6, tried.size());
+        assertTrue(ex.getMessage().startsWith("Unable to delete 3 of 6 objects"));
+        assertTrue(ex.getMessage().contains("key-0"));
+        assertTrue(ex.getMessage().contains("key-1"));
+        assertTrue(ex.getMessage().contains("key-5"));
+    }
+
+    private List<String> keys(final int count) {
+        final List<String> keys = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            keys.add("key-" + i);
+        }
+
+        return keys;
+    }
+}
@@ -0,0 +1,46 @@
+package com.instaclustr.esop.backup;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import com.instaclustr.esop.impl.CommitLogBuckets;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class CommitLogBucketsTest {
+
+    // 2020-10-07T12:41:33.574Z
+    private static final long TIMESTAMP = 1602074493574L;
+
+    @Test
+    public void testObjectKey() {
+        assertEquals(Paths.get("commitlog/2020-10-07/CommitLog-7-1602074493574.log.1602074493574"),
+                     CommitLogBuckets.objectKey("CommitLog-7-1602074493574.log", TIMESTAMP));
+    }
+
+    @Test
+    public void testBucketsOfWindow() {
+        final long day = 24 * 60 * 60 * 1000L;
+
+        assertEquals(1, CommitLogBuckets.buckets(TIMESTAMP, TIMESTAMP).size());
+
+        final List<Path> buckets = CommitLogBuckets.buckets(TIMESTAMP, TIMESTAMP + 2 * day);
+
+        assertEquals(3, buckets.size());
+        assertEquals(Paths.get("commitlog/2020-10-07"), buckets.get(0));
+        assertEquals(Paths.get("commitlog/2020-10-09"), buckets.get(2));
+
+        assertEquals(CommitLogBuckets.bucket(TIMESTAMP + day), buckets.get(1));
+        assertEquals(0, CommitLogBuckets.buckets(TIMESTAMP + day, TIMESTAMP).size());
+    }
+
+    @Test
+    public void testLegacyPrefixDoesNotListBuckets() {
+        final String legacyPrefix = CommitLogBuckets.LEGACY_PREFIX.toString();
+
+        assertFalse(CommitLogBuckets.objectKey("CommitLog-7-1602074493574.log", TIMESTAMP).toString().startsWith(legacyPrefix));
+    }
+}
@@ -0,0 +1,193 @@
+package com.instaclustr.esop.backup;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.esop.impl.restore.strategy.DataSynchronizator.ManifestEntrySSTableClassifier;
+import com.instaclustr.esop.impl.restore.strategy.DataSynchronizator.SuffixIndex;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DataSynchronizatorTest {
+
+    @Test
+    public void testSuffixIndex() {
+        final ManifestEntry sstable = entry("ks1/tb1-1234/na-1-big-Data.db");
+        final ManifestEntry index = entry("ks1/tb1-1234/.idx/na-1-big-Data.db");
+        final ManifestEntry missing = entry("ks1/tb1-1234/na-2-big-Data.db");
+        final ManifestEntry duplicate = entry("ks1/tb1-1234/na-1-big-Data.db");
+
+        final List<ManifestEntry> entries = new ArrayList<>();
+        entries.add(sstable);
+        entries.add(index);
+        entries.add(missing);
+        entries.add(duplicate);
+
+        final List<Path> localFiles = new ArrayList<>();
+        localFiles.add(Paths.get("/var/lib/cassandra/data/ks1/tb1-1234/na-1-big-Data.db"));
+        localFiles.add(Paths.get("/var/lib/cassandra/data/ks1/tb1-1234/.idx/na-1-big-Data.db"));
+        localFiles.add(Paths.get("/var/lib/cassandra/data/ks1/tb1-1234/na-3-big-Data.db"));
+        // the same file name in another table
+        localFiles.add(Paths.get("/var/lib/cassandra/data/ks1/tb2-5678/na-2-big-Data.db"));
+
+        final SuffixIndex suffixIndex = new SuffixIndex(entries, localFiles);
+
+        assertTrue(suffixIndex.existsLocally(sstable));
+        assertTrue(suffixIndex.existsLocally(index));
+        assertTrue(suffixIndex.existsLocally(duplicate));
+        assertFalse(suffixIndex.existsLocally(missing));
+
+        // the first entry wins
+        assertSame(sstable, suffixIndex.firstEntry(localFiles.get(0)));
+        assertSame(index, suffixIndex.firstEntry(localFiles.get(1)));
+        assertNull(suffixIndex.firstEntry(localFiles.get(2)));
+        assertNull(suffixIndex.firstEntry(localFiles.get(3)));
+    }
+
+    @Test
+    public void testSuffixIndexMatchesAsEndsWith() {
+        final Random random = new Random(0);
+
+        for (int round = 0; round < 20; round++) {
+            final List<ManifestEntry> entries = new ArrayList<>();
+            final List<Path> localFiles = new ArrayList<>();
+
+            for (int i = 0; i < 50; i++) {
+                entries.add(entry(randomPath(random)));
+                localFiles.add(Paths.get("/var/lib/cassandra/data" + random.nextInt(2)).resolve(randomPath(random)));
+            }
+
+            final SuffixIndex suffixIndex = new SuffixIndex(entries, localFiles);
+
+            // matching as it was done before there was an index, comparing every entry with every local file
+            for (final ManifestEntry entry : entries) {
+                assertEquals(localFiles.stream().anyMatch(localFile -> localFile.endsWith(entry.localFile)), suffixIndex.existsLocally(entry));
+            }
+
+            for (final Path localFile : localFiles) {
+                final Optional<ManifestEntry> first = entries.stream().filter(entry -> localFile.endsWith(entry.localFile)).findFirst();
+                assertSame(first.orElse(null), suffixIndex.firstEntry(localFile));
+            }
+        }
+    }
+
+    @Test
+    public void testSSTablesArePlacedOnSameDeviceEvenly() {
+        final Path dir1 = Paths.get("/data1");
+        final Path dir2 = Paths.get("/data2");
+
+        final DevicesClassifier classifier = new DevicesClassifier();
+
+        final Map<String, List<ManifestEntry>> classified = classify(classifier, sized("ks1/tb1/na-1-big-Data.db", 50),
+                                                                     sized("ks1/tb1/na-2-big-Data.db", 60),
+                                                                     // SSTable of two components of 100 bytes
+                                                                     sized("ks1/tb1/na-3-big-Data.db", 70),
+                                                                     sized("ks1/tb1/na-3-big-Index.db", 30));
+
+        classifier.map(classified, request(dir1, dir2));
+
+        // the biggest first, each into the data directory which got the least bytes so far
+        assertPlaced(classified, "ks1/tb1/na-3-big", dir1);
+        assertPlaced(classified, "ks1/tb1/na-2-big", dir2);
+        assertPlaced(classified, "ks1/tb1/na-1-big", dir2);
+    }
+
+    @Test
+    public void testSSTablesArePlacedByFreeSpaceOfDevices() {
+        final Path dir1 = Paths.get("/disk1/data1");
+        final Path dir2 = Paths.get("/disk1/data2");
+        final Path dir3 = Paths.get("/disk2/data");
+
+        final DevicesClassifier classifier = new DevicesClassifier();
+        classifier.devices.put(dir1, "disk1");
+        classifier.devices.put(dir2, "disk1");
+        classifier.devices.put(dir3, "disk2");
+        classifier.freeSpace.put("disk1", 400L);
+        classifier.freeSpace.put("disk2", 300L);
+
+        final Map<String, List<ManifestEntry>> classified = classify(classifier, sized("ks1/tb1/na-1-big-Data.db", 200),
+                                                                     sized("ks1/tb1/na-2-big-Data.db", 100),
+                                                                     sized("ks1/tb1/na-3-big-Data.db", 150),
+                                                                     sized("ks1/tb1/na-4-big-Data.db", 100));
+
+        classifier.map(classified, request(dir1, dir2, dir3));
+
+        // each into the device with the most free space left
+        assertPlaced(classified, "ks1/tb1/na-1-big", dir1);
+        assertPlaced(classified, "ks1/tb1/na-3-big", dir3);
+        assertPlaced(classified, "ks1/tb1/na-2-big", dir2);
+        assertPlaced(classified, "ks1/tb1/na-4-big", dir3);
+
+        // writes alternate between devices
+        final List<ManifestEntry> ordered = classifier.orderForWriting(classified);
+        assertEquals(Arrays.asList(dir1, dir3, dir2, dir3), Arrays.asList(ordered.get(0).localFile.getParent().getParent().getParent(),
+                                                                          ordered.get(1).localFile.getParent().getParent().getParent(),
+                                                                          ordered.get(2).localFile.getParent().getParent().getParent(),
+                                                                          ordered.get(3).localFile.getParent().getParent().getParent()));
+        assertEquals("na-1-big-Data.db", ordered.get(0).localFile.getFileName().toString());
+        assertEquals("na-3-big-Data.db", ordered.get(1).localFile.getFileName().toString());
+    }
+
+    private static Map<String, List<ManifestEntry>> classify(final DevicesClassifier classifier, final ManifestEntry... entries) {
+        return classifier.classify(Arrays.asList(entries));
+    }
+
+    private static void assertPlaced(final Map<String, List<ManifestEntry>> classified, final String sstable, final Path dataDir) {
+        for (final ManifestEntry entry : classified.get(sstable)) {
+            assertTrue(entry.localFile.startsWith(dataDir), entry.localFile + " is not in " + dataDir);
+        }
+    }
+
+    private static RestoreOperationRequest request(final Path... dataDirs) {
+        final RestoreOperationRequest request = new RestoreOperationRequest();
+        request.dataDirs = Arrays.asList(dataDirs);
+        return request;
+    }
+
+    private static ManifestEntry sized(final String localFile, final long size) {
+        return new ManifestEntry(Paths.get("data").resolve(localFile), Paths.get(localFile), ManifestEntry.Type.FILE, size, null, null, null);
+    }
+
+    // data directories are on devices given by a test, all on one device of unknown free space by default
+    private static class DevicesClassifier extends ManifestEntrySSTableClassifier {
+
+        private final Map<Path, String> devices = new HashMap<>();
+        private final Map<String, Long> freeSpace = new HashMap<>();
+
+        @Override
+        protected String getDevice(final Path dataDir) {
+            return devices.getOrDefault(dataDir, "disk");
+        }
+
+        @Override
+        protected long getUsableSpace(final Path dataDir) {
+            return freeSpace.getOrDefault(getDevice(dataDir), Long.MAX_VALUE);
+        }
+    }
+
+    private static String randomPath(final Random random) {
+        final String file = "na-" + random.nextInt(10) + "-big-Data.db";
+        final String table = "ks" + random.nextInt(2) + "/tb" + random.nextInt(2);
+
+        // secondary indexes have a directory of their own
+        return random.nextInt(4) == 0 ? table + "/.idx" + random.nextInt(2) + "/" + file : table + "/" + file;
+    }
+
+    private static ManifestEntry entry(final String localFile) {
+        return new ManifestEntry(Paths.get("data").resolve(localFile), Paths.get(localFile), ManifestEntry.Type.FILE, 1, null, null, null);
+    }
+}
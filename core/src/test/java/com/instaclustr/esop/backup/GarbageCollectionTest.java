@@ -0,0 +1,115 @@
+package com.instaclustr.esop.backup;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import com.instaclustr.esop.guice.RestorerFactory;
+import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.impl.gc.GarbageCollectionOperation;
+import com.instaclustr.esop.impl.gc.GarbageCollectionRequest;
+import com.instaclustr.esop.local.LocalFileModule;
+import com.instaclustr.esop.local.LocalFileTransfer;
+import com.instaclustr.jackson.JacksonModule;
+import com.instaclustr.measure.Time;
+import com.instaclustr.operations.Operation.State;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.instaclustr.io.FileUtils.deleteDirectory;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GarbageCollectionTest {
+
+    private static final String TABLE_DIR = "data/ks1/tb1-52d74870fb9911eaa75583ff20369112/";
+
+    private final Injector injector = Guice.createInjector(new LocalFileModule(), new JacksonModule());
+    private final ObjectMapper objectMapper = injector.getInstance(ObjectMapper.class);
+    private final Map<String, RestorerFactory> restorerFactoryMap = injector.getInstance(Key.get(new TypeLiteral<Map<String, RestorerFactory>>() {}));
+
+    private Path root;
+    private Path node;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        root = Files.createTempDirectory("esop-gc");
+        node = root.resolve("bucket/cluster/dc1/node1");
+
+        Files.createDirectories(node.resolve("manifests"));
+        Files.write(node.resolve("manifests/backup1-schema-1000.json"), manifest().getBytes(StandardCharsets.UTF_8));
+
+        write(node.resolve(TABLE_DIR + "1-123/na-1-big-Data.db"));
+    }
+
+    @AfterEach
+    public void teardown() throws Exception {
+        deleteDirectory(root);
+    }
+
+    @Test
+    public void testHardlinkedOldObjectIsKeptWithinGracePeriod() throws Exception {
+        // an SSTable written weeks ago, uploaded by linking it, as a running backup does before it uploads its manifest
+        final Path sstable = root.resolve("cassandra/na-2-big-Data.db");
+        write(sstable);
+        Files.setLastModifiedTime(sstable, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30)));
+
+        final Path uploaded = node.resolve(TABLE_DIR + "2-456/na-2-big-Data.db");
+        Files.createDirectories(uploaded.getParent());
+        LocalFileTransfer.transfer(sstable, uploaded, true);
+
+        assertEquals(State.COMPLETED, collect(new Time(1L, Time.TimeUnit.DAYS)));
+
+        assertTrue(Files.exists(uploaded));
+        assertTrue(Files.exists(node.resolve(TABLE_DIR + "1-123/na-1-big-Data.db")));
+
+        // without a grace period it is an orphan
+        Thread.sleep(10);
+
+        assertEquals(State.COMPLETED, collect(new Time(0L, Time.TimeUnit.DAYS)));
+
+        assertFalse(Files.exists(uploaded));
+        assertTrue(Files.exists(node.resolve(TABLE_DIR + "1-123/na-1-big-Data.db")));
+    }
+
+    private State collect(final Time gracePeriod) {
+        final GarbageCollectionRequest request = new GarbageCollectionRequest("gc",
+                                                                              new StorageLocation("file://" + node),
+                                                                              false,
+                                                                              true,
+                                                                              null,
+                                                                              null,
+                                                                              false,
+                                                                              false,
+                                                                              gracePeriod,
+                                                                              root.resolve(".esop"),
+                                                                              1,
+                                                                              false);
+
+        final GarbageCollectionOperation operation = new GarbageCollectionOperation(request, null, restorerFactoryMap, objectMapper);
+        operation.run();
+
+        return operation.state;
+    }
+
+    private void write(final Path file) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, "sstable".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String manifest() {
+        return "{\"snapshot\":{\"name\":\"backup1-schema-1000\",\"keyspaces\":{\"ks1\":{\"tables\":{\"tb1\":{\"entries\":["
+            + "{\"objectKey\":\"" + TABLE_DIR + "1-123/na-1-big-Data.db\",\"type\":\"FILE\",\"size\":7}"
+            + "],\"id\":\"52d74870fb9911eaa75583ff20369112\"}}}}}}";
+    }
+}
@@ -0,0 +1,113 @@
+package com.instaclustr.esop.backup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import com.instaclustr.esop.local.LocalFileTransfer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.instaclustr.io.FileUtils.deleteDirectory;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalFileTransferTest {
+
+    private Path dir;
+    private Path source;
+    private Path target;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("esop-transfer");
+        source = dir.resolve("cassandra/na-1-big-Data.db");
+        target = dir.resolve("backup/data/ks1/tb1/na-1-big-Data.db");
+
+        Files.createDirectories(source.getParent());
+        Files.write(source, "sstable".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    public void teardown() throws Exception {
+        deleteDirectory(dir);
+    }
+
+    @Test
+    public void testFileIsLinked() throws Exception {
+        LocalFileTransfer.transfer(source, target, true);
+
+        assertTrue(LocalFileTransfer.canLink(source, target));
+        assertTrue(Files.isSameFile(source, target));
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void testFileIsCopiedWhenItMightChange() throws Exception {
+        LocalFileTransfer.transfer(source, target, false);
+
+        assertFalse(Files.isSameFile(source, target));
+        assertEquals("sstable", read(target));
+
+        // e.g. a commit log which is still being written to
+        Files.write(source, "changed".getBytes(StandardCharsets.UTF_8));
+        assertEquals("sstable", read(target));
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void testExistingTargetIsReplaced() throws Exception {
+        Files.createDirectories(target.getParent());
+        Files.write(target, "old".getBytes(StandardCharsets.UTF_8));
+
+        LocalFileTransfer.transfer(source, target, false);
+        assertEquals("sstable", read(target));
+
+        Files.write(target, "old".getBytes(StandardCharsets.UTF_8));
+
+        LocalFileTransfer.transfer(source, target, true);
+        assertEquals("sstable", read(target));
+        assertTrue(Files.isSameFile(source, target));
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void testFailedTransferKeepsTarget() throws Exception {
+        Files.createDirectories(target.getParent());
+        Files.write(target, "old".getBytes(StandardCharsets.UTF_8));
+
+        final Path missing = dir.resolve("cassandra/na-2-big-Data.db");
+
+        assertThrows(NoSuchFileException.class, () -> LocalFileTransfer.transfer(missing, target, false));
+        assertThrows(NoSuchFileException.class, () -> LocalFileTransfer.transfer(missing, target, true));
+
+        assertEquals("old", read(target));
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void testStreamIsWritten() throws Exception {
+        LocalFileTransfer.write(new ByteArrayInputStream("manifest".getBytes(StandardCharsets.UTF_8)), target);
+        assertEquals("manifest", read(target));
+
+        LocalFileTransfer.write(new ByteArrayInputStream("other manifest".getBytes(StandardCharsets.UTF_8)), target);
+        assertEquals("other manifest", read(target));
+        assertNoTemporaryFiles();
+    }
+
+    private void assertNoTemporaryFiles() throws Exception {
+        try (final Stream<Path> files = Files.list(target.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private static String read(final Path file) throws Exception {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
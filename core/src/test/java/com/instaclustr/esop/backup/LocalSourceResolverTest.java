@@ -0,0 +1,123 @@
+package com.instaclustr.esop.backup;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.hash.HashServiceImpl;
+import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.esop.impl.restore.LocalSourceResolver;
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.instaclustr.io.FileUtils.deleteDirectory;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalSourceResolverTest {
+
+    private final HashSpec hashSpec = new HashSpec();
+
+    private Path dir;
+    private Path dataDir;
+    private Path localPath;
+    private RestoreOperationRequest request;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("esop-local-sources");
+        dataDir = dir.resolve("data");
+        localPath = dir.resolve("downloads/data/ks1/tb1-1111/na-1-big-Data.db");
+
+        request = new RestoreOperationRequest();
+        request.dataDirs = Collections.singletonList(dataDir);
+    }
+
+    @AfterEach
+    public void teardown() throws Exception {
+        deleteDirectory(dir);
+    }
+
+    @Test
+    public void testSnapshotOfRecreatedTableIsLinked() throws Exception {
+        // the table was recreated so its id is different
+        final Path source = sstable(dataDir.resolve("ks1/tb1-2222/snapshots/tag1/na-1-big-Data.db"), "data", "12345");
+
+        assertTrue(resolver().link(entry("data/ks1/tb1-1111/1-12345/na-1-big-Data.db", hash(source)), localPath, hashSpec));
+        assertTrue(Files.isSameFile(source, localPath));
+    }
+
+    @Test
+    public void testBackupOfSecondaryIndexIsLinked() throws Exception {
+        final Path source = sstable(dataDir.resolve("ks1/tb1-1111/backups/.idx1/na-1-big-Data.db"), "data", "12345");
+        final Path indexPath = dir.resolve("downloads/data/ks1/tb1-1111/.idx1/na-1-big-Data.db");
+
+        assertTrue(resolver().link(entry("data/ks1/tb1-1111/.idx1/1-12345/na-1-big-Data.db", hash(source)), indexPath, hashSpec));
+        assertTrue(Files.isSameFile(source, indexPath));
+    }
+
+    @Test
+    public void testOnlyMatchingCandidateIsLinked() throws Exception {
+        final Path source = sstable(dataDir.resolve("ks1/tb1-1111/snapshots/tag1/na-1-big-Data.db"), "data", "12345");
+        // the same name and digest, a different content
+        sstable(dataDir.resolve("ks1/tb1-1111/snapshots/tag2/na-1-big-Data.db"), "other data", "12345");
+
+        assertTrue(resolver().link(entry("data/ks1/tb1-1111/1-12345/na-1-big-Data.db", hash(source)), localPath, hashSpec));
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(localPath));
+    }
+
+    @Test
+    public void testMismatchingCandidatesAreNotLinked() throws Exception {
+        final Path source = sstable(dataDir.resolve("ks1/tb1-1111/snapshots/tag1/na-1-big-Data.db"), "data", "12345");
+        final String hash = hash(source);
+
+        final LocalSourceResolver resolver = resolver();
+
+        // different hash of the file
+        assertFalse(resolver.link(entry("data/ks1/tb1-1111/1-12345/na-1-big-Data.db", "not-a-hash"), localPath, hashSpec));
+        // different digest of the SSTable
+        assertFalse(resolver.link(entry("data/ks1/tb1-1111/1-54321/na-1-big-Data.db", hash), localPath, hashSpec));
+        // different keyspace
+        assertFalse(resolver.link(entry("data/ks2/tb1-1111/1-12345/na-1-big-Data.db", hash), localPath, hashSpec));
+        // different table
+        assertFalse(resolver.link(entry("data/ks1/tb2-1111/1-12345/na-1-big-Data.db", hash), localPath, hashSpec));
+        // without a hash to verify against
+        assertFalse(resolver.link(entry("data/ks1/tb1-1111/1-12345/na-1-big-Data.db", null), localPath, hashSpec));
+
+        assertFalse(Files.exists(localPath));
+    }
+
+    @Test
+    public void testLiveDataIsNotLinked() throws Exception {
+        // only snapshots and backups are immutable
+        final Path source = sstable(dataDir.resolve("ks1/tb1-1111/na-1-big-Data.db"), "data", "12345");
+
+        assertFalse(resolver().link(entry("data/ks1/tb1-1111/1-12345/na-1-big-Data.db", hash(source)), localPath, hashSpec));
+        assertFalse(Files.exists(localPath));
+    }
+
+    private LocalSourceResolver resolver() {
+        return LocalSourceResolver.forRequest(request);
+    }
+
+    private Path sstable(final Path dataFile, final String content, final String digest) throws Exception {
+        Files.createDirectories(dataFile.getParent());
+        Files.write(dataFile, content.getBytes(StandardCharsets.UTF_8));
+        Files.write(dataFile.resolveSibling("na-1-big-Digest.crc32"), digest.getBytes(StandardCharsets.UTF_8));
+        return dataFile;
+    }
+
+    private String hash(final Path file) throws Exception {
+        return new HashServiceImpl(hashSpec).hash(file);
+    }
+
+    private static ManifestEntry entry(final String objectKey, final String hash) {
+        return new ManifestEntry(Paths.get(objectKey), null, ManifestEntry.Type.FILE, 4, null, hash, null);
+    }
+}
@@ -0,0 +1,142 @@
+package com.instaclustr.esop.backup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.instaclustr.esop.impl.list.ManifestCacheSynchronizer;
+import com.instaclustr.esop.impl.list.ManifestCacheSynchronizer.ManifestDownloader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.instaclustr.io.FileUtils.deleteDirectory;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ManifestCacheSynchronizerTest {
+
+    private Path cacheDir;
+
+    // file names of remote manifests to their content
+    private Map<String, String> remote;
+
+    // file names of manifests which were downloaded
+    private List<String> downloaded;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        cacheDir = Files.createTempDirectory("esop-manifest-cache").resolve("cluster/dc1/node1");
+        remote = new HashMap<>();
+        downloaded = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @AfterEach
+    public void teardown() throws Exception {
+        deleteDirectory(cacheDir.getParent().getParent().getParent());
+    }
+
+    @Test
+    public void testCacheIsSynchronized() throws Exception {
+        remote.put("backup1-schema-1000.json", "backup1");
+        remote.put("backup2-schema-1000.json", "backup2");
+        remote.put("backup3-schema-1000.json", "backup3");
+        remote.put("backup4-schema-1000.json", "backup4");
+
+        Files.createDirectories(cacheDir);
+        // up to date
+        cache("backup1-schema-1000.json", "backup1");
+        // of a different size, e.g. a truncated one
+        cache("backup2-schema-1000.json", "back");
+        // a backup which was removed
+        cache("backup0-schema-1000.json", "backup0");
+        // left by an interrupted synchronization
+        cache(".backup3-schema-1000.json.tmp", "back");
+
+        new ManifestCacheSynchronizer(2).sync(cacheDir, sizes(), downloader());
+
+        assertEquals(new HashSet<>(Arrays.asList("backup2-schema-1000.json", "backup3-schema-1000.json", "backup4-schema-1000.json")),
+                     new HashSet<>(downloaded));
+        assertEquals(remote, cached());
+
+        // nothing has changed
+        downloaded.clear();
+        new ManifestCacheSynchronizer(2).sync(cacheDir, sizes(), downloader());
+
+        assertEquals(Collections.emptyList(), downloaded);
+        assertEquals(remote, cached());
+    }
+
+    @Test
+    public void testManifestOfUnknownSizeIsDownloaded() throws Exception {
+        remote.put("backup1-schema-1000.json", "backup1");
+
+        Files.createDirectories(cacheDir);
+        cache("backup1-schema-1000.json", "backup1");
+
+        new ManifestCacheSynchronizer(null).sync(cacheDir, Collections.singletonMap("backup1-schema-1000.json", null), downloader());
+
+        assertEquals(Collections.singletonList("backup1-schema-1000.json"), downloaded);
+    }
+
+    @Test
+    public void testFailedDownloadIsNotCached() throws Exception {
+        remote.put("backup1-schema-1000.json", "backup1");
+        remote.put("backup2-schema-1000.json", "backup2");
+
+        final Map<String, Long> sizes = sizes();
+        sizes.put("backup3-schema-1000.json", 7L);
+
+        assertThrows(IOException.class, () -> new ManifestCacheSynchronizer(2).sync(cacheDir, sizes, downloader()));
+
+        // a manifest which failed has no partial file in a cache
+        assertEquals(remote, cached());
+    }
+
+    private ManifestDownloader downloader() {
+        return (manifestName, localFile) -> {
+            downloaded.add(manifestName);
+
+            final String content = remote.get(manifestName);
+
+            // as if a download broke off after some bytes
+            Files.write(localFile, "back".getBytes(StandardCharsets.UTF_8));
+
+            if (content == null) {
+                throw new IOException("There is not any manifest " + manifestName);
+            }
+
+            Files.write(localFile, content.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private Map<String, Long> sizes() {
+        return remote.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, entry -> (long) entry.getValue().length(), (a, b) -> a, HashMap::new));
+    }
+
+    private void cache(final String manifestName, final String content) throws Exception {
+        Files.write(cacheDir.resolve(manifestName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, String> cached() throws Exception {
+        final Map<String, String> cached = new HashMap<>();
+
+        try (final Stream<Path> files = Files.list(cacheDir)) {
+            for (final Path file : files.collect(Collectors.toList())) {
+                cached.put(file.getFileName().toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            }
+        }
+
+        return cached;
+    }
+}
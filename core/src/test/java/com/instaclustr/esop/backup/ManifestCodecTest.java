@@ -0,0 +1,102 @@
+package com.instaclustr.esop.backup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Guice;
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.ManifestCodec;
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.jackson.JacksonModule;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ManifestCodecTest {
+
+    private final ObjectMapper objectMapper = Guice.createInjector(new JacksonModule()).getInstance(ObjectMapper.class);
+
+    private static final String MANIFEST = "{\"snapshot\":{\"name\":\"backup1\",\"keyspaces\":{\"ks1\":{\"tables\":{\"tb1\":{\"entries\":["
+        + "{\"objectKey\":\"data/ks1/tb1-52d74870fb9911eaa75583ff20369112/1-123/na-1-big-Data.db\",\"type\":\"FILE\",\"size\":100},"
+        + "{\"objectKey\":\"data/ks1/tb1-52d74870fb9911eaa75583ff20369112/1-123/na-1-big-Index.db\",\"type\":\"FILE\",\"size\":10},"
+        + "{\"objectKey\":\"data/ks1/tb1-52d74870fb9911eaa75583ff20369112/2-456/na-2-big-Data.db\",\"type\":\"FILE\",\"size\":200}"
+        + "],\"id\":\"52d74870fb9911eaa75583ff20369112\"}}}}},\"tokens\":[\"1\",\"2\"],\"schemaVersion\":\"abc\"}";
+
+    @Test
+    public void testCompactRoundTrip() throws Exception {
+        final Manifest manifest = ManifestCodec.read(MANIFEST, objectMapper);
+
+        final String compact = ManifestCodec.write(manifest, objectMapper, true);
+        assertFalse(compact.trim().startsWith("{"));
+
+        final Manifest read = ManifestCodec.read(compact, objectMapper);
+
+        assertEquals(entries(manifest), entries(read));
+        assertEquals(manifest.getTokens(), read.getTokens());
+        assertEquals(manifest.getSchemaVersion(), read.getSchemaVersion());
+        assertEquals(manifest.getSnapshot().getName(), read.getSnapshot().getName());
+        assertEquals(manifest.getTotalSize(), read.getTotalSize());
+    }
+
+    @Test
+    public void testCompactFileRoundTrip() throws Exception {
+        final Manifest manifest = ManifestCodec.read(MANIFEST, objectMapper);
+        final Path file = Files.createTempFile("esop-manifest-", ".json");
+
+        try {
+            ManifestCodec.write(manifest, Files.newOutputStream(file), objectMapper, true);
+
+            // a file is just gzipped, it is not encoded in Base64 as a string is
+            final byte[] compact = Files.readAllBytes(file);
+            assertEquals(0x1f, compact[0] & 0xff);
+            assertTrue(compact.length < ManifestCodec.write(manifest, objectMapper, true).length());
+
+            assertEquals(entries(manifest), entries(Manifest.read(file, objectMapper)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testPlainRoundTrip() throws Exception {
+        final Manifest manifest = ManifestCodec.read(MANIFEST, objectMapper);
+
+        final String plain = ManifestCodec.write(manifest, objectMapper, false);
+        assertTrue(plain.startsWith("{"));
+
+        assertEquals(entries(manifest), entries(ManifestCodec.read(plain, objectMapper)));
+    }
+
+    @Test
+    public void testVisitEntries() throws Exception {
+        final Manifest manifest = ManifestCodec.read(MANIFEST, objectMapper);
+        final Set<String> expected = entries(manifest);
+
+        for (final String encoded : new String[]{MANIFEST, ManifestCodec.write(manifest, objectMapper, false), ManifestCodec.write(manifest, objectMapper, true)}) {
+            final Set<String> visited = new HashSet<>();
+
+            ManifestCodec.visitEntries(new ByteArrayInputStream(encoded.getBytes(UTF_8)),
+                                       objectMapper,
+                                       (objectKey, size, type) -> visited.add(objectKey + ":" + size + ":" + type));
+
+            assertEquals(expected, visited);
+        }
+    }
+
+    private Set<String> entries(final Manifest manifest) {
+        final Set<String> entries = new HashSet<>();
+
+        for (final ManifestEntry entry : manifest.getManifestEntries(false)) {
+            entries.add(entry.objectKey + ":" + entry.size + ":" + entry.type);
+        }
+
+        return entries;
+    }
+}
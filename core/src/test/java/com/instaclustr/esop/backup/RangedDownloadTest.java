@@ -0,0 +1,156 @@
+package com.instaclustr.esop.backup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.instaclustr.esop.impl.ManifestEntry;
+import com.instaclustr.esop.impl.RemoteObjectReference;
+import com.instaclustr.esop.impl.hash.HashService.HashVerificationException;
+import com.instaclustr.esop.impl.hash.HashSpec;
+import com.instaclustr.esop.impl.restore.RangedDownload;
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.esop.impl.retry.RetrySpec;
+import com.instaclustr.esop.impl.retry.RetrySpec.RetryStrategy;
+import com.instaclustr.esop.local.LocalFileObjectReference;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.instaclustr.io.FileUtils.deleteDirectory;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RangedDownloadTest {
+
+    private final HashSpec hashSpec = new HashSpec();
+    private final RemoteObjectReference objectReference = new LocalFileObjectReference(Paths.get("data/ks1/tb1/na-1-big-Data.db"), "data/ks1/tb1/na-1-big-Data.db");
+    private final byte[] content = new byte[1000];
+
+    private Path dir;
+    private Path target;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        new Random(0).nextBytes(content);
+        dir = Files.createTempDirectory("esop-ranges");
+        target = dir.resolve("na-1-big-Data.db");
+    }
+
+    @AfterEach
+    public void teardown() throws Exception {
+        deleteDirectory(dir);
+    }
+
+    @Test
+    public void testFileIsSplitToRanges() throws Exception {
+        final RangeRestorer restorer = new RangeRestorer();
+
+        download(restorer, hash(), null, 100, 300, 3);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        // the last range is shorter
+        assertEquals(new HashSet<>(Arrays.asList("0-300", "300-300", "600-300", "900-100")), new HashSet<>(restorer.ranges));
+        assertEquals(4, restorer.ranges.size());
+        assertFalse(Files.exists(partialFile()));
+    }
+
+    @Test
+    public void testSmallFileIsDownloadedAsOneRange() throws Exception {
+        final RangeRestorer restorer = new RangeRestorer();
+
+        download(restorer, hash(), null, 2000, 300, 3);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(Collections.singletonList("0-1000"), restorer.ranges);
+    }
+
+    @Test
+    public void testOnlyFailedRangeIsRetried() throws Exception {
+        // the range at 300 ends early once
+        final RangeRestorer restorer = new RangeRestorer(300L);
+
+        download(restorer, hash(), new RetrySpec(1, RetryStrategy.LINEAR, 3, true), 100, 300, 3);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(5, restorer.ranges.size());
+        assertEquals(2, Collections.frequency(restorer.ranges, "300-300"));
+        assertEquals(1, Collections.frequency(restorer.ranges, "0-300"));
+    }
+
+    @Test
+    public void testFailedRangeLeavesNoFile() {
+        final RangeRestorer restorer = new RangeRestorer(600L);
+
+        assertThrows(Exception.class, () -> download(restorer, hash(), null, 100, 300, 3));
+
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(partialFile()));
+    }
+
+    @Test
+    public void testHashMismatchLeavesNoFile() {
+        assertThrows(HashVerificationException.class, () -> download(new RangeRestorer(), "not-a-hash", null, 100, 300, 3));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(partialFile()));
+
+        assertThrows(HashVerificationException.class, () -> download(new RangeRestorer(), "not-a-hash", null, 2000, 300, 3));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(partialFile()));
+    }
+
+    private void download(final RangeRestorer restorer,
+                          final String hash,
+                          final RetrySpec retrySpec,
+                          final long threshold,
+                          final long rangeSize,
+                          final int concurrency) throws Exception {
+        final ManifestEntry entry = new ManifestEntry(objectReference.objectKey, null, ManifestEntry.Type.FILE, content.length, null, hash, null);
+
+        new RangedDownload(restorer, objectReference, entry, retrySpec, hashSpec, threshold, rangeSize, concurrency).download(target);
+    }
+
+    private String hash() throws Exception {
+        return hashSpec.algorithm.getHasher().getHash(new ByteArrayInputStream(content));
+    }
+
+    private Path partialFile() {
+        return target.resolveSibling(target.getFileName() + ".download");
+    }
+
+    private class RangeRestorer extends LocalFileRestorer {
+
+        private final Set<Long> failingOnce;
+
+        // offset-length of every requested range
+        private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+
+        public RangeRestorer(final Long... failingOnce) {
+            super(new RestoreOperationRequest());
+            this.failingOnce = Collections.synchronizedSet(new HashSet<>(Arrays.asList(failingOnce)));
+        }
+
+        @Override
+        public InputStream downloadRange(final RemoteObjectReference objectReference, final long offset, final long length) {
+            ranges.add(offset + "-" + length);
+
+            if (failingOnce.remove(offset)) {
+                return new ByteArrayInputStream(content, (int) offset, (int) length / 2);
+            }
+
+            return new ByteArrayInputStream(content, (int) offset, (int) length);
+        }
+    }
+}
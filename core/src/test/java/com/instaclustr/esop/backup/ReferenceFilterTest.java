@@ -0,0 +1,51 @@
+package com.instaclustr.esop.backup;
+
+import java.nio.file.Paths;
+
+import com.instaclustr.esop.impl.gc.ReferenceFilter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReferenceFilterTest {
+
+    @Test
+    public void testReferencedKeysAreNeverOrphans() {
+        final ReferenceFilter filter = new ReferenceFilter(10_000, 0.01);
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(key(i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightBeReferenced(key(i)));
+            // keys of listed objects are compared as paths
+            assertTrue(filter.mightBeReferenced(Paths.get(key(i)).toString()));
+        }
+
+        assertTrue(filter.mightBeReferenced("data/ks1/./tb1-52d74870fb9911eaa75583ff20369112/0-0/na-0-big-Data.db"));
+    }
+
+    @Test
+    public void testFalsePositives() {
+        final ReferenceFilter filter = new ReferenceFilter(10_000, 0.01);
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(key(i));
+        }
+
+        int falsePositives = 0;
+
+        for (int i = 10_000; i < 20_000; i++) {
+            if (filter.mightBeReferenced(key(i))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 500, "too many false positives: " + falsePositives);
+    }
+
+    private String key(final int i) {
+        return "data/ks1/tb1-52d74870fb9911eaa75583ff20369112/" + i + "-" + i + "/na-" + i + "-big-Data.db";
+    }
+}
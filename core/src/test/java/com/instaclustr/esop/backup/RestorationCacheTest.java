@@ -0,0 +1,116 @@
+package com.instaclustr.esop.backup;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Guice;
+import com.instaclustr.esop.impl.Manifest;
+import com.instaclustr.esop.impl.StorageLocation;
+import com.instaclustr.esop.impl._import.ImportOperationRequest;
+import com.instaclustr.esop.impl.restore.RestorationCache;
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.esop.local.LocalFileRestorer;
+import com.instaclustr.jackson.JacksonModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.instaclustr.io.FileUtils.deleteDirectory;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+public class RestorationCacheTest {
+
+    private final ObjectMapper objectMapper = Guice.createInjector(new JacksonModule()).getInstance(ObjectMapper.class);
+
+    private Path dir;
+    private RestoreOperationRequest request;
+    private ManifestRestorer restorer;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        RestorationCache.invalidate();
+
+        dir = Files.createTempDirectory("esop-restoration-cache");
+
+        request = new RestoreOperationRequest();
+        request.storageLocation = new StorageLocation("file://" + dir.resolve("bucket/cluster/dc1/node1"));
+        request.snapshotTag = "backup1";
+
+        restorer = new ManifestRestorer(request);
+    }
+
+    @AfterEach
+    public void teardown() throws Exception {
+        RestorationCache.invalidate();
+        deleteDirectory(dir);
+    }
+
+    @Test
+    public void testManifestIsCachedRegardlessOfSchemaVersion() throws Exception {
+        final Manifest manifest = RestorationCache.getManifest(request, restorer, "1000", objectMapper);
+        // Cassandra was altered between phases, a manifest is not resolved by schema version so it is the same one
+        final Manifest cached = RestorationCache.getManifest(request, restorer, "2000", objectMapper);
+
+        assertEquals(1, restorer.downloads);
+        assertEquals("backup1-schema-1000", cached.getSnapshot().getName());
+        // every call gets its own copy
+        assertNotSame(manifest, cached);
+    }
+
+    @Test
+    public void testManifestIsCachedByExactSchemaVersion() throws Exception {
+        request.exactSchemaVersion = true;
+
+        RestorationCache.getManifest(request, restorer, "1000", objectMapper);
+        RestorationCache.getManifest(request, restorer, "2000", objectMapper);
+
+        assertEquals(2, restorer.downloads);
+
+        RestorationCache.getManifest(request, restorer, "1000", objectMapper);
+        RestorationCache.getManifest(request, restorer, "2000", objectMapper);
+
+        assertEquals(2, restorer.downloads);
+    }
+
+    @Test
+    public void testManifestIsKeptInDownloadDirectory() throws Exception {
+        request.importing = new ImportOperationRequest(null, null, dir.resolve("downloads"));
+
+        RestorationCache.getManifest(request, restorer, "1000", objectMapper);
+
+        // as if a next phase was run by another process
+        RestorationCache.invalidate();
+        RestorationCache.getManifest(request, restorer, "1000", objectMapper);
+
+        assertEquals(1, restorer.downloads);
+
+        RestorationCache.refreshManifest(request, restorer, "1000", objectMapper);
+
+        assertEquals(2, restorer.downloads);
+    }
+
+    private static class ManifestRestorer extends LocalFileRestorer {
+
+        private int downloads;
+
+        public ManifestRestorer(final RestoreOperationRequest request) {
+            super(request);
+        }
+
+        @Override
+        public void downloadManifest(final Path localPath, final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
+            downloads++;
+            Files.write(localPath, manifest().getBytes(StandardCharsets.UTF_8));
+        }
+
+        private String manifest() {
+            return "{\"snapshot\":{\"name\":\"backup1-schema-1000\",\"keyspaces\":{\"ks1\":{\"tables\":{\"tb1\":{\"entries\":["
+                + "{\"objectKey\":\"data/ks1/tb1-52d74870fb9911eaa75583ff20369112/1-123/na-1-big-Data.db\",\"type\":\"FILE\",\"size\":7}"
+                + "],\"id\":\"52d74870fb9911eaa75583ff20369112\"}}}}}}";
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.instaclustr.esop.backup;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
+import com.instaclustr.esop.impl.restore.VerificationLedger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.instaclustr.io.FileUtils.deleteDirectory;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VerificationLedgerTest {
+
+    private Path dir;
+    private Path ledgerFile;
+    private Path file;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("esop-ledger");
+        ledgerFile = dir.resolve(VerificationLedger.LEDGER_FILE_NAME);
+        file = dir.resolve("na-1-big-Data.db");
+        Files.write(file, "data".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    public void teardown() throws Exception {
+        deleteDirectory(dir);
+    }
+
+    @Test
+    public void testVerifiedFileIsRecorded() {
+        final VerificationLedger ledger = VerificationLedger.load(ledgerFile);
+
+        assertFalse(ledger.isVerified(file, "hash1"));
+
+        ledger.verified(file, "hash1");
+
+        assertTrue(ledger.isVerified(file, "hash1"));
+        assertFalse(ledger.isVerified(file, "hash2"));
+        // a restore run again reads records of the previous one
+        assertTrue(VerificationLedger.load(ledgerFile).isVerified(file, "hash1"));
+    }
+
+    @Test
+    public void testChangedFileIsNotVerified() throws Exception {
+        final VerificationLedger ledger = VerificationLedger.load(ledgerFile);
+        ledger.verified(file, "hash1");
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 1000));
+        assertFalse(ledger.isVerified(file, "hash1"));
+        assertFalse(VerificationLedger.load(ledgerFile).isVerified(file, "hash1"));
+
+        ledger.verified(file, "hash1");
+        assertTrue(ledger.isVerified(file, "hash1"));
+
+        final FileTime modified = Files.getLastModifiedTime(file);
+        Files.write(file, "more data".getBytes(StandardCharsets.UTF_8));
+        // same modification time, different size
+        Files.setLastModifiedTime(file, modified);
+        assertFalse(ledger.isVerified(file, "hash1"));
+
+        Files.delete(file);
+        assertFalse(ledger.isVerified(file, "hash1"));
+    }
+
+    @Test
+    public void testLastRecordWins() {
+        final VerificationLedger ledger = VerificationLedger.load(ledgerFile);
+        ledger.verified(file, "hash1");
+        ledger.verified(file, "hash2");
+
+        final VerificationLedger loaded = VerificationLedger.load(ledgerFile);
+        assertFalse(loaded.isVerified(file, "hash1"));
+        assertTrue(loaded.isVerified(file, "hash2"));
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        VerificationLedger.load(ledgerFile).verified(file, "hash1");
+
+        // a restore was interrupted while it was writing a record
+        Files.write(ledgerFile, "12\tnot-a-time".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertTrue(VerificationLedger.load(ledgerFile).isVerified(file, "hash1"));
+    }
+
+    @Test
+    public void testRestoreWithoutDownloadDirectoryIsNotRecorded() {
+        final VerificationLedger ledger = VerificationLedger.forRequest(new RestoreOperationRequest());
+
+        ledger.verified(file, "hash1");
+
+        assertFalse(ledger.isVerified(file, "hash1"));
+        assertFalse(ledger.isVerified(file, null));
+    }
+}
@@ -1,17 +1,39 @@
 package com.instaclustr.esop.gcp;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
 
 import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageBatchResult;
 import com.google.cloud.storage.StorageException;
+import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import com.instaclustr.esop.gcp.GCPModule.GoogleStorageFactory;
@@ -20,13 +42,35 @@ import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.backup.BackupCommitLogsOperationRequest;
 import com.instaclustr.esop.impl.backup.BackupOperationRequest;
 import com.instaclustr.esop.impl.backup.Backuper;
+import com.instaclustr.esop.impl.backup.BatchFreshener;
+import com.instaclustr.threading.Executors.FixedTasksExecutorSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static com.google.cloud.storage.Storage.PredefinedAcl.BUCKET_OWNER_FULL_CONTROL;
+import static com.instaclustr.esop.impl.ManifestEntry.Type.MANIFEST_FILE;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class GCPBackuper extends Backuper {
 
+    private static final Logger logger = LoggerFactory.getLogger(GCPBackuper.class);
+
+    private static final String DATE_TIME_METADATA_KEY = "LastFreshened";
+
+    // Google Cloud Storage accepts at most 100 calls in one batch request, 0 turns batch refreshing off
+    // it is off by default as a batch does not reset creation time of an object, which Age lifecycle rules are based on
+    private static final int FRESHEN_BATCH_SIZE = Math.min(100, Integer.parseInt(System.getProperty("gcp.freshen.batch.size", "0")));
+
+    // files of this size in bytes or bigger are uploaded as composite objects, composite uploads are turned off when not set
+    private static final long COMPOSITE_UPLOAD_THRESHOLD = Long.parseLong(System.getProperty("gcp.composite.upload.threshold", "-1"));
+
+    // Google Cloud Storage composes at most 32 objects in one request
+    private static final int COMPOSITE_UPLOAD_COMPONENTS = Math.min(32, Integer.parseInt(System.getProperty("gcp.composite.upload.components", "8")));
+
     private final Storage storage;
 
+    private BatchFreshener batchFreshener;
+
     @AssistedInject
     public GCPBackuper(final GoogleStorageFactory storageFactory,
                        @Assisted final BackupOperationRequest backupOperationRequest) {
@@ -52,7 +96,31 @@ public class GCPBackuper extends Backuper {
     }
 
     @Override
-    public FreshenResult freshenRemoteObject(ManifestEntry manifestEntry, final RemoteObjectReference object) {
+    public void init(final List<ManifestEntry> manifestEntries) {
+        if (FRESHEN_BATCH_SIZE <= 0) {
+            return;
+        }
+
+        logger.warn("Objects are refreshed in batches of {} by updating their custom time, their creation time is not reset. "
+                        + "Lifecycle rules based on Age would delete objects which backups still reference, "
+                        + "they have to be based on daysSinceCustomTime instead.", FRESHEN_BATCH_SIZE);
+
+        batchFreshener = new GCPBatchFreshener();
+        batchFreshener.submit(manifestEntries.stream()
+                                  .filter(entry -> entry.type != MANIFEST_FILE)
+                                  .map(entry -> objectKeyToNodeAwareRemoteReference(entry.objectKey))
+                                  .collect(Collectors.toList()));
+    }
+
+    @Override
+    public FreshenResult freshenRemoteObject(ManifestEntry manifestEntry, final RemoteObjectReference object) throws Exception {
+        if (batchFreshener != null) {
+            final FreshenResult result = batchFreshener.await(object);
+            if (result != null) {
+                return result;
+            }
+        }
+
         final BlobId blobId = ((GCPRemoteObjectReference) object).blobId;
 
         try {
@@ -86,6 +154,12 @@ public class GCPBackuper extends Backuper {
                            final RemoteObjectReference objectReference) throws Exception {
         final BlobId blobId = ((GCPRemoteObjectReference) objectReference).blobId;
 
+        // Composite upload reads the file directly so we can do that only when the stream does not need to be throttled.
+        if (request.bandwidth == null && CompositeUploader.isApplicable(manifestEntry, COMPOSITE_UPLOAD_THRESHOLD, COMPOSITE_UPLOAD_COMPONENTS)) {
+            new CompositeUploader(storage, blobId, COMPOSITE_UPLOAD_COMPONENTS).upload(manifestEntry.localFile);
+            return;
+        }
+
         try (final WriteChannel outputChannel = storage.writer(BlobInfo.newBuilder(blobId).build(), Storage.BlobWriteOption.predefinedAcl(BUCKET_OWNER_FULL_CONTROL));
             final ReadableByteChannel inputChannel = Channels.newChannel(localFileStream)) {
             ByteStreams.copy(inputChannel, outputChannel);
@@ -98,7 +172,231 @@ public class GCPBackuper extends Backuper {
         storage.create(BlobInfo.newBuilder(blobId).build(), text.getBytes(), Storage.BlobTargetOption.predefinedAcl(BUCKET_OWNER_FULL_CONTROL));
     }
 
+    @Override
+    public Optional<VersionedText> readNodeAwareText(final Path objectKey) {
+        final Blob blob = storage.get(((GCPRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey)).blobId);
+        // content is read from the generation of blob which was got, so it matches the version
+        return blob == null ? Optional.empty() : Optional.of(new VersionedText(new String(blob.getContent(), UTF_8), Long.toString(blob.getGeneration())));
+    }
+
+    @Override
+    public boolean writeNodeAwareText(final Path objectKey, final String text, final String version) {
+        final BlobId blobId = ((GCPRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey)).blobId;
+
+        try {
+            if (version == null) {
+                storage.create(BlobInfo.newBuilder(blobId).build(),
+                               text.getBytes(UTF_8),
+                               Storage.BlobTargetOption.doesNotExist(),
+                               Storage.BlobTargetOption.predefinedAcl(BUCKET_OWNER_FULL_CONTROL));
+            } else {
+                storage.create(BlobInfo.newBuilder(BlobId.of(blobId.getBucket(), blobId.getName(), Long.parseLong(version))).build(),
+                               text.getBytes(UTF_8),
+                               Storage.BlobTargetOption.generationMatch(),
+                               Storage.BlobTargetOption.predefinedAcl(BUCKET_OWNER_FULL_CONTROL));
+            }
+            return true;
+        } catch (final StorageException ex) {
+            // 412 when a blob was changed or created meanwhile
+            if (ex.getCode() == 412) {
+                return false;
+            }
+            throw ex;
+        }
+    }
+
     @Override
     public void cleanup() {
+        if (batchFreshener != null) {
+            batchFreshener.close();
+        }
+    }
+
+    /**
+     * Uploads ranges of a file as temporary component objects in parallel and composes them into the target object.
+     * CRC32C of the composed object is verified against the one of the local file before the components are deleted.
+     */
+    public static class CompositeUploader {
+
+        private static final String COMPONENT_SUFFIX = ".esop-component-";
+
+        private static final int BUFFER_SIZE = 1024 * 1024;
+
+        private final Storage storage;
+        private final BlobId target;
+        private final int components;
+
+        public CompositeUploader(final Storage storage, final BlobId target, final int components) {
+            this.storage = storage;
+            this.target = target;
+            this.components = components;
+        }
+
+        public static boolean isApplicable(final ManifestEntry manifestEntry, final long threshold, final int components) {
+            return threshold >= 0
+                && components > 1
+                && manifestEntry != null
+                && manifestEntry.localFile != null
+                && manifestEntry.size >= threshold
+                && manifestEntry.size >= components
+                && Files.isRegularFile(manifestEntry.localFile);
+        }
+
+        public void upload(final Path localFile) throws Exception {
+            final long size = Files.size(localFile);
+            final long componentSize = (size + components - 1) / components;
+
+            final List<BlobId> componentIds = new ArrayList<>();
+
+            for (long position = 0; position < size; position += componentSize) {
+                componentIds.add(BlobId.of(target.getBucket(), target.getName() + COMPONENT_SUFFIX + componentIds.size()));
+            }
+
+            logger.debug("Uploading {} as {} components", target.getName(), componentIds.size());
+
+            // one more thread to compute checksum of the whole file while components are uploaded
+            final ListeningExecutorService executorService = new FixedTasksExecutorSupplier().get(componentIds.size() + 1);
+
+            try (final FileChannel channel = FileChannel.open(localFile, StandardOpenOption.READ)) {
+                final ListenableFuture<String> localChecksum = executorService.submit(() -> crc32c(channel, size));
+
+                final List<ListenableFuture<Void>> futures = new ArrayList<>();
+
+                for (int i = 0; i < componentIds.size(); i++) {
+                    final BlobId componentId = componentIds.get(i);
+                    final long position = i * componentSize;
+                    final long length = Math.min(componentSize, size - position);
+
+                    futures.add(executorService.submit(() -> {
+                        uploadComponent(channel, componentId, position, length);
+                        return null;
+                    }));
+                }
+
+                Futures.allAsList(futures).get();
+
+                final Blob composed = storage.compose(Storage.ComposeRequest.newBuilder()
+                                                          .addSource(componentIds.stream().map(BlobId::getName).collect(Collectors.toList()))
+                                                          .setTarget(BlobInfo.newBuilder(target).build())
+                                                          .setTargetOptions(Storage.BlobTargetOption.predefinedAcl(BUCKET_OWNER_FULL_CONTROL))
+                                                          .build());
+
+                if (!localChecksum.get().equals(composed.getCrc32c())) {
+                    storage.delete(target);
+                    throw new IllegalStateException(String.format("CRC32C of composed object %s (%s) differs from the one of local file %s (%s)",
+                                                                  target.getName(), composed.getCrc32c(), localFile, localChecksum.get()));
+                }
+            } finally {
+                executorService.shutdownNow();
+                deleteComponents(componentIds);
+            }
+        }
+
+        private void uploadComponent(final FileChannel channel, final BlobId componentId, final long position, final long length) throws Exception {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, length));
+
+            try (final WriteChannel outputChannel = storage.writer(BlobInfo.newBuilder(componentId).build())) {
+                long written = 0;
+
+                while (written < length) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), length - written));
+
+                    final int read = channel.read(buffer, position + written);
+
+                    if (read < 0) {
+                        throw new IllegalStateException(String.format("Unexpected end of file while uploading %s", componentId.getName()));
+                    }
+
+                    buffer.flip();
+
+                    while (buffer.hasRemaining()) {
+                        outputChannel.write(buffer);
+                    }
+
+                    written += read;
+                }
+            }
+        }
+
+        private void deleteComponents(final List<BlobId> componentIds) {
+            try {
+                storage.delete(componentIds);
+            } catch (final Exception ex) {
+                logger.warn("Unable to delete components of {}: {}", target.getName(), ex.getMessage());
+            }
+        }
+
+        // in the same format Google Cloud Storage returns it, base64 of big-endian bytes
+        private static String crc32c(final FileChannel channel, final long size) throws Exception {
+            final CRC32C crc32c = new CRC32C();
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+            long position = 0;
+
+            while (position < size) {
+                buffer.clear();
+                final int read = channel.read(buffer, position);
+
+                if (read < 0) {
+                    break;
+                }
+
+                buffer.flip();
+                crc32c.update(buffer);
+                position += read;
+            }
+
+            return BaseEncoding.base64().encode(Ints.toByteArray((int) crc32c.getValue()));
+        }
+    }
+
+    /**
+     * Refreshes objects by {@link StorageBatch}. Rewriting an object is not possible in a batch so refreshing
+     * updates {@value #DATE_TIME_METADATA_KEY} metadata and custom time of an object instead.
+     */
+    private class GCPBatchFreshener extends BatchFreshener {
+
+        public GCPBatchFreshener() {
+            super(FRESHEN_BATCH_SIZE, request.concurrentConnections);
+        }
+
+        @Override
+        protected Map<String, FreshenResult> freshen(final List<RemoteObjectReference> batch) {
+            final OffsetDateTime now = OffsetDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
+            final StorageBatch storageBatch = storage.batch();
+            final Map<String, StorageBatchResult<Blob>> batchResults = new HashMap<>();
+
+            for (final RemoteObjectReference reference : batch) {
+                final BlobId blobId = ((GCPRemoteObjectReference) reference).blobId;
+
+                if (request.skipRefreshing) {
+                    batchResults.put(reference.canonicalPath, storageBatch.get(blobId));
+                } else {
+                    batchResults.put(reference.canonicalPath, storageBatch.update(BlobInfo.newBuilder(blobId)
+                                                                                          .setMetadata(Collections.singletonMap(DATE_TIME_METADATA_KEY, now.toString()))
+                                                                                          .setCustomTimeOffsetDateTime(now)
+                                                                                          .build()));
+                }
+            }
+
+            storageBatch.submit();
+
+            final Map<String, FreshenResult> results = new HashMap<>();
+
+            batchResults.forEach((key, batchResult) -> {
+                try {
+                    final Blob blob = batchResult.get();
+                    results.put(key, blob == null ? FreshenResult.UPLOAD_REQUIRED : FreshenResult.FRESHENED);
+                } catch (final StorageException ex) {
+                    // other errors are left without a result so such object is refreshed on its own
+                    if (ex.getCode() == 404) {
+                        results.put(key, FreshenResult.UPLOAD_REQUIRED);
+                    }
+                }
+            });
+
+            return results;
+        }
     }
 }
@@ -1,5 +1,6 @@
 package com.instaclustr.esop.gcp;
 
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.channels.Channels;
 import java.nio.file.Files;
@@ -7,11 +8,13 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
-import java.util.stream.StreamSupport;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.gax.paging.Page;
@@ -21,30 +24,39 @@ import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.Storage.BlobListOption;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageBatchResult;
+import com.google.cloud.storage.StorageException;
 import com.google.common.io.CharStreams;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import com.instaclustr.esop.gcp.GCPModule.GoogleStorageFactory;
+import com.instaclustr.esop.impl.LazyManifest;
 import com.instaclustr.esop.impl.Manifest;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.StorageLocation;
 import com.instaclustr.esop.impl.list.ListOperationRequest;
+import com.instaclustr.esop.impl.list.ManifestCacheSynchronizer;
+import com.instaclustr.esop.impl.remove.BatchDeleter;
 import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
 import com.instaclustr.esop.impl.restore.RestoreCommitLogsOperationRequest;
 import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
 import com.instaclustr.esop.impl.restore.Restorer;
 import com.instaclustr.esop.local.LocalFileRestorer;
-import com.instaclustr.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.google.cloud.storage.Storage.PredefinedAcl.BUCKET_OWNER_FULL_CONTROL;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toList;
 
 public class GCPRestorer extends Restorer {
     private static final Logger logger = LoggerFactory.getLogger(GCPRestorer.class);
 
+    private static final int DELETE_BATCH_SIZE = Math.min(100, Integer.parseInt(System.getProperty("gcp.delete.batch.size", "100")));
+
     private final Storage storage;
 
     @AssistedInject
@@ -115,6 +127,19 @@ public class GCPRestorer extends Restorer {
         }
     }
 
+    @Override
+    public boolean supportsRangedDownload(final ManifestEntry manifestEntry, final RemoteObjectReference objectReference) {
+        return true;
+    }
+
+    @Override
+    public InputStream downloadRange(final RemoteObjectReference objectReference, final long offset, final long length) throws Exception {
+        final ReadChannel inputChannel = storage.reader(((GCPRemoteObjectReference) objectReference).blobId);
+        inputChannel.seek(offset);
+        inputChannel.limit(offset + length);
+        return Channels.newInputStream(inputChannel);
+    }
+
     @Override
     public String downloadTopology(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
 
@@ -133,10 +158,10 @@ public class GCPRestorer extends Restorer {
     }
 
     @Override
-    public String downloadManifest(final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
+    public void downloadManifest(final Path localPath, final Path remotePrefix, final Predicate<String> keyFilter) throws Exception {
         final String blobItemPath = getManifest(nodeList(request.storageLocation.bucket, remotePrefix), keyFilter);
         final String fileName = blobItemPath.split("/")[blobItemPath.split("/").length - 1];
-        return downloadFileToString(objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(fileName)));
+        downloadFile(localPath, objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(fileName)));
     }
 
     @Override
@@ -179,13 +204,6 @@ public class GCPRestorer extends Restorer {
         return blobItems.get(0).getName();
     }
 
-    private List<String> getBlobPaths(final Page<Blob> blobs, final Predicate<String> keyFilter) {
-        return StreamSupport.stream(blobs.iterateAll().spliterator(), false)
-                            .map(BlobInfo::getName)
-                            .filter(keyFilter)
-                            .collect(toList());
-    }
-
     @Override
     public void consumeFiles(final RemoteObjectReference prefix, final Consumer<RemoteObjectReference> consumer) {
         final GCPRemoteObjectReference gcpRemoteObjectReference = (GCPRemoteObjectReference) prefix;
@@ -193,7 +211,14 @@ public class GCPRestorer extends Restorer {
         final String bucket = gcpRemoteObjectReference.blobId.getBucket();
         final String pathPrefix = gcpRemoteObjectReference.getObjectKey().toString();
 
-        nodeList(bucket, Paths.get(pathPrefix)).iterateAll().iterator().forEachRemaining(blob -> {
+        // listed recursively by a plain prefix, which does not need to be a directory, as other providers do
+        final String resolvedPrefix = String.format("%s/%s/%s/%s",
+                                                    request.storageLocation.clusterId,
+                                                    request.storageLocation.datacenterId,
+                                                    request.storageLocation.nodeId,
+                                                    pathPrefix);
+
+        storage.list(bucket, BlobListOption.prefix(resolvedPrefix)).iterateAll().iterator().forEachRemaining(blob -> {
             if (!blob.getName().endsWith("/")) {
                 consumer.accept(objectKeyToNodeAwareRemoteReference(removeNodePrefix(blob)));
             }
@@ -201,29 +226,89 @@ public class GCPRestorer extends Restorer {
     }
 
     public void downloadManifestsToDirectory(Path downloadDir) throws Exception {
-        FileUtils.createDirectory(downloadDir);
-        FileUtils.cleanDirectory(downloadDir.toFile());
-        final List<String> manifestKeys = getBlobPaths(storage.list(storageLocation.bucket),
-                s -> s.contains("manifests"));
-        for (String o: manifestKeys) {
-            Path manifestPath = Paths.get(o);
-            Path destination = downloadDir.resolve(manifestPath);
-
-            downloadFile(destination, objectKeyToRemoteReference(manifestPath));
+        new ManifestCacheSynchronizer(request.concurrentConnections).sync(downloadDir.resolve(resolveNodeAwareRemotePath(Paths.get("manifests"))),
+                                                                         getRemoteManifests(),
+                                                                         (manifest, localFile) -> downloadFile(localFile, objectKeyToNodeAwareRemoteReference(Paths.get("manifests", manifest))));
+    }
+
+    // file names of manifests of a node to their sizes
+    private Map<String, Long> getRemoteManifests() {
+        final Map<String, Long> manifests = new HashMap<>();
+
+        for (final Blob blob : nodeList(request.storageLocation.bucket, Paths.get("manifests")).iterateAll()) {
+            if (!blob.getName().endsWith("/")) {
+                manifests.put(Paths.get(blob.getName()).getFileName().toString(), blob.getSize());
+            }
         }
+
+        return manifests;
     }
 
     @Override
     public List<Manifest> listManifests() throws Exception {
-        //If skipDownload flag is not set, download manifests
-        if (this.request instanceof ListOperationRequest) {
-            if (!((ListOperationRequest) this.request).skipDownload) {
-                StorageLocation location = this.localFileRestorer.getStorageLocation();
-                Path downloadDirectory = location.fileBackupDirectory.resolve(this.localFileRestorer.getStorageLocation().bucket);
-                downloadManifestsToDirectory(downloadDirectory);
+        synchronizeManifests();
+        return localFileRestorer.listManifests();
+    }
+
+    @Override
+    public List<LazyManifest> listLazyManifests() throws Exception {
+        synchronizeManifests();
+        return localFileRestorer.listLazyManifests();
+    }
+
+    @Override
+    public List<String> listManifestNames() throws Exception {
+        // a listing which skips download works just with cached manifests
+        if (skipsDownload()) {
+            return localFileRestorer.listManifestNames();
+        }
+        return new ArrayList<>(getRemoteManifests().keySet());
+    }
+
+    private boolean skipsDownload() {
+        return this.request instanceof ListOperationRequest && ((ListOperationRequest) this.request).skipDownload;
+    }
+
+    // manifests are synchronized with a local cache unless a listing is told to skip it, a removal always synchronizes them
+    private void synchronizeManifests() throws Exception {
+        if ((this.request instanceof ListOperationRequest || this.request instanceof RemoveBackupRequest) && !skipsDownload()) {
+            StorageLocation location = this.localFileRestorer.getStorageLocation();
+            Path downloadDirectory = location.fileBackupDirectory.resolve(this.localFileRestorer.getStorageLocation().bucket);
+            downloadManifestsToDirectory(downloadDirectory);
+        }
+    }
+
+    @Override
+    public Optional<VersionedText> readNodeAwareText(final Path objectKey) {
+        final Blob blob = storage.get(((GCPRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey)).blobId);
+        // content is read from the generation of blob which was got, so it matches the version
+        return blob == null ? Optional.empty() : Optional.of(new VersionedText(new String(blob.getContent(), UTF_8), Long.toString(blob.getGeneration())));
+    }
+
+    @Override
+    public boolean writeNodeAwareText(final Path objectKey, final String text, final String version) {
+        final BlobId blobId = ((GCPRemoteObjectReference) objectKeyToNodeAwareRemoteReference(objectKey)).blobId;
+
+        try {
+            if (version == null) {
+                storage.create(BlobInfo.newBuilder(blobId).build(),
+                               text.getBytes(UTF_8),
+                               Storage.BlobTargetOption.doesNotExist(),
+                               Storage.BlobTargetOption.predefinedAcl(BUCKET_OWNER_FULL_CONTROL));
+            } else {
+                storage.create(BlobInfo.newBuilder(BlobId.of(blobId.getBucket(), blobId.getName(), Long.parseLong(version))).build(),
+                               text.getBytes(UTF_8),
+                               Storage.BlobTargetOption.generationMatch(),
+                               Storage.BlobTargetOption.predefinedAcl(BUCKET_OWNER_FULL_CONTROL));
+            }
+            return true;
+        } catch (final StorageException ex) {
+            // 412 when a blob was changed or created meanwhile
+            if (ex.getCode() == 412) {
+                return false;
             }
+            throw ex;
         }
-        return localFileRestorer.listManifests();
     }
 
     @Override
@@ -242,12 +327,10 @@ public class GCPRestorer extends Restorer {
     public void delete(final Manifest.ManifestReporter.ManifestReport backupToDelete, final RemoveBackupRequest request) throws Exception {
         logger.info("Deleting backup {}", backupToDelete.name);
         if (backupToDelete.reclaimableSpace > 0 && !backupToDelete.getRemovableEntries().isEmpty()) {
-            for (final String removableEntry : backupToDelete.getRemovableEntries()) {
-                if (!request.dry) {
-                    deleteNodeAwareKey(Paths.get(removableEntry));
-                } else {
-                    logger.info("Dry: " + removableEntry);
-                }
+            if (!request.dry) {
+                deleteNodeAwareKeys(backupToDelete.getRemovableEntries().stream().map(Paths::get).collect(toList()));
+            } else {
+                backupToDelete.getRemovableEntries().forEach(removableEntry -> logger.info("Dry: " + removableEntry));
             }
         }
 
@@ -263,6 +346,26 @@ public class GCPRestorer extends Restorer {
 
     }
 
+    @Override
+    public void deleteNodeAwareKeys(final List<Path> objectKeys) throws Exception {
+        new GCPBatchDeleter().delete(objectKeys.stream().map(this::resolveNodeAwareRemotePath).collect(toList()));
+    }
+
+    @Override
+    public void visitNodeAwareObjects(final Path prefix, final ObjectVisitor visitor) throws Exception {
+        final String nodeRoot = resolveNodeAwareRemoteRoot() + "/";
+
+        // without current directory option, so objects are listed recursively
+        for (final Blob blob : storage.list(request.storageLocation.bucket, BlobListOption.prefix(resolveNodeAwareRemotePath(prefix) + "/")).iterateAll()) {
+            if (!blob.getName().endsWith("/") && blob.getName().startsWith(nodeRoot)) {
+                // an object of unknown age is taken as a new one
+                visitor.visit(Paths.get(blob.getName().substring(nodeRoot.length())),
+                              blob.getSize(),
+                              blob.getUpdateTime() == null ? System.currentTimeMillis() : blob.getUpdateTime());
+            }
+        }
+    }
+
     @Override
     public List<StorageLocation> listNodes() throws Exception {
         return localFileRestorer.listNodes();
@@ -283,6 +386,41 @@ public class GCPRestorer extends Restorer {
         return localFileRestorer.listDcs();
     }
 
+    /**
+     * Deletes objects by {@link StorageBatch}, a batch of Google Cloud Storage accepts at most 100 requests.
+     */
+    private class GCPBatchDeleter extends BatchDeleter {
+
+        public GCPBatchDeleter() {
+            super(DELETE_BATCH_SIZE, request.concurrentConnections);
+        }
+
+        @Override
+        protected Map<String, String> deleteBatch(final List<String> batch) {
+            final StorageBatch storageBatch = storage.batch();
+            final Map<String, StorageBatchResult<Boolean>> batchResults = new HashMap<>();
+
+            for (final String key : batch) {
+                batchResults.put(key, storageBatch.delete(BlobId.of(request.storageLocation.bucket, key)));
+            }
+
+            storageBatch.submit();
+
+            final Map<String, String> failures = new HashMap<>();
+
+            batchResults.forEach((key, batchResult) -> {
+                try {
+                    // false when an object does not exist
+                    batchResult.get();
+                } catch (final StorageException ex) {
+                    failures.put(key, ex.getMessage());
+                }
+            });
+
+            return failures;
+        }
+    }
+
     private Path removeNodePrefix(final Blob blob) {
         final String pattern = String.format("%s/%s/%s/",
                                              request.storageLocation.clusterId,
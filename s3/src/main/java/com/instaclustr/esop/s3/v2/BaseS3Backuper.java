@@ -12,6 +12,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import com.instaclustr.esop.impl.BucketService;
@@ -26,6 +27,7 @@ import com.instaclustr.esop.s3.S3RemoteObjectReference;
 import com.instaclustr.esop.s3.v2.S3ClientsFactory.S3Clients;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.waiters.WaiterOverrideConfiguration;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -39,11 +41,14 @@ import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectAttributesRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectAttributesResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectTaggingRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.ListMultipartUploadsRequest;
 import software.amazon.awssdk.services.s3.model.ListMultipartUploadsResponse;
 import software.amazon.awssdk.services.s3.model.MultipartUpload;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
 import software.amazon.awssdk.services.s3.model.ObjectAttributes;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
@@ -63,6 +68,9 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 public class BaseS3Backuper extends Backuper {
     private static final Logger logger = LoggerFactory.getLogger(BaseS3Backuper.class);
 
+    // tag holding time an object was refreshed last time in milliseconds, a refresh does not change its last modification
+    public static final String REFRESHED_TAG = "refreshed";
+
     public final S3Clients s3Clients;
     public final BucketService s3BucketService;
     public final MultipartAbortionService multipartAbortionService;
@@ -128,6 +136,8 @@ public class BaseS3Backuper extends Backuper {
             if (!tags.contains(kmsKeyTag)) {
                 return FreshenResult.UPLOAD_REQUIRED;
             }
+            // remote object stays encrypted by the key, record it as if it was just uploaded
+            manifestEntry.kmsKeyId = kmsKey;
             // However, if we have not set kmsKey as we do not want to encrypt
             // but remote tag contains kmsKey, then we need to basically re-upload
             // a file, but it will not be encrypted.
@@ -137,6 +147,22 @@ public class BaseS3Backuper extends Backuper {
             }
         }
 
+        // garbage collection reads this tag, so it does not delete an object a running backup has just reused
+        final List<Tag> refreshedTags = tags.stream().filter(t -> !t.key().equals(REFRESHED_TAG)).collect(Collectors.toList());
+        refreshedTags.add(Tag.builder().key(REFRESHED_TAG).value(Long.toString(System.currentTimeMillis())).build());
+
+        try {
+            s3Clients.getNonEncryptingClient()
+                     .putObjectTagging(PutObjectTaggingRequest.builder()
+                                                              .bucket(request.storageLocation.bucket)
+                                                              .key(object.canonicalPath)
+                                                              .tagging(Tagging.builder().tagSet(refreshedTags).build())
+                                                              .build());
+        }
+        catch (S3Exception ex) {
+            return FreshenResult.UPLOAD_REQUIRED;
+        }
+
         return FreshenResult.FRESHENED;
     }
 
@@ -189,6 +215,45 @@ public class BaseS3Backuper extends Backuper {
                             RequestBody.fromBytes(bytes));
     }
 
+    @Override
+    public Optional<VersionedText> readNodeAwareText(final Path objectKey) {
+        try {
+            final ResponseBytes<GetObjectResponse> object = s3Clients.getNonEncryptingClient()
+                                                                     .getObjectAsBytes(GetObjectRequest.builder()
+                                                                                                       .bucket(request.storageLocation.bucket)
+                                                                                                       .key(resolveNodeAwareRemotePath(objectKey))
+                                                                                                       .build());
+
+            return Optional.of(new VersionedText(object.asUtf8String(), object.response().eTag()));
+        } catch (final NoSuchKeyException ex) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean writeNodeAwareText(final Path objectKey, final String text, final String version) {
+        final PutObjectRequest.Builder putObjectRequest = PutObjectRequest.builder()
+                                                                          .bucket(request.storageLocation.bucket)
+                                                                          .key(resolveNodeAwareRemotePath(objectKey));
+
+        if (version == null) {
+            putObjectRequest.ifNoneMatch("*");
+        } else {
+            putObjectRequest.ifMatch(version);
+        }
+
+        try {
+            s3Clients.getNonEncryptingClient().putObject(putObjectRequest.build(), RequestBody.fromString(text, UTF_8));
+            return true;
+        } catch (final S3Exception ex) {
+            // 412 when an object was changed or created meanwhile, 409 when it is being written concurrently
+            if (ex.statusCode() == 412 || ex.statusCode() == 409) {
+                return false;
+            }
+            throw ex;
+        }
+    }
+
     @Override
     public void uploadEncryptedText(String plainText, RemoteObjectReference objectReference) throws Exception {
         if (!s3Clients.getEncryptingClient().isPresent()) {
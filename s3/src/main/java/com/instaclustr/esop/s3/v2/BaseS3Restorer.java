@@ -1,24 +1,31 @@
 package com.instaclustr.esop.s3.v2;
 
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import com.google.common.io.CharStreams;
 import com.instaclustr.esop.impl.BucketService;
+import com.instaclustr.esop.impl.LazyManifest;
 import com.instaclustr.esop.impl.Manifest;
 import com.instaclustr.esop.impl.ManifestEntry;
 import com.instaclustr.esop.impl.RemoteObjectReference;
 import com.instaclustr.esop.impl.StorageLocation;
 import com.instaclustr.esop.impl.list.ListOperationRequest;
+import com.instaclustr.esop.impl.list.ManifestCacheSynchronizer;
+import com.instaclustr.esop.impl.remove.BatchDeleter;
 import com.instaclustr.esop.impl.remove.RemoveBackupRequest;
 import com.instaclustr.esop.impl.restore.RestoreCommitLogsOperationRequest;
 import com.instaclustr.esop.impl.restore.RestoreOperationRequest;
@@ -28,23 +35,29 @@ import com.instaclustr.esop.s3.v2.S3ClientsFactory.S3Clients;
 import com.instaclustr.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectTaggingRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectTaggingResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
 import software.amazon.awssdk.services.s3.model.Tag;
 
 import static java.lang.String.format;
-import static java.util.stream.Collectors.joining;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
 
@@ -52,8 +65,16 @@ public class BaseS3Restorer extends Restorer
 {
     private static final Logger logger = LoggerFactory.getLogger(BaseS3Restorer.class);
 
+    // S3 does not accept more keys in one DeleteObjects request
+    private static final int MAX_DELETE_BATCH_SIZE = 1000;
+
+    private static final int DELETE_BATCH_SIZE = Math.min(MAX_DELETE_BATCH_SIZE, Integer.parseInt(System.getProperty("s3.delete.batch.size", Integer.toString(MAX_DELETE_BATCH_SIZE))));
+
     private Map<String, S3Client> kmsSpecificS3Clients = new ConcurrentHashMap<>();
 
+    // kms key of the whole backup for manifests not recording it per entry, resolved on the first download
+    private Optional<String> backupKmsKey;
+
     public final S3Clients s3Clients;
     public BucketService s3BucketService;
 
@@ -141,38 +162,93 @@ public class BaseS3Restorer extends Restorer
     public void downloadFile(Path localPath, ManifestEntry manifestEntry, RemoteObjectReference objectReference) throws Exception {
 
         try {
-            GetObjectTaggingResponse taggingResponse = s3Clients.getNonEncryptingClient()
-                                                                .getObjectTagging(GetObjectTaggingRequest.builder()
-                                                                                                         .bucket(request.storageLocation.bucket)
-                                                                                                         .key(objectReference.canonicalPath)
-                                                                                                         .build());
-
-            String kmsKey = taggingResponse.tagSet()
-                                           .stream()
-                                           .filter(t -> t.key().equals("kmsKey"))
-                                           .findFirst()
-                                           .map(Tag::value)
-                                           .orElse(null);
-
             // We need to resolve S3 manager which uses kms key which remote file is encrypted with,
             // so we have the right one for decryption.
-            // It is expected that every file in a logical backup will be encrypted with same KMS key
-            // however we need to resolve it per manifest entry anyway
-            S3Client s3Client = resolveS3Client(kmsKey);
-
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                                                                .bucket(request.storageLocation.bucket)
-                                                                .key(objectReference.canonicalPath)
-                                                                .build();
+            String kmsKey = resolveKmsKey(manifestEntry, objectReference);
 
             FileUtils.createDirectory(localPath.getParent());
 
-            Files.copy(s3Client.getObject(getObjectRequest), localPath, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                downloadFile(resolveS3Client(kmsKey), localPath, objectReference);
+            } catch (Exception ex) {
+                // the key resolved from manifest or for the whole backup does not fit this object,
+                // ask for the key the object is really encrypted with
+                String remoteKmsKey = resolveKmsKey(objectReference);
+
+                if (Objects.equals(kmsKey, remoteKmsKey)) {
+                    throw ex;
+                }
+
+                logger.info("Object {} is encrypted by other key than expected, retrying with the key from its tag", objectReference.canonicalPath);
+                downloadFile(resolveS3Client(remoteKmsKey), localPath, objectReference);
+            }
         } catch (Throwable t) {
             t.printStackTrace();
         }
     }
 
+    private void downloadFile(S3Client s3Client, Path localPath, RemoteObjectReference objectReference) throws Exception {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                                                            .bucket(request.storageLocation.bucket)
+                                                            .key(objectReference.canonicalPath)
+                                                            .build();
+
+        Files.copy(s3Client.getObject(getObjectRequest), localPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public boolean supportsRangedDownload(ManifestEntry manifestEntry, RemoteObjectReference objectReference) {
+        // encrypted objects have to be decrypted as a whole
+        return resolveKmsKey(manifestEntry, objectReference) == null;
+    }
+
+    /**
+     * Resolves the key an object is encrypted with without asking for its tags when possible. Manifests record the key
+     * of every encrypted entry. Manifests taken before that do not, but every file in a logical backup is encrypted
+     * with same KMS key, so tags of the first entry are read only once and the result is used for all other entries.
+     * Commit logs might be encrypted with different keys, so their tags are always read.
+     */
+    private String resolveKmsKey(ManifestEntry manifestEntry, RemoteObjectReference objectReference) {
+        if (manifestEntry == null || manifestEntry.type == ManifestEntry.Type.COMMIT_LOG) {
+            return resolveKmsKey(objectReference);
+        }
+
+        if (manifestEntry.kmsKeyId != null) {
+            return manifestEntry.kmsKeyId;
+        }
+
+        synchronized (this) {
+            if (backupKmsKey == null) {
+                backupKmsKey = Optional.ofNullable(resolveKmsKey(objectReference));
+            }
+            return backupKmsKey.orElse(null);
+        }
+    }
+
+    @Override
+    public InputStream downloadRange(RemoteObjectReference objectReference, long offset, long length) {
+        return s3Clients.getNonEncryptingClient().getObject(GetObjectRequest.builder()
+                                                                            .bucket(request.storageLocation.bucket)
+                                                                            .key(objectReference.canonicalPath)
+                                                                            .range(format("bytes=%s-%s", offset, offset + length - 1))
+                                                                            .build());
+    }
+
+    private String resolveKmsKey(RemoteObjectReference objectReference) {
+        GetObjectTaggingResponse taggingResponse = s3Clients.getNonEncryptingClient()
+                                                            .getObjectTagging(GetObjectTaggingRequest.builder()
+                                                                                                     .bucket(request.storageLocation.bucket)
+                                                                                                     .key(objectReference.canonicalPath)
+                                                                                                     .build());
+
+        return taggingResponse.tagSet()
+                              .stream()
+                              .filter(t -> t.key().equals("kmsKey"))
+                              .findFirst()
+                              .map(Tag::value)
+                              .orElse(null);
+    }
+
     @Override
     public String downloadTopology(Path remotePrefix, Predicate<String> keyFilter) throws Exception {
         S3Object s3Object = getBlobItemPath(remotePrefix.toString(), keyFilter);
@@ -180,10 +256,11 @@ public class BaseS3Restorer extends Restorer
     }
 
     @Override
-    public String downloadManifest(Path remotePrefix, Predicate<String> keyFilter) throws Exception {
+    public void downloadManifest(Path localPath, Path remotePrefix, Predicate<String> keyFilter) throws Exception {
         final S3Object manifestObject = getManifest(resolveNodeAwareRemotePath(remotePrefix), keyFilter);
         final String fileName = manifestObject.key().split("/")[manifestObject.key().split("/").length - 1];
-        return downloadFileToString(objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(fileName)), false);
+        FileUtils.createDirectory(localPath.getParent());
+        downloadFile(s3Clients.getNonEncryptingClient(), localPath, objectKeyToNodeAwareRemoteReference(remotePrefix.resolve(fileName)));
     }
 
     @Override
@@ -208,6 +285,9 @@ public class BaseS3Restorer extends Restorer
             listObjectsV2Response.contents().stream()
                                  .filter(o -> !o.key().endsWith("/"))
                                  .forEach(o -> consumer.accept(objectKeyToNodeAwareRemoteReference(bucketPath.relativize(Paths.get(o.key())))));
+            listObjectsV2Request = listObjectsV2Request.toBuilder()
+                                                       .continuationToken(listObjectsV2Response.nextContinuationToken())
+                                                       .build();
         } while (listObjectsV2Response.isTruncated());
     }
 
@@ -234,13 +314,7 @@ public class BaseS3Restorer extends Restorer
     public void delete(final Manifest.ManifestReporter.ManifestReport backupToDelete, final RemoveBackupRequest request) throws Exception {
         logger.info("Deleting backup {}", backupToDelete.name);
         if (backupToDelete.reclaimableSpace > 0 && !backupToDelete.getRemovableEntries().isEmpty()) {
-            //convert removable entries into S3 object keys
-            List<String> toRemove = backupToDelete.getRemovableEntries()
-                                                  .stream()
-                                                  .map(entry -> objectKeyToNodeAwareRemoteReference(Paths.get(entry)).canonicalPath)
-                                                  .collect(toList());
-
-            for (String remove : toRemove) {
+            for (String remove : backupToDelete.getRemovableEntries()) {
                 if (request.dry) {
                     logger.info("Deletion of {} was executed in dry mode.", remove);
                 } else {
@@ -248,30 +322,8 @@ public class BaseS3Restorer extends Restorer
                 }
             }
 
-            // deletion by 100 items at most
-            List<List<String>> removalSets = splitList(toRemove, 100);
-            List<DeleteObjectsRequest> deletes = removalSets.stream()
-                                              .map(set -> set.stream()
-                                                             .map(entry -> ObjectIdentifier.builder().key(entry).build())
-                                                             .collect(toList()))
-                                              .map(list -> Delete.builder().objects(list).build())
-                                              .map(delete -> DeleteObjectsRequest.builder()
-                                                                                 .bucket(request.storageLocation.bucket)
-                                                                                 .delete(delete)
-                                                                                 .build())
-                                              .collect(toList());
-
-
-            if (!request.dry){
-                for (DeleteObjectsRequest delete : deletes) {
-                    DeleteObjectsResponse deleteObjectsResponse = s3Clients.getNonEncryptingClient().deleteObjects(delete);
-                    if (deleteObjectsResponse.hasErrors() && !deleteObjectsResponse.errors().isEmpty()) {
-                        throw new RuntimeException(deleteObjectsResponse.errors()
-                                                                        .stream()
-                                                                        .map(S3Error::toString)
-                                                                        .collect(joining(",")));
-                    }
-                }
+            if (!request.dry) {
+                deleteNodeAwareKeys(backupToDelete.getRemovableEntries().stream().map(Paths::get).collect(toList()));
                 logger.info("Deletion of files complete");
             }
         }
@@ -293,18 +345,130 @@ public class BaseS3Restorer extends Restorer
     }
 
     @Override
-    public List<Manifest> listManifests() throws Exception {
-        //If skipDownload flag is not set, download manifests
-        if (this.request instanceof ListOperationRequest) {
-            if (!((ListOperationRequest) this.request).skipDownload) {
-                StorageLocation location = this.localFileRestorer.getStorageLocation();
-                Path downloadDirectory = location.fileBackupDirectory.resolve(this.localFileRestorer.getStorageLocation().bucket);
-                downloadManifestsToDirectory(downloadDirectory);
+    public void deleteNodeAwareKeys(final List<Path> objectKeys) throws Exception {
+        new S3BatchDeleter().delete(objectKeys.stream().map(this::resolveNodeAwareRemotePath).collect(toList()));
+    }
+
+    @Override
+    public void visitNodeAwareObjects(final Path prefix, final ObjectVisitor visitor) throws Exception {
+        final String nodeRoot = resolveNodeAwareRemoteRoot() + "/";
+
+        ListObjectsV2Request listObjectsV2Request = ListObjectsV2Request.builder()
+                                                                        .bucket(request.storageLocation.bucket)
+                                                                        .prefix(resolveNodeAwareRemotePath(prefix) + "/")
+                                                                        .build();
+
+        ListObjectsV2Response listObjectsV2Response;
+
+        do {
+            listObjectsV2Response = s3Clients.getClient().listObjectsV2(listObjectsV2Request);
+
+            for (final S3Object object : listObjectsV2Response.contents()) {
+                if (!object.key().endsWith("/") && object.key().startsWith(nodeRoot)) {
+                    visitor.visit(Paths.get(object.key().substring(nodeRoot.length())), object.size(), object.lastModified().toEpochMilli());
+                }
             }
+
+            listObjectsV2Request = listObjectsV2Request.toBuilder()
+                                                       .continuationToken(listObjectsV2Response.nextContinuationToken())
+                                                       .build();
+        } while (listObjectsV2Response.isTruncated());
+    }
+
+    @Override
+    public long lastRefreshed(final Path objectKey, final long lastModified) {
+        final List<Tag> tags;
+
+        try {
+            tags = s3Clients.getNonEncryptingClient()
+                            .getObjectTagging(GetObjectTaggingRequest.builder()
+                                                                     .bucket(request.storageLocation.bucket)
+                                                                     .key(resolveNodeAwareRemotePath(objectKey))
+                                                                     .build()).tagSet();
+        } catch (final NoSuchKeyException ex) {
+            return lastModified;
         }
+
+        return tags.stream()
+                   .filter(t -> t.key().equals(BaseS3Backuper.REFRESHED_TAG))
+                   .findFirst()
+                   .map(t -> Math.max(lastModified, Long.parseLong(t.value())))
+                   .orElse(lastModified);
+    }
+
+    @Override
+    public List<Manifest> listManifests() throws Exception {
+        synchronizeManifests();
         return localFileRestorer.listManifests();
     }
 
+    @Override
+    public List<LazyManifest> listLazyManifests() throws Exception {
+        synchronizeManifests();
+        return localFileRestorer.listLazyManifests();
+    }
+
+    @Override
+    public List<String> listManifestNames() throws Exception {
+        // a listing which skips download works just with cached manifests
+        if (skipsDownload()) {
+            return localFileRestorer.listManifestNames();
+        }
+        return new ArrayList<>(getRemoteManifests().keySet());
+    }
+
+    private boolean skipsDownload() {
+        return this.request instanceof ListOperationRequest && ((ListOperationRequest) this.request).skipDownload;
+    }
+
+    // manifests are synchronized with a local cache unless a listing is told to skip it, a removal always synchronizes them
+    private void synchronizeManifests() throws Exception {
+        if ((this.request instanceof ListOperationRequest || this.request instanceof RemoveBackupRequest) && !skipsDownload()) {
+            StorageLocation location = this.localFileRestorer.getStorageLocation();
+            Path downloadDirectory = location.fileBackupDirectory.resolve(this.localFileRestorer.getStorageLocation().bucket);
+            downloadManifestsToDirectory(downloadDirectory);
+        }
+    }
+
+    @Override
+    public Optional<VersionedText> readNodeAwareText(final Path objectKey) {
+        try {
+            final ResponseBytes<GetObjectResponse> object = s3Clients.getNonEncryptingClient()
+                                                                     .getObjectAsBytes(GetObjectRequest.builder()
+                                                                                                       .bucket(request.storageLocation.bucket)
+                                                                                                       .key(resolveNodeAwareRemotePath(objectKey))
+                                                                                                       .build());
+
+            return Optional.of(new VersionedText(object.asUtf8String(), object.response().eTag()));
+        } catch (final NoSuchKeyException ex) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean writeNodeAwareText(final Path objectKey, final String text, final String version) {
+        final PutObjectRequest.Builder putObjectRequest = PutObjectRequest.builder()
+                                                                          .bucket(request.storageLocation.bucket)
+                                                                          .key(resolveNodeAwareRemotePath(objectKey));
+
+        if (version == null) {
+            putObjectRequest.ifNoneMatch("*");
+        } else {
+            putObjectRequest.ifMatch(version);
+        }
+
+        try {
+            s3Clients.getNonEncryptingClient().putObject(putObjectRequest.build(), RequestBody.fromString(text, UTF_8));
+            return true;
+        } catch (final S3Exception ex) {
+            // 412 when an object was changed or created meanwhile, 409 when it is being written concurrently
+            if (ex.statusCode() == 412 || ex.statusCode() == 409) {
+                return false;
+            }
+            throw ex;
+        }
+    }
+
     @Override
     public List<StorageLocation> listNodes() throws Exception {
         return localFileRestorer.listNodes();
@@ -341,6 +505,9 @@ public class BaseS3Restorer extends Restorer
                                  .filter(o -> !o.key().endsWith("/"))
                                  .filter(o -> keyFilter.test(o.key()))
                                  .collect(toCollection(() -> summaryList));
+            listObjectsV2Request = listObjectsV2Request.toBuilder()
+                                                       .continuationToken(listObjectsV2Response.nextContinuationToken())
+                                                       .build();
         } while (listObjectsV2Response.isTruncated());
 
         return summaryList;
@@ -388,27 +555,57 @@ public class BaseS3Restorer extends Restorer
         return kmsSpecificS3Clients.get(remoteKmsKey);
     }
 
-    public static List<List<String>> splitList(List<String> list, int maxLength) {
-        List<List<String>> result = new ArrayList<>();
-        int index = 0;
-        while (index < list.size()) {
-            int endIndex = Math.min(index + maxLength, list.size());
-            List<String> subList = new ArrayList<>(list.subList(index, endIndex));
-            result.add(subList);
-            index += maxLength;
+    /**
+     * Deletes objects by {@code DeleteObjects} requests of up to {@value #MAX_DELETE_BATCH_SIZE} keys each, in quiet mode
+     * so only keys which were not deleted are returned.
+     */
+    private class S3BatchDeleter extends BatchDeleter {
+
+        public S3BatchDeleter() {
+            super(DELETE_BATCH_SIZE, request.concurrentConnections);
+        }
+
+        @Override
+        protected Map<String, String> deleteBatch(final List<String> batch) {
+            final DeleteObjectsResponse response = s3Clients.getNonEncryptingClient()
+                                                           .deleteObjects(DeleteObjectsRequest.builder()
+                                                                                              .bucket(request.storageLocation.bucket)
+                                                                                              .delete(Delete.builder()
+                                                                                                            .objects(batch.stream()
+                                                                                                                          .map(key -> ObjectIdentifier.builder().key(key).build())
+                                                                                                                          .collect(toList()))
+                                                                                                            .quiet(true)
+                                                                                                            .build())
+                                                                                              .build());
+
+            final Map<String, String> failures = new HashMap<>();
+
+            if (response.hasErrors()) {
+                for (final S3Error error : response.errors()) {
+                    failures.put(error.key(), format("%s: %s", error.code(), error.message()));
+                }
+            }
+
+            return failures;
         }
-        return result;
     }
 
     public void downloadManifestsToDirectory(Path downloadDir) throws Exception {
-        FileUtils.createDirectory(downloadDir);
-        FileUtils.cleanDirectory(downloadDir.toFile());
-
-        final List<S3Object> manifestSumms = listBucket(resolveNodeAwareRemotePath(Paths.get("manifests")), filter -> true);
-        for (S3Object o : manifestSumms) {
-            Path manifestPath = Paths.get(o.key());
-            Path destination = downloadDir.resolve(manifestPath);
-            downloadFile(destination, objectKeyToRemoteReference(manifestPath));
+        final Path manifestsPrefix = Paths.get(resolveNodeAwareRemotePath(Paths.get("manifests")));
+
+        new ManifestCacheSynchronizer(request.concurrentConnections).sync(downloadDir.resolve(manifestsPrefix),
+                                                                         getRemoteManifests(),
+                                                                         (manifest, localFile) -> downloadFile(localFile, objectKeyToRemoteReference(manifestsPrefix.resolve(manifest))));
+    }
+
+    // file names of manifests of a node to their sizes
+    private Map<String, Long> getRemoteManifests() throws Exception {
+        final Map<String, Long> manifests = new HashMap<>();
+
+        for (final S3Object manifest : listBucket(resolveNodeAwareRemotePath(Paths.get("manifests")) + "/", key -> true)) {
+            manifests.put(Paths.get(manifest.key()).getFileName().toString(), manifest.size());
         }
+
+        return manifests;
     }
 }